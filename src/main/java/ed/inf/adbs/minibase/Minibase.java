@@ -18,6 +18,9 @@ import java.util.List;
  */
 public class Minibase {
 
+    // Whether query plans are run batch at a time, set with the "minibase.batchExecution" system property
+    private static final boolean BATCH_EXECUTION = Boolean.parseBoolean(System.getProperty("minibase.batchExecution", "true"));
+
     /**
      * The main entry point of the application.
      * It takes command line arguments for the database directory, input file, and output file,
@@ -62,44 +65,76 @@ public class Minibase {
      * @param outputFile  The file path where the query results should be written.
      */
     public static void evaluateCQ(String databaseDir, String inputFile, String outputFile) {
+        evaluateCQ(loadDatabaseCatalog(databaseDir), inputFile, outputFile);
+    }
+
+    /**
+     * Creates the DatabaseCatalog of a database directory from its schema file.
+     * A catalog can be reused for several queries, which then share its cache of parsed tables.
+     *
+     * @param databaseDir The directory path containing the database schema and relations.
+     * @return The DatabaseCatalog of the database.
+     */
+    public static DatabaseCatalog loadDatabaseCatalog(String databaseDir) {
         // Create a HashMap to store the database catalog schema mapping
         HashMap<String, List<String>> dbCatalogMapper = new HashMap<>();
 
-        // Create an ArrayList to store the tuples
-        ArrayList<Tuple> tupleList = new ArrayList<>();
-
         // Generate the database catalog schema mapping
         dbCatalogMapGenerator(databaseDir, dbCatalogMapper);
 
-        // Create a DatabaseCatalog object using the generated schema mapping, tuple list, and database directory
-        DatabaseCatalog dbCatalog = new DatabaseCatalog(dbCatalogMapper, tupleList, databaseDir);
+        // Create a DatabaseCatalog object using the generated schema mapping and database directory
+        return new DatabaseCatalog(dbCatalogMapper, databaseDir);
+    }
 
-        // Declare a Head object to store the query's head (the output variables)
-        Head head = null;
+    /**
+     * Evaluates a conjunctive query (CQ) against an already loaded DatabaseCatalog.
+     *
+     * @param dbCatalog  The DatabaseCatalog of the database to be queried.
+     * @param inputFile  The file path containing the input query to be evaluated.
+     * @param outputFile The file path where the query results should be written.
+     */
+    public static void evaluateCQ(DatabaseCatalog dbCatalog, String inputFile, String outputFile) {
+        // Parse the input query
+        Query query = null;
+        try {
+            query = QueryParser.parse(Paths.get(inputFile));
+        } catch (Exception e) {
+            System.err.println("Exception occurred during parsing");
+            e.printStackTrace();
+        }
+
+        // Execute the query plan, streaming the results to the output file
+        try (CsvResultWriter writer = new CsvResultWriter(new File(outputFile), dbCatalog.getStringDictionary())) {
+            evaluateQuery(dbCatalog, query, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
+    /**
+     * Evaluates a parsed conjunctive query against an already loaded DatabaseCatalog, writing its answer to a CsvResultWriter.
+     *
+     * @param dbCatalog The DatabaseCatalog of the database to be queried.
+     * @param query     The query to be evaluated.
+     * @param writer    The CsvResultWriter the answer is streamed to.
+     * @throws IOException If the answer cannot be written.
+     */
+    public static void evaluateQuery(DatabaseCatalog dbCatalog, Query query, CsvResultWriter writer) throws IOException {
         // Declare a list to store the relational atoms from the query body
         List<RelationalAtom> relationBody = new ArrayList<>();
 
         // Declare a list to store the comparison atoms from the query body
         List<ComparisonAtom> comparisonBody = new ArrayList<>();
 
-        // Parse the input query and separate it into head, relation body, and comparison body
-        try {
-            Query query = QueryParser.parse(Paths.get(inputFile));
+        // Separate the query into head, relation body, and comparison body
+        Head head = null;
+        if (query != null) {
             head = query.getHead();
-            // Separates relational and comparison atoms from the query body.
             separateAtoms(query.getBody(), relationBody, comparisonBody);
-        } catch (Exception e) {
-            System.err.println("Exception occurred during parsing");
-            e.printStackTrace();
         }
 
         // Execute the query plan to get the results
-        executeQueryPlan(head, relationBody, comparisonBody, dbCatalog);
-        //Checks if the sum aggregate function is present in the query head and applies the SumOperator if required.
-        checkSumOperator(head, dbCatalog);
-        //Write the result.
-        writeToFile(outputFile, dbCatalog);
+        executeQueryPlan(head, relationBody, comparisonBody, dbCatalog, writer);
     }
 
     /**
@@ -110,7 +145,7 @@ public class Minibase {
      * @param databaseDir The directory path containing the database schema file.
      * @param dbTypeMapper The HashMap to store the schema mapping.
      */
-    private static void dbCatalogMapGenerator(String databaseDir, HashMap<String, List<String>> dbTypeMapper) {
+    static void dbCatalogMapGenerator(String databaseDir, HashMap<String, List<String>> dbTypeMapper) {
         // Create a File object for the schema file in the database directory
         File schemaFile = new File(databaseDir + File.separator + "schema.txt");
 
@@ -147,24 +182,6 @@ public class Minibase {
         dbCatalogMapper.put(schemaLineParts[0], schemaAttributes);
     }
 
-    /**
-     * Checks if the sum aggregate function is present in the query head and
-     * applies the SumOperator if required.
-     * This function examines the head of the query for the presence of a sum
-     * aggregate function. If found and the tuple list is not empty, it applies
-     * the SumOperator to perform the aggregation.
-     *
-     * @param head      The Head object representing the query's head.
-     * @param dbCatalog The DatabaseCatalog object containing the database schema and relations.
-     */
-    private static void checkSumOperator(Head head, DatabaseCatalog dbCatalog) {
-        // Check if the tuple list is not empty and if the head has a sum aggregate function
-        if ((dbCatalog.getTupleList().size() > 0) && (head.getSumAggregate() != null)) {
-            // Create and apply the SumOperator using the head and the database catalog
-            SumOperator sumOperator = new SumOperator(head, dbCatalog);
-        }
-    }
-
     /**
      * Separates relational and comparison atoms from the query body.
      * This function processes the list of atoms in the query body and
@@ -189,107 +206,50 @@ public class Minibase {
     }
 
     /**
-     * Executes the query plan and stores the results in the DatabaseCatalog.
+     * Executes the query plan and writes the results as they are produced.
      * This function creates a QueryPlan object using the query's head, relation body,
      * comparison body, and the DatabaseCatalog. It then iterates through the tuples
-     * generated by the query plan's operator, adding them to the DatabaseCatalog.
+     * generated by the query plan's operator, batch at a time unless -Dminibase.batchExecution=false,
+     * passing them straight to the CsvResultWriter, so the answer is never held in memory.
      *
      * @param head           The Head object representing the query's head.
      * @param relationBody   The list of relational atoms from the query body.
      * @param comparisonBody The list of comparison atoms from the query body.
      * @param dbCatalog      The DatabaseCatalog object containing the database schema and relations.
+     * @param writer         The CsvResultWriter of the output file.
+     * @throws IOException If the output file cannot be written.
      */
-    private static void executeQueryPlan(Head head, List<RelationalAtom> relationBody, List<ComparisonAtom> comparisonBody, DatabaseCatalog dbCatalog) {
+    private static void executeQueryPlan(Head head, List<RelationalAtom> relationBody, List<ComparisonAtom> comparisonBody, DatabaseCatalog dbCatalog, CsvResultWriter writer) throws IOException {
         // Create a QueryPlan object using the head, relation body, comparison body, and the database catalog
         QueryPlan queryPlan = new QueryPlan(head, relationBody, comparisonBody, dbCatalog);
 
         // Retrieve the operator for the query plan
         Operator operator = queryPlan.getOperator();
 
-        // Get the first tuple from the operator
-        Tuple tuple = operator.getNextTuple();
-
-        // Iterate through the tuples generated by the operator
-        while (tuple != null) {
-            // Check if the tuple is valid (not marked as "NonValid")
-            if (!tuple.getTableName().equals("NonValid")) {
-                // Add the valid tuple to the DatabaseCatalog's tuple list
-                dbCatalog.addTupleList(tuple);
-            }
-            // Get the next tuple from the operator
-            tuple = operator.getNextTuple();
-        }
-    }
-
-    /**
-     * Writes the tuples from the DatabaseCatalog to a CSV file.
-     * It iterates through the tuples in the DatabaseCatalog, builds CSV lines using buildCsvLine method,
-     * and writes them to the output file using a FileWriter.
-     *
-     * @param outputFile The path of the output file where the results will be written
-     * @param dbCatalog  The DatabaseCatalog containing the tuples to be written to the output file
-     */
-    private static void writeToFile(String outputFile, DatabaseCatalog dbCatalog) {
-        // Create the output file and its parent directories if they do not exist
-        File csvFile = new File(outputFile);
-        if (!csvFile.getParentFile().exists()) {
-            csvFile.getParentFile().mkdirs();
-        }
-
-        // Use try-with-resources to handle FileWriter resource
-        try (FileWriter fileWriter = new FileWriter(csvFile)) {
-
-            // Iterate through the tuples in the DatabaseCatalog
-            for (int i = 0; i < dbCatalog.getTupleList().size(); i++) {
-                Tuple tuple = dbCatalog.getTupleList().get(i);
-
-                // Check if the tuple is empty and skip it
-                if (tuple.getValue().isEmpty()) {
-                    continue;
+        try {
+            if (BATCH_EXECUTION) {
+                // Pull batches from the operator and write their selected rows
+                TupleBatch batch;
+                while ((batch = operator.getNextBatch()) != null) {
+                    writer.write(batch);
                 }
-
-                String line = buildCsvLine(tuple);
-                // Write the line to the CSV file
-                fileWriter.write(line);
+                return;
             }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
+            // Get the first tuple from the operator
+            Tuple tuple = operator.getNextTuple();
 
-    /**
-     * Builds a CSV line from a given tuple.
-     * This function iterates through the values in the tuple, appends them to a StringBuilder,
-     * and inserts comma separators between the values, except for the last value.
-     * It also adds a newline character at the end of the line.
-     *
-     * @param tuple The tuple whose values will be used to build the CSV line
-     * @return A string representing the CSV line created from the tuple's values
-     */
-    private static String buildCsvLine(Tuple tuple) {
-        // Create a StringBuilder to build the CSV line
-        StringBuilder line = new StringBuilder();
-
-        // Retrieve the values from the tuple
-        List<String> values = tuple.getValue();
-
-        // Iterate through the values in the tuple
-        for (int i = 0; i < values.size(); i++) {
-            // Append the current value to the line
-            line.append(values.get(i));
-
-            // Add a comma separator between values, except for the last value
-            if (i != values.size() - 1) {
-                line.append(", ");
+            // Iterate through the tuples generated by the operator
+            while (tuple != null) {
+                // Write the tuple; the empty answer of a true boolean query is written as an empty line
+                writer.write(tuple);
+                // Get the next tuple from the operator
+                tuple = operator.getNextTuple();
             }
+        } finally {
+            // Delete the spill files of the plan, also when the query fails
+            operator.close();
         }
-
-        // Add a newline character at the end of the line
-        line.append("\n");
-
-        // Return the built CSV line as a string
-        return line.toString();
     }
 
 }
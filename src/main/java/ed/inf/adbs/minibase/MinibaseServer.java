@@ -0,0 +1,121 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.CsvResultWriter;
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.base.Query;
+import ed.inf.adbs.minibase.parser.QueryParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves queries over a local socket from one long-running JVM.
+ * The schema is read once, and the DatabaseCatalog is kept for all queries, so its cached tables,
+ * table statistics and string dictionary stay warm, and so does the JIT-compiled code. Each client
+ * connection sends one query on a line and receives the answer in CSV format, streamed as it is
+ * produced, until the server closes the connection. If the query fails, the rows not sent yet are
+ * dropped and the answer ends with a line starting with ERROR_MARKER, which no CSV row starts with.
+ * A client that sends no query within the read timeout is disconnected.
+ *
+ * @author jackson-zhou
+ */
+public class MinibaseServer {
+    // The start of the last line of the answer of a failed query
+    static final String ERROR_MARKER = "ERROR: ";
+    // How long a connection may take to send its query, set with the "minibase.readTimeoutMs" system property
+    private static final int READ_TIMEOUT_MILLIS = Integer.getInteger("minibase.readTimeoutMs", 30000);
+
+    /**
+     * The main entry point of the server.
+     *
+     * @param args Command line arguments:
+     *             args[0] - database directory
+     *             args[1] - port to listen on at the loopback address, 0 for any free port
+     */
+    public static void main(String[] args) {
+        // Check if the correct number of command line arguments is provided
+        if (args.length != 2) {
+            System.err.println("Usage: MinibaseServer database_dir port");
+            return;
+        }
+
+        serve(Minibase.loadDatabaseCatalog(args[0]), Integer.parseInt(args[1]));
+    }
+
+    /**
+     * Accepts connections at the loopback address until the process is stopped.
+     *
+     * @param dbCatalog The DatabaseCatalog of the database to be queried.
+     * @param port      The port to listen on, 0 for any free port.
+     */
+    public static void serve(DatabaseCatalog dbCatalog, int port) {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            System.out.println("Minibase listening on port " + server.socket().getLocalPort());
+            serve(dbCatalog, server, READ_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            System.err.println("Minibase server failed");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Accepts connections of a bound server channel until it is closed.
+     * Queries are answered one at a time, as the DatabaseCatalog is not shared between concurrent queries.
+     *
+     * @param dbCatalog          The DatabaseCatalog of the database to be queried.
+     * @param server             The bound server channel.
+     * @param readTimeoutMillis  How long a connection may take to send its query, in milliseconds.
+     */
+    static void serve(DatabaseCatalog dbCatalog, ServerSocketChannel server, int readTimeoutMillis) {
+        while (server.isOpen()) {
+            try (SocketChannel client = server.accept()) {
+                client.socket().setSoTimeout(readTimeoutMillis);
+                answer(client, dbCatalog);
+            } catch (Exception e) {
+                if (!server.isOpen()) {
+                    // The server was closed while waiting for a connection
+                    return;
+                }
+                // A failed query or a client that went away does not stop the server
+                System.err.println("Answering query failed");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Reads the query of a connection and streams its answer back, or the error marker if the query fails.
+     *
+     * @param client    The connection of the client.
+     * @param dbCatalog The DatabaseCatalog of the database to be queried.
+     * @throws IOException If the connection cannot be read or written, or sends no query within the read timeout.
+     */
+    private static void answer(SocketChannel client, DatabaseCatalog dbCatalog) throws IOException {
+        // The stream of the socket honours the read timeout, unlike a stream over the channel.
+        // The reader is not closed, as that would close the connection before the answer is written
+        BufferedReader reader = new BufferedReader(new InputStreamReader(client.socket().getInputStream(), StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (line == null || line.trim().isEmpty()) {
+            return;
+        }
+
+        try (CsvResultWriter writer = new CsvResultWriter(client, dbCatalog.getStringDictionary())) {
+            try {
+                Query query = QueryParser.parse(line);
+                Minibase.evaluateQuery(dbCatalog, query, writer);
+            } catch (RuntimeException | IOException e) {
+                // Drop the rows still in the buffer and tell the client the answer is not complete
+                writer.discard();
+                writer.writeLine(ERROR_MARKER + String.valueOf(e).replace('\n', ' '));
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ColumnPruneOperator drops the columns of its child that no later operator reads.
+ * QueryPlan places it after the selection of an atom whose constants or repeated variables needed
+ * extra columns, and below the joins for the duplicate key columns and the variables no later join,
+ * comparison or head refers to. A batch is pruned by keeping references to the remaining column
+ * vectors, without copying any values.
+ *
+ * @author jackson-zhou
+ */
+public class ColumnPruneOperator extends Operator {
+	private Operator operator;
+	// The position in the child's tuples of every remaining column
+	private int[] columnIndex;
+	private Schema schema;
+
+	/**
+	 * Constructs a ColumnPruneOperator keeping the first column of the child holding each of the given terms.
+	 * The remaining columns keep the order they have in the child.
+	 *
+	 * @param operator    The child whose columns are pruned.
+	 * @param columnNames The terms to be kept.
+	 */
+	public ColumnPruneOperator(Operator operator, List<String> columnNames) {
+		this.operator = operator;
+		Schema inputSchema = operator.getSchema();
+		List<Integer> indexList = new ArrayList<>();
+		List<String> keptNames = new ArrayList<>();
+		List<String> keptTypes = new ArrayList<>();
+		for (int c = 0; c < inputSchema.size(); c++) {
+			String columnName = inputSchema.getColumnNames().get(c);
+			if (columnNames.contains(columnName) && inputSchema.indexOf(columnName) == c) {
+				indexList.add(c);
+				keptNames.add(columnName);
+				keptTypes.add(inputSchema.getColumnTypes().get(c));
+			}
+		}
+		this.columnIndex = new int[indexList.size()];
+		for (int i = 0; i < columnIndex.length; i++) {
+			columnIndex[i] = indexList.get(i);
+		}
+		this.schema = new Schema(inputSchema.getTableName(), keptNames, keptTypes);
+	}
+
+	/**
+	 * Retrieves the next tuple of the child with only the remaining columns.
+	 * Empty marker tuples of the child are passed on unchanged.
+	 *
+	 * @return The next pruned tuple, or null if the child is exhausted.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		Tuple tuple = operator.getNextTuple();
+		if (tuple == null || tuple.getValue().length == 0) {
+			return tuple;
+		}
+		long[] values = new long[columnIndex.length];
+		for (int i = 0; i < columnIndex.length; i++) {
+			values[i] = tuple.getValue(columnIndex[i]);
+		}
+		return new Tuple(schema, values);
+	}
+
+	/**
+	 * Retrieves the next batch of the child with only the remaining column vectors.
+	 * The pruned batch shares the column vectors and the selection vector of the child's batch.
+	 *
+	 * @return The next pruned batch, or null if the child is exhausted.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		TupleBatch batch = operator.getNextBatch();
+		if (batch == null) {
+			return null;
+		}
+		long[][] columns = new long[columnIndex.length][];
+		for (int i = 0; i < columnIndex.length; i++) {
+			columns[i] = batch.getColumn(columnIndex[i]);
+		}
+		return new TupleBatch(schema, columns, batch.getRowCount(), batch.getSelection(), batch.getSelectedCount());
+	}
+
+	/**
+	 * Returns the child operator whose columns are pruned.
+	 *
+	 * @return The child operator.
+	 */
+	public Operator getChild() {
+		return operator;
+	}
+
+	/**
+	 * Returns the position in the child's tuples of a remaining column.
+	 *
+	 * @param column The position of the column in the pruned tuples.
+	 * @return The position of the column in the child's tuples.
+	 */
+	public int getChildColumn(int column) {
+		return columnIndex[column];
+	}
+
+	@Override
+	public void reset() {
+		operator.reset();
+	}
+
+	@Override
+	public void close() {
+		operator.close();
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+}
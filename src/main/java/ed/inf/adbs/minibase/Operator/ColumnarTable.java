@@ -0,0 +1,285 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ColumnarTable class holds all rows of one table column by column in primitive int arrays.
+ * Int columns hold the values themselves and string columns hold the ids of the values in the
+ * catalog's StringDictionary. A table can be loaded from the table's CSV file or from, and saved
+ * to, a typed binary columnar file.
+ *
+ * The binary file starts with a header (magic number, format version, row count, column
+ * count and one type byte per column) followed by the columns one after another:
+ * an int column is rowCount big-endian ints, a string column is rowCount entries of an int
+ * byte length followed by the UTF-8 bytes. String values keep the quotes they have in the CSV.
+ *
+ * @author jackson-zhou
+ */
+public class ColumnarTable {
+	// The file extension of binary columnar table files
+	public static final String FILE_EXTENSION = ".mbc";
+
+	// "MBCF" in ASCII, marks a binary columnar table file
+	static final int MAGIC = 0x4D424346;
+	static final int VERSION = 1;
+	static final byte INT_COLUMN = 0;
+	static final byte STRING_COLUMN = 1;
+
+	// The number of rows in the table
+	private int rowCount;
+
+	// The schema types of the columns ("int" or "string")
+	private List<String> columnTypes;
+
+	// The values of each column, dictionary ids for string columns
+	private int[][] columns;
+
+	/**
+	 * Constructs a ColumnarTable from already decoded columns.
+	 *
+	 * @param columnTypes The schema types of the columns.
+	 * @param rowCount    The number of rows in the table.
+	 * @param columns     The values of each column, dictionary ids for string columns.
+	 */
+	public ColumnarTable(List<String> columnTypes, int rowCount, int[][] columns) {
+		this.columnTypes = columnTypes;
+		this.rowCount = rowCount;
+		this.columns = columns;
+	}
+
+	/**
+	 * Parses a CSV table file into columns, reading it through a MappedCsvReader.
+	 *
+	 * @param csvFile     The CSV file of the table.
+	 * @param columnTypes The schema types of the columns.
+	 * @param dictionary  The dictionary encoding the string values.
+	 * @return The parsed table.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static ColumnarTable readCsv(File csvFile, List<String> columnTypes, StringDictionary dictionary) throws IOException {
+		return readCsv(new MappedCsvReader(csvFile, columnTypes.size()), columnTypes, dictionary);
+	}
+
+	/**
+	 * Parses the rows of a MappedCsvReader into columns.
+	 * Int fields are parsed straight from the mapped bytes into the column arrays.
+	 *
+	 * @param reader      The reader positioned before the first row to be parsed.
+	 * @param columnTypes The schema types of the columns.
+	 * @param dictionary  The dictionary encoding the string values.
+	 * @return The parsed table.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static ColumnarTable readCsv(MappedCsvReader reader, List<String> columnTypes, StringDictionary dictionary) throws IOException {
+		int[] columnIndex = new int[columnTypes.size()];
+		for (int c = 0; c < columnIndex.length; c++) {
+			columnIndex[c] = c;
+		}
+		return readCsv(reader, columnTypes, columnIndex, dictionary);
+	}
+
+	/**
+	 * Parses some columns of the rows of a MappedCsvReader. The other fields are neither parsed
+	 * nor looked up in the dictionary.
+	 *
+	 * @param reader      The reader positioned before the first row to be parsed.
+	 * @param columnTypes The schema types of all columns of the file.
+	 * @param columnIndex The positions in the file of the columns to be parsed.
+	 * @param dictionary  The dictionary encoding the string values.
+	 * @return The parsed table, holding only the chosen columns.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static ColumnarTable readCsv(MappedCsvReader reader, List<String> columnTypes, int[] columnIndex, StringDictionary dictionary) throws IOException {
+		int columnCount = columnIndex.length;
+		boolean[] isInt = new boolean[columnCount];
+		List<String> parsedTypes = new ArrayList<>();
+		int capacity = 1024;
+		int[][] columns = new int[columnCount][capacity];
+		for (int c = 0; c < columnCount; c++) {
+			isInt[c] = isIntType(columnTypes.get(columnIndex[c]));
+			parsedTypes.add(columnTypes.get(columnIndex[c]));
+		}
+
+		int rowCount = 0;
+		while (reader.nextRow()) {
+			// Grow all columns together when they are full
+			if (rowCount == capacity) {
+				capacity *= 2;
+				for (int c = 0; c < columnCount; c++) {
+					columns[c] = Arrays.copyOf(columns[c], capacity);
+				}
+			}
+			for (int c = 0; c < columnCount; c++) {
+				int field = columnIndex[c];
+				columns[c][rowCount] = isInt[c] ? reader.getInt(field) : dictionary.encode(reader.getString(field));
+			}
+			rowCount++;
+		}
+
+		// Trim the columns to the number of rows read
+		for (int c = 0; c < columnCount; c++) {
+			columns[c] = Arrays.copyOf(columns[c], rowCount);
+		}
+		return new ColumnarTable(parsedTypes, rowCount, columns);
+	}
+
+	/**
+	 * Concatenates the rows of several tables with the same columns, such as the chunks
+	 * of a ParallelCsvScanner, into one table.
+	 *
+	 * @param chunks      The tables to be concatenated, in order.
+	 * @param columnTypes The schema types of the columns.
+	 * @return A table holding the rows of all chunks.
+	 */
+	public static ColumnarTable concat(List<ColumnarTable> chunks, List<String> columnTypes) {
+		int rowCount = 0;
+		for (ColumnarTable chunk : chunks) {
+			rowCount += chunk.rowCount;
+		}
+		int[][] columns = new int[columnTypes.size()][rowCount];
+		int offset = 0;
+		for (ColumnarTable chunk : chunks) {
+			for (int c = 0; c < columns.length; c++) {
+				System.arraycopy(chunk.columns[c], 0, columns[c], offset, chunk.rowCount);
+			}
+			offset += chunk.rowCount;
+		}
+		return new ColumnarTable(columnTypes, rowCount, columns);
+	}
+
+	/**
+	 * Loads a binary columnar table file. Int columns are decoded straight from the
+	 * mapped file into primitive arrays.
+	 *
+	 * @param file       The binary columnar file.
+	 * @param dictionary The dictionary encoding the string values.
+	 * @return The loaded table.
+	 * @throws IOException If the file cannot be read or is not a columnar table file.
+	 */
+	public static ColumnarTable read(File file, StringDictionary dictionary) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("Not a columnar table file: " + file);
+			}
+			int rowCount = buffer.getInt();
+			int columnCount = buffer.getInt();
+			List<String> columnTypes = new ArrayList<>();
+			for (int c = 0; c < columnCount; c++) {
+				columnTypes.add(buffer.get() == INT_COLUMN ? "int" : "string");
+			}
+
+			int[][] columns = new int[columnCount][rowCount];
+			for (int c = 0; c < columnCount; c++) {
+				if (isIntType(columnTypes.get(c))) {
+					buffer.asIntBuffer().get(columns[c]);
+					buffer.position(buffer.position() + rowCount * Integer.BYTES);
+				} else {
+					for (int r = 0; r < rowCount; r++) {
+						byte[] bytes = new byte[buffer.getInt()];
+						buffer.get(bytes);
+						columns[c][r] = dictionary.encode(new String(bytes, StandardCharsets.UTF_8));
+					}
+				}
+			}
+			return new ColumnarTable(columnTypes, rowCount, columns);
+		}
+	}
+
+	/**
+	 * Writes the table to a binary columnar file.
+	 *
+	 * @param file       The file to be written.
+	 * @param dictionary The dictionary the string values were encoded with.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(File file, StringDictionary dictionary) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(rowCount);
+			output.writeInt(columnTypes.size());
+			for (String type : columnTypes) {
+				output.writeByte(isIntType(type) ? INT_COLUMN : STRING_COLUMN);
+			}
+			for (int c = 0; c < columnTypes.size(); c++) {
+				boolean isInt = isIntType(columnTypes.get(c));
+				for (int r = 0; r < rowCount; r++) {
+					if (isInt) {
+						output.writeInt(columns[c][r]);
+					} else {
+						byte[] bytes = dictionary.decode(columns[c][r]).getBytes(StandardCharsets.UTF_8);
+						output.writeInt(bytes.length);
+						output.write(bytes);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a schema type is the int type.
+	 */
+	static boolean isIntType(String type) {
+		return type.equalsIgnoreCase("int");
+	}
+
+	/**
+	 * Returns the number of rows in the table.
+	 *
+	 * @return The number of rows in the table.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of columns in the table.
+	 *
+	 * @return The number of columns in the table.
+	 */
+	public int getColumnCount() {
+		return columnTypes.size();
+	}
+
+	/**
+	 * Checks whether a column holds dictionary ids of strings rather than ints.
+	 *
+	 * @param column The position of the column.
+	 * @return True if the column is a string column.
+	 */
+	public boolean isStringColumn(int column) {
+		return !isIntType(columnTypes.get(column));
+	}
+
+	/**
+	 * Returns an estimate of the heap memory held by the table, 4 bytes per value.
+	 * The strings themselves live in the StringDictionary and are not counted.
+	 *
+	 * @return The estimated size of the table in bytes.
+	 */
+	public long getEstimatedSize() {
+		return (long) Integer.BYTES * rowCount * columnTypes.size();
+	}
+
+	/**
+	 * Returns the values of a column.
+	 *
+	 * @param column The position of the column.
+	 * @return The values of the column, dictionary ids for string columns.
+	 */
+	public int[] getColumn(int column) {
+		return columns[column];
+	}
+}
@@ -0,0 +1,128 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ColumnarTableReader streams a binary columnar table file block by block, for tables too large
+ * for the table cache. The file is memory-mapped, and the start of every scanned column is found
+ * from the header, skipping over the length-prefixed values of the string columns in front of it.
+ * Each call to nextChunk() then decodes the next rows of the scanned columns only, so the heap
+ * holds one block of rows at a time instead of the whole table.
+ *
+ * @author jackson-zhou
+ */
+public class ColumnarTableReader {
+	// The number of rows decoded at a time
+	private static final int BLOCK_ROWS = 64 * 1024;
+
+	private StringDictionary dictionary;
+	private ByteBuffer buffer;
+	private int rowCount;
+	// The types of the scanned columns, whether each is an int column, and where each starts in the file
+	private List<String> scannedTypes = new ArrayList<>();
+	private boolean[] isInt;
+	private int[] columnStart;
+	// The position in the file of the next value of each scanned column, and the next row
+	private int[] position;
+	private int rowIndex;
+
+	/**
+	 * Constructs a ColumnarTableReader over some columns of a binary columnar file.
+	 *
+	 * @param file        The binary columnar file.
+	 * @param columnIndex The positions of the scanned columns, in ascending order.
+	 * @param dictionary  The dictionary encoding the string values.
+	 * @throws IOException If the file cannot be mapped or is not a columnar table file.
+	 */
+	public ColumnarTableReader(File file, int[] columnIndex, StringDictionary dictionary) throws IOException {
+		this.dictionary = dictionary;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt() != ColumnarTable.MAGIC || buffer.getInt() != ColumnarTable.VERSION) {
+			throw new IOException("Not a columnar table file: " + file);
+		}
+		rowCount = buffer.getInt();
+		int columnCount = buffer.getInt();
+		boolean[] intColumn = new boolean[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			intColumn[c] = buffer.get() == ColumnarTable.INT_COLUMN;
+		}
+
+		// Walk the columns up to the last scanned one to find where each starts
+		isInt = new boolean[columnIndex.length];
+		columnStart = new int[columnIndex.length];
+		int offset = buffer.position();
+		int scanned = 0;
+		for (int c = 0; c < columnCount && scanned < columnIndex.length; c++) {
+			if (c == columnIndex[scanned]) {
+				isInt[scanned] = intColumn[c];
+				scannedTypes.add(intColumn[c] ? "int" : "string");
+				columnStart[scanned++] = offset;
+			}
+			if (intColumn[c]) {
+				offset += rowCount * Integer.BYTES;
+			} else {
+				for (int r = 0; r < rowCount; r++) {
+					offset += Integer.BYTES + buffer.getInt(offset);
+				}
+			}
+		}
+		rewind();
+	}
+
+	/**
+	 * Decodes the next block of rows of the scanned columns.
+	 *
+	 * @return A table holding the next rows of the scanned columns only, or null if all rows were read.
+	 */
+	public ColumnarTable nextChunk() {
+		if (rowIndex >= rowCount) {
+			return null;
+		}
+		int blockRows = Math.min(BLOCK_ROWS, rowCount - rowIndex);
+		int[][] columns = new int[isInt.length][blockRows];
+		for (int c = 0; c < columns.length; c++) {
+			if (isInt[c]) {
+				buffer.position(position[c]);
+				buffer.asIntBuffer().get(columns[c]);
+				position[c] += blockRows * Integer.BYTES;
+			} else {
+				for (int r = 0; r < blockRows; r++) {
+					byte[] bytes = new byte[buffer.getInt(position[c])];
+					buffer.position(position[c] + Integer.BYTES);
+					buffer.get(bytes);
+					position[c] += Integer.BYTES + bytes.length;
+					columns[c][r] = dictionary.encode(new String(bytes, StandardCharsets.UTF_8));
+				}
+			}
+		}
+		rowIndex += blockRows;
+		return new ColumnarTable(scannedTypes, blockRows, columns);
+	}
+
+	/**
+	 * Moves back to the first row of the table.
+	 */
+	public void rewind() {
+		position = columnStart.clone();
+		rowIndex = 0;
+	}
+
+	/**
+	 * Returns the types of the scanned columns.
+	 *
+	 * @return The schema types of the scanned columns.
+	 */
+	public List<String> getColumnTypes() {
+		return scannedTypes;
+	}
+}
@@ -0,0 +1,422 @@
+package ed.inf.adbs.minibase.Operator;
+
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.StringConstant;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+
+/**
+ * ComparisonPredicate is a comparison of the query compiled against the schema of the tuples it filters.
+ * Variables are resolved to column offsets and constants are parsed once, int constants to longs and
+ * string constants to StringDictionary ids, so testing a tuple reads values by offset and compares
+ * primitives without allocating. Comparisons between two constants, or that can never hold for the
+ * schema, are evaluated when they are compiled.
+ *
+ * @author jackson-zhou
+ */
+public abstract class ComparisonPredicate {
+	// Predicates whose result does not depend on the tuple
+	static final ComparisonPredicate TRUE = new ConstantPredicate(true);
+	static final ComparisonPredicate FALSE = new ConstantPredicate(false);
+
+	/**
+	 * Tests the predicate on the values of a tuple.
+	 *
+	 * @param values The values of the tuple, laid out as described by the compiled schema.
+	 * @return True if the tuple satisfies the predicate.
+	 */
+	public abstract boolean test(long[] values);
+
+	/**
+	 * Filters the selected rows of a batch, keeping those that satisfy the predicate.
+	 * The selection vector is compacted in place.
+	 *
+	 * @param columns   The column vectors of the batch, laid out as described by the compiled schema.
+	 * @param selection The selected rows of the batch.
+	 * @param count     The number of selected rows.
+	 * @return The number of rows still selected, now at the start of the selection vector.
+	 */
+	public abstract int filter(long[][] columns, int[] selection, int count);
+
+	/**
+	 * Compiles a comparison atom against the schema of the tuples it filters.
+	 * A variable that no column holds makes the comparison unsatisfiable, and a value is never equal
+	 * to a value of the other type.
+	 *
+	 * @param atom       The comparison atom of the query.
+	 * @param schema     The schema of the tuples to be tested.
+	 * @param dictionary The dictionary encoding the string values.
+	 * @return The compiled predicate.
+	 */
+	public static ComparisonPredicate compile(ComparisonAtom atom, Schema schema, StringDictionary dictionary) {
+		Term term1 = atom.getTerm1();
+		Term term2 = atom.getTerm2();
+		ComparisonOperator op = atom.getOp();
+		if (term1 instanceof Variable && term2 instanceof Variable) {
+			int i = schema.indexOf(term1.toString().trim());
+			int j = schema.indexOf(term2.toString().trim());
+			if (i < 0 || j < 0) {
+				return FALSE;
+			}
+			if (schema.isStringColumn(i) != schema.isStringColumn(j)) {
+				return of(op == ComparisonOperator.NEQ);
+			}
+			if (schema.isStringColumn(i) && op != ComparisonOperator.EQ && op != ComparisonOperator.NEQ) {
+				return new StringColumnPredicate(op, i, j, dictionary);
+			}
+			// Equal ids mean equal strings, so string columns are tested for (in)equality like ints
+			return new ColumnPredicate(op, i, j);
+		}
+		if (term1 instanceof Variable) {
+			return compileColumnConstant(op, schema.indexOf(term1.toString().trim()), term2, schema, dictionary);
+		}
+		if (term2 instanceof Variable) {
+			// "c op x" is tested as "x op' c" with the operator mirrored
+			return compileColumnConstant(mirror(op), schema.indexOf(term2.toString().trim()), term1, schema, dictionary);
+		}
+		return of(compareConstants(op, term1, term2));
+	}
+
+	/**
+	 * Compiles the test that a column of a relational atom holding a constant term equals that constant.
+	 *
+	 * @param column     The position of the column.
+	 * @param constant   The constant term, as it appears in the schema's column names.
+	 * @param schema     The schema of the tuples to be tested.
+	 * @param dictionary The dictionary encoding the string values.
+	 * @return The compiled predicate.
+	 */
+	public static ComparisonPredicate compileConstantColumn(int column, String constant, Schema schema, StringDictionary dictionary) {
+		Term term = constant.startsWith("'")
+				? new StringConstant(constant.substring(1, constant.length() - 1))
+				: new IntegerConstant(Integer.parseInt(constant));
+		return compileColumnConstant(ComparisonOperator.EQ, column, term, schema, dictionary);
+	}
+
+	/**
+	 * Compiles the test that two columns of a relational atom holding the same variable are equal.
+	 *
+	 * @param first  The position of the first occurrence of the variable.
+	 * @param second The position of a later occurrence of the variable.
+	 * @return The compiled predicate.
+	 */
+	public static ComparisonPredicate compileRepeatedColumn(int first, int second) {
+		// Both columns hold the same variable, so they have the same type and equal ids mean equal values
+		return new ColumnPredicate(ComparisonOperator.EQ, first, second);
+	}
+
+	/**
+	 * Compiles the comparison of a column with a constant.
+	 */
+	private static ComparisonPredicate compileColumnConstant(ComparisonOperator op, int column, Term constant, Schema schema, StringDictionary dictionary) {
+		if (column < 0) {
+			return FALSE;
+		}
+		boolean stringConstant = constant instanceof StringConstant;
+		if (schema.isStringColumn(column) != stringConstant) {
+			return of(op == ComparisonOperator.NEQ);
+		}
+		if (!stringConstant) {
+			return new ConstantValuePredicate(op, column, ((IntegerConstant) constant).getValue());
+		}
+		if (op == ComparisonOperator.EQ || op == ComparisonOperator.NEQ) {
+			// The constant is only looked up, so queries do not grow the shared dictionary
+			int id = dictionary.lookup(constant.toString());
+			if (id >= 0) {
+				return new ConstantValuePredicate(op, column, id);
+			}
+			// No value scanned so far equals the constant, but a table streamed from disk may still hold it
+			return new AbsentStringPredicate(op, column, constant.toString(), dictionary);
+		}
+		return new StringConstantPredicate(op, column, constant.toString(), dictionary);
+	}
+
+	/**
+	 * Evaluates a comparison between two constants.
+	 */
+	private static boolean compareConstants(ComparisonOperator op, Term term1, Term term2) {
+		if (term1 instanceof IntegerConstant && term2 instanceof IntegerConstant) {
+			return satisfies(op, Integer.compare(((IntegerConstant) term1).getValue(), ((IntegerConstant) term2).getValue()));
+		}
+		if (term1 instanceof StringConstant && term2 instanceof StringConstant) {
+			return satisfies(op, term1.toString().compareTo(term2.toString()));
+		}
+		return op == ComparisonOperator.NEQ;
+	}
+
+	/**
+	 * Returns the operator testing the same condition with its operands swapped.
+	 */
+	private static ComparisonOperator mirror(ComparisonOperator op) {
+		switch (op) {
+			case GT:
+				return ComparisonOperator.LT;
+			case GEQ:
+				return ComparisonOperator.LEQ;
+			case LT:
+				return ComparisonOperator.GT;
+			case LEQ:
+				return ComparisonOperator.GEQ;
+			default:
+				return op;
+		}
+	}
+
+	/**
+	 * Checks if the result of comparing two values satisfies the given operator.
+	 */
+	static boolean satisfies(ComparisonOperator op, int comparison) {
+		switch (op) {
+			case EQ:
+				return comparison == 0;
+			case NEQ:
+				return comparison != 0;
+			case GT:
+				return comparison > 0;
+			case GEQ:
+				return comparison >= 0;
+			case LT:
+				return comparison < 0;
+			case LEQ:
+				return comparison <= 0;
+		}
+		return true;
+	}
+
+	private static ComparisonPredicate of(boolean result) {
+		return result ? TRUE : FALSE;
+	}
+
+	/**
+	 * Checks whether the predicate holds or fails for every tuple.
+	 *
+	 * @return True if the result of the predicate does not depend on the tuple.
+	 */
+	public boolean isConstant() {
+		return this instanceof ConstantPredicate;
+	}
+
+	/**
+	 * A predicate with the same result for every tuple.
+	 */
+	private static class ConstantPredicate extends ComparisonPredicate {
+		private final boolean result;
+
+		private ConstantPredicate(boolean result) {
+			this.result = result;
+		}
+
+		@Override
+		public boolean test(long[] values) {
+			return result;
+		}
+
+		@Override
+		public int filter(long[][] columns, int[] selection, int count) {
+			return result ? count : 0;
+		}
+	}
+
+	/**
+	 * Compares two int columns, or two string columns for (in)equality.
+	 */
+	private static class ColumnPredicate extends ComparisonPredicate {
+		private final ComparisonOperator op;
+		private final int first;
+		private final int second;
+
+		private ColumnPredicate(ComparisonOperator op, int first, int second) {
+			this.op = op;
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean test(long[] values) {
+			return satisfies(op, Long.compare(values[first], values[second]));
+		}
+
+		@Override
+		public int filter(long[][] columns, int[] selection, int count) {
+			long[] firstColumn = columns[first];
+			long[] secondColumn = columns[second];
+			int selected = 0;
+			for (int k = 0; k < count; k++) {
+				int row = selection[k];
+				if (satisfies(op, Long.compare(firstColumn[row], secondColumn[row]))) {
+					selection[selected++] = row;
+				}
+			}
+			return selected;
+		}
+	}
+
+	/**
+	 * Compares two string columns by the order of their strings.
+	 */
+	private static class StringColumnPredicate extends ComparisonPredicate {
+		private final ComparisonOperator op;
+		private final int first;
+		private final int second;
+		private final StringDictionary dictionary;
+
+		private StringColumnPredicate(ComparisonOperator op, int first, int second, StringDictionary dictionary) {
+			this.op = op;
+			this.first = first;
+			this.second = second;
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		public boolean test(long[] values) {
+			return satisfies(op, dictionary.decode((int) values[first]).compareTo(dictionary.decode((int) values[second])));
+		}
+
+		@Override
+		public int filter(long[][] columns, int[] selection, int count) {
+			int selected = 0;
+			for (int k = 0; k < count; k++) {
+				int row = selection[k];
+				if (satisfies(op, dictionary.decode((int) columns[first][row]).compareTo(dictionary.decode((int) columns[second][row])))) {
+					selection[selected++] = row;
+				}
+			}
+			return selected;
+		}
+	}
+
+	/**
+	 * Compares an int column with an int constant, or a string column with the id of a string constant for (in)equality.
+	 * Every operator but != is turned into a range [low, high] of accepted values, which keeps the filter loop branch-free.
+	 */
+	private static class ConstantValuePredicate extends ComparisonPredicate {
+		private final int column;
+		private final long constant;
+		private final boolean notEqual;
+		private final long low;
+		private final long high;
+
+		private ConstantValuePredicate(ComparisonOperator op, int column, long constant) {
+			this.column = column;
+			this.constant = constant;
+			this.notEqual = op == ComparisonOperator.NEQ;
+			this.low = op == ComparisonOperator.GT ? constant + 1 : op == ComparisonOperator.EQ || op == ComparisonOperator.GEQ ? constant : Long.MIN_VALUE;
+			this.high = op == ComparisonOperator.LT ? constant - 1 : op == ComparisonOperator.EQ || op == ComparisonOperator.LEQ ? constant : Long.MAX_VALUE;
+		}
+
+		@Override
+		public boolean test(long[] values) {
+			long value = values[column];
+			return notEqual ? value != constant : value >= low && value <= high;
+		}
+
+		@Override
+		public int filter(long[][] columns, int[] selection, int count) {
+			long[] vector = columns[column];
+			int selected = 0;
+			if (notEqual) {
+				for (int k = 0; k < count; k++) {
+					int row = selection[k];
+					selection[selected] = row;
+					selected += vector[row] != constant ? 1 : 0;
+				}
+			} else {
+				for (int k = 0; k < count; k++) {
+					int row = selection[k];
+					long value = vector[row];
+					selection[selected] = row;
+					selected += value >= low & value <= high ? 1 : 0;
+				}
+			}
+			return selected;
+		}
+	}
+
+	/**
+	 * Compares a string column with a string constant by the order of their strings.
+	 */
+	private static class StringConstantPredicate extends ComparisonPredicate {
+		private final ComparisonOperator op;
+		private final int column;
+		private final String constant;
+		private final StringDictionary dictionary;
+
+		private StringConstantPredicate(ComparisonOperator op, int column, String constant, StringDictionary dictionary) {
+			this.op = op;
+			this.column = column;
+			this.constant = constant;
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		public boolean test(long[] values) {
+			return satisfies(op, dictionary.decode((int) values[column]).compareTo(constant));
+		}
+
+		@Override
+		public int filter(long[][] columns, int[] selection, int count) {
+			long[] vector = columns[column];
+			int selected = 0;
+			for (int k = 0; k < count; k++) {
+				int row = selection[k];
+				if (satisfies(op, dictionary.decode((int) vector[row]).compareTo(constant))) {
+					selection[selected++] = row;
+				}
+			}
+			return selected;
+		}
+	}
+
+	/**
+	 * Tests a string column for (in)equality with a constant that was not in the dictionary when the
+	 * predicate was compiled. As the scans encode every value before it is tested, the constant
+	 * cannot equal a value while it is still absent: the predicate fails for = and holds for !=
+	 * without looking at the rows. The constant is looked up again for every batch or tuple, and once
+	 * a scan has encoded it the rows are compared by id.
+	 */
+	private static class AbsentStringPredicate extends ComparisonPredicate {
+		private final ComparisonOperator op;
+		private final int column;
+		private final String constant;
+		private final StringDictionary dictionary;
+		// The predicate comparing ids, once the constant is in the dictionary
+		private ComparisonPredicate resolved;
+
+		private AbsentStringPredicate(ComparisonOperator op, int column, String constant, StringDictionary dictionary) {
+			this.op = op;
+			this.column = column;
+			this.constant = constant;
+			this.dictionary = dictionary;
+		}
+
+		/**
+		 * Looks the constant up again, returning the predicate comparing ids if it is now in the dictionary.
+		 */
+		private ComparisonPredicate resolve() {
+			if (resolved == null) {
+				int id = dictionary.lookup(constant);
+				if (id >= 0) {
+					resolved = new ConstantValuePredicate(op, column, id);
+				}
+			}
+			return resolved;
+		}
+
+		@Override
+		public boolean test(long[] values) {
+			ComparisonPredicate predicate = resolve();
+			return predicate != null ? predicate.test(values) : op == ComparisonOperator.NEQ;
+		}
+
+		@Override
+		public int filter(long[][] columns, int[] selection, int count) {
+			ComparisonPredicate predicate = resolve();
+			if (predicate != null) {
+				return predicate.filter(columns, selection, count);
+			}
+			return op == ComparisonOperator.NEQ ? count : 0;
+		}
+	}
+}
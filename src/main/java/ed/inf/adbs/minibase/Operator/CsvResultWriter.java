@@ -0,0 +1,227 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * CsvResultWriter streams the answer of a query in CSV format as the root operator produces it, to a
+ * file or to any other channel such as the socket of a MinibaseServer client. Values are formatted
+ * straight into a large byte buffer, ints digit by digit and strings from the encoded bytes of their
+ * dictionary entries, and the buffer is written to the channel whenever it fills up. No String is
+ * built for a line and no tuple is kept once written, so the first rows reach the reader early and
+ * the memory taken does not grow with the size of the answer.
+ *
+ * @author jackson-zhou
+ */
+public class CsvResultWriter implements Closeable {
+	// The size of the output buffer
+	private static final int BUFFER_SIZE = 1 << 20;
+	// The longest formatted long value
+	private static final int MAX_LONG_LENGTH = 20;
+	private static final byte[] SEPARATOR = ", ".getBytes(StandardCharsets.US_ASCII);
+
+	private WritableByteChannel channel;
+	private StringDictionary dictionary;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	// The UTF-8 bytes of the strings written so far, by dictionary id
+	private byte[][] encodedStrings = new byte[0][];
+
+	/**
+	 * Constructs a CsvResultWriter, creating or truncating the file and its parent directories.
+	 *
+	 * @param file       The CSV file the answer is written to.
+	 * @param dictionary The dictionary decoding the string values.
+	 * @throws IOException If the file cannot be opened.
+	 */
+	public CsvResultWriter(File file, StringDictionary dictionary) throws IOException {
+		this(openFile(file), dictionary);
+	}
+
+	/**
+	 * Constructs a CsvResultWriter over a channel, which is closed with the writer.
+	 *
+	 * @param channel    The channel the answer is written to.
+	 * @param dictionary The dictionary decoding the string values.
+	 */
+	public CsvResultWriter(WritableByteChannel channel, StringDictionary dictionary) {
+		this.channel = channel;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Opens a file for writing, creating or truncating it and creating its parent directories.
+	 */
+	private static FileChannel openFile(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Writes the selected rows of a batch, one line each.
+	 *
+	 * @param batch The batch of answer tuples.
+	 * @throws IOException If the channel cannot be written.
+	 */
+	public void write(TupleBatch batch) throws IOException {
+		long[][] columns = batch.getColumns();
+		Schema schema = batch.getSchema();
+		int[] selection = batch.getSelection();
+		for (int k = 0; k < batch.getSelectedCount(); k++) {
+			int row = selection[k];
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					writeBytes(SEPARATOR);
+				}
+				writeValue(columns[i][row], schema.isStringColumn(i));
+			}
+			writeByte((byte) '\n');
+		}
+	}
+
+	/**
+	 * Writes a tuple as one line. A tuple without values, the answer of a true boolean query, is written as an empty line.
+	 *
+	 * @param tuple The answer tuple.
+	 * @throws IOException If the channel cannot be written.
+	 */
+	public void write(Tuple tuple) throws IOException {
+		long[] values = tuple.getValue();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				writeBytes(SEPARATOR);
+			}
+			writeValue(values[i], tuple.isStringColumn(i));
+		}
+		writeByte((byte) '\n');
+	}
+
+	/**
+	 * Drops the lines written since the buffer was last written to the channel, so that they are never sent.
+	 */
+	public void discard() {
+		position = 0;
+	}
+
+	/**
+	 * Writes a line of text as it is, such as the error marker ending the answer of a failed query.
+	 *
+	 * @param line The text of the line, without a line break.
+	 * @throws IOException If the channel cannot be written.
+	 */
+	public void writeLine(String line) throws IOException {
+		writeBytes(line.getBytes(StandardCharsets.UTF_8));
+		writeByte((byte) '\n');
+	}
+
+	/**
+	 * Writes the rest of the buffer and closes the channel.
+	 *
+	 * @throws IOException If the channel cannot be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes a value, decoding string values from their ids.
+	 */
+	private void writeValue(long value, boolean stringColumn) throws IOException {
+		if (stringColumn) {
+			writeBytes(encode((int) value));
+			return;
+		}
+		if (value == Long.MIN_VALUE) {
+			writeBytes(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+			return;
+		}
+		if (BUFFER_SIZE - position < MAX_LONG_LENGTH) {
+			flush();
+		}
+		if (value < 0) {
+			buffer[position++] = '-';
+			value = -value;
+		}
+		// Write the digits from the last one backwards, then move the position past them
+		int end = position + digitCount(value);
+		int digit = end;
+		do {
+			buffer[--digit] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		position = end;
+	}
+
+	/**
+	 * Returns the UTF-8 bytes of a string, encoding each string of the dictionary only once.
+	 */
+	private byte[] encode(int id) {
+		if (id >= encodedStrings.length) {
+			byte[][] grown = new byte[Math.max(id + 1, encodedStrings.length * 2)][];
+			System.arraycopy(encodedStrings, 0, grown, 0, encodedStrings.length);
+			encodedStrings = grown;
+		}
+		byte[] bytes = encodedStrings[id];
+		if (bytes == null) {
+			bytes = dictionary.decode(id).getBytes(StandardCharsets.UTF_8);
+			encodedStrings[id] = bytes;
+		}
+		return bytes;
+	}
+
+	private static int digitCount(long value) {
+		int count = 1;
+		while (value >= 10) {
+			value /= 10;
+			count++;
+		}
+		return count;
+	}
+
+	private void writeByte(byte b) throws IOException {
+		if (position == BUFFER_SIZE) {
+			flush();
+		}
+		buffer[position++] = b;
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		if (BUFFER_SIZE - position < bytes.length) {
+			flush();
+			if (bytes.length > BUFFER_SIZE) {
+				writeFully(ByteBuffer.wrap(bytes));
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	/**
+	 * Writes the buffered bytes to the channel and empties the buffer.
+	 */
+	private void flush() throws IOException {
+		writeFully(ByteBuffer.wrap(buffer, 0, position));
+		position = 0;
+	}
+
+	private void writeFully(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+	}
+}
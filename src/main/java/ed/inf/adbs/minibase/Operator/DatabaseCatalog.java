@@ -3,14 +3,17 @@ package ed.inf.adbs.minibase.Operator;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 /**
- * The DatabaseCatalog class is a container for storing information about the database schema,
- * the tuple list, and the database directory path. It provides methods for accessing and
- * modifying the schema, tuple list, and database directory.
+ * The DatabaseCatalog class is a container for storing information about the database schema
+ * and the database directory path, along with the state shared by the queries over the database:
+ * the table cache, the table statistics, the string dictionary, the scan mode and the memory budgets.
+ * It provides methods for accessing and modifying them. Answers are not kept in the catalog, they are
+ * streamed to a CsvResultWriter.
  * @author jackson-zhou
  */
 
@@ -18,23 +21,49 @@ public class DatabaseCatalog {
 	// A HashMap containing the database catalog schema mapping
 	HashMap<String, List<String>> dbCatalogType;
 
-	// A List containing the tuples generated by query execution
-	List<Tuple> tupleList;
-
 	// A String containing the path of the database directory
 	String databaseDir;
 
+	// A HashMap caching the statistics of each table, computed on first use
+	HashMap<String, TableStatistics> tableStatistics = new HashMap<>();
+
+	// The way ScanOperators read CSV files
+	ScanMode scanMode = ScanMode.fromSystemProperty();
+
+	// The cache of fully parsed tables, bounded by the "minibase.cacheBudgetMB" system property
+	// or a quarter of the maximum heap size
+	TableCache tableCache = new TableCache(Long.getLong("minibase.cacheBudgetMB", Runtime.getRuntime().maxMemory() >> 22) << 20);
+
+	// The memory the rows of a join may take, set with the "minibase.joinMemoryMB" system property
+	// or a quarter of the maximum heap size. Larger joins sort their inputs externally.
+	long joinMemoryBudget = Long.getLong("minibase.joinMemoryMB", Runtime.getRuntime().maxMemory() >> 22) << 20;
+
+	// The memory the distinct rows of a projection may take, set with the "minibase.distinctMemoryMB"
+	// system property or a quarter of the maximum heap size. Larger projections spill to disk.
+	long distinctMemoryBudget = Long.getLong("minibase.distinctMemoryMB", Runtime.getRuntime().maxMemory() >> 22) << 20;
+
+	// The dictionary encoding the string values of all tables as int ids
+	StringDictionary stringDictionary = new StringDictionary();
+
+	// Whether PARALLEL scans deliver rows in file order, set with the "minibase.orderedScan" system property
+	boolean orderedScan = Boolean.parseBoolean(System.getProperty("minibase.orderedScan", "true"));
+
+	// The number of threads aggregating SUM queries, set with the "minibase.aggregationThreads" system property
+	// or the number of available processors
+	int aggregationThreads = Integer.getInteger("minibase.aggregationThreads", Runtime.getRuntime().availableProcessors());
+
+	// Whether SUM queries over acyclic joins are aggregated over the factorized join, set with the
+	// "minibase.factorizedAggregation" system property
+	boolean factorizedAggregation = Boolean.parseBoolean(System.getProperty("minibase.factorizedAggregation", "true"));
+
 	/**
-	 * Constructs a new DatabaseCatalog object with the given schema mapping, tuple list,
-	 * and database directory path.
+	 * Constructs a new DatabaseCatalog object with the given schema mapping and database directory path.
 	 *
 	 * @param dbCatalogType The HashMap containing the database catalog schema mapping.
-	 * @param tupleList The List containing the tuples generated by query execution.
 	 * @param databaseDir The String containing the path of the database directory.
 	 */
-	public DatabaseCatalog(HashMap<String, List<String>> dbCatalogType, List<Tuple> tupleList, String databaseDir) {
+	public DatabaseCatalog(HashMap<String, List<String>> dbCatalogType, String databaseDir) {
 		this.dbCatalogType = dbCatalogType;
-		this.tupleList = tupleList;
 		this.databaseDir = databaseDir;
 	}
 
@@ -57,30 +86,263 @@ public class DatabaseCatalog {
 	}
 
 	/**
-	 * Returns the tuple list.
+	 * Returns the CSV file holding the rows of the given table.
+	 *
+	 * @param tableName The name of the table.
+	 * @return The File object for the table's CSV file.
+	 */
+	public File getTableFile(String tableName) {
+		return new File(String.format("%s%sfiles%s%s.csv", databaseDir, File.separator, File.separator, tableName));
+	}
+
+	/**
+	 * Returns the binary columnar file of the given table, written by the TableImporter.
+	 *
+	 * @param tableName The name of the table.
+	 * @return The File object for the table's binary columnar file, which may not exist.
+	 */
+	public File getColumnarFile(String tableName) {
+		return new File(String.format("%s%sfiles%s%s%s", databaseDir, File.separator, File.separator, tableName, ColumnarTable.FILE_EXTENSION));
+	}
+
+	/**
+	 * Checks whether the table has a binary columnar file that is not older than its CSV file.
+	 *
+	 * @param tableName The name of the table.
+	 * @return True if the columnar file should be read instead of the CSV file.
+	 */
+	public boolean hasUpToDateColumnarFile(String tableName) {
+		File columnarFile = getColumnarFile(tableName);
+		return columnarFile.exists() && columnarFile.lastModified() >= getTableFile(tableName).lastModified();
+	}
+
+	/**
+	 * Returns all rows of the given table from the table cache, loading and caching them if needed.
+	 * The cached rows are reloaded when the modification time or the size of the table's files changes.
+	 *
+	 * @param tableName The name of the table.
+	 * @return The parsed table, or null if the table does not fit in the cache budget or cannot be
+	 * loaded, in which case it should be streamed from disk.
+	 */
+	public ColumnarTable getTable(String tableName) {
+		File csvFile = getTableFile(tableName);
+		File columnarFile = getColumnarFile(tableName);
+		long[] signature = getFileSignature(tableName);
+		ColumnarTable table = tableCache.get(tableName, signature);
+		if (table != null) {
+			return table;
+		}
+		// Do not load tables whose files are already larger than the whole budget
+		long fileSize = hasUpToDateColumnarFile(tableName) ? columnarFile.length() : csvFile.length();
+		if (fileSize > tableCache.getBudget()) {
+			return null;
+		}
+		try {
+			table = loadTable(tableName);
+		} catch (Exception e) {
+			System.err.println("Table cache failed to load " + tableName);
+			e.printStackTrace();
+			return null;
+		}
+		tableCache.put(tableName, signature, table);
+		return table;
+	}
+
+	/**
+	 * Returns the modification times and sizes of the CSV and columnar files of a table,
+	 * which change whenever one of the files is rewritten.
+	 *
+	 * @param tableName The name of the table.
+	 * @return The signature of the table's files.
+	 */
+	private long[] getFileSignature(String tableName) {
+		File csvFile = getTableFile(tableName);
+		File columnarFile = getColumnarFile(tableName);
+		return new long[]{csvFile.lastModified(), csvFile.length(), columnarFile.lastModified(), columnarFile.length()};
+	}
+
+	/**
+	 * Loads all rows of the given table, from its binary columnar file if it is up to date
+	 * and otherwise from its CSV file, in parallel chunks in PARALLEL scan mode.
+	 *
+	 * @param tableName The name of the table.
+	 * @return The parsed table.
+	 * @throws IOException If the table files cannot be read.
+	 */
+	private ColumnarTable loadTable(String tableName) throws IOException {
+		if (hasUpToDateColumnarFile(tableName)) {
+			return ColumnarTable.read(getColumnarFile(tableName), stringDictionary);
+		}
+		List<String> columnTypes = dbCatalogType.get(tableName);
+		if (scanMode == ScanMode.PARALLEL) {
+			ParallelCsvScanner scanner = new ParallelCsvScanner(getTableFile(tableName), columnTypes, stringDictionary, true);
+			List<ColumnarTable> chunks = new ArrayList<>();
+			ColumnarTable chunk;
+			while ((chunk = scanner.nextChunk()) != null) {
+				chunks.add(chunk);
+			}
+			return ColumnarTable.concat(chunks, columnTypes);
+		}
+		return ColumnarTable.readCsv(getTableFile(tableName), columnTypes, stringDictionary);
+	}
+
+	/**
+	 * Returns the cache of parsed tables.
+	 *
+	 * @return The TableCache of this catalog.
+	 */
+	public TableCache getTableCache() {
+		return tableCache;
+	}
+
+	/**
+	 * Replaces the cache of parsed tables, for example with one of a different budget.
+	 *
+	 * @param tableCache The new TableCache of this catalog.
+	 */
+	public void setTableCache(TableCache tableCache) {
+		this.tableCache = tableCache;
+	}
+
+	/**
+	 * Returns the statistics of the given table, computing them on first use and again after its files change.
+	 *
+	 * @param tableName The name of the table.
+	 * @return The TableStatistics object holding the row count and distinct value counts of the table.
+	 */
+	public TableStatistics getTableStatistics(String tableName) {
+		long[] signature = getFileSignature(tableName);
+		TableStatistics statistics = tableStatistics.get(tableName);
+		// Recompute the statistics when the table's files have changed
+		if (statistics == null || !Arrays.equals(statistics.getSignature(), signature)) {
+			// Computing them from the cached rows saves reading the file a second time for the scan
+			ColumnarTable table = getTable(tableName);
+			if (table != null) {
+				statistics = TableStatistics.compute(table);
+			} else {
+				statistics = TableStatistics.compute(getTableFile(tableName), dbCatalogType.get(tableName).size());
+			}
+			statistics.setSignature(signature);
+			tableStatistics.put(tableName, statistics);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Returns the memory the rows of a join may take.
+	 *
+	 * @return The join memory budget in bytes.
+	 */
+	public long getJoinMemoryBudget() {
+		return joinMemoryBudget;
+	}
+
+	/**
+	 * Sets the memory the rows of a join may take.
+	 *
+	 * @param joinMemoryBudget The join memory budget in bytes.
+	 */
+	public void setJoinMemoryBudget(long joinMemoryBudget) {
+		this.joinMemoryBudget = joinMemoryBudget;
+	}
+
+	/**
+	 * Returns the memory the distinct rows of a projection may take.
+	 *
+	 * @return The distinct memory budget in bytes.
+	 */
+	public long getDistinctMemoryBudget() {
+		return distinctMemoryBudget;
+	}
+
+	/**
+	 * Sets the memory the distinct rows of a projection may take.
+	 *
+	 * @param distinctMemoryBudget The distinct memory budget in bytes.
+	 */
+	public void setDistinctMemoryBudget(long distinctMemoryBudget) {
+		this.distinctMemoryBudget = distinctMemoryBudget;
+	}
+
+	/**
+	 * Returns the number of threads aggregating SUM queries.
+	 *
+	 * @return The number of aggregation threads.
+	 */
+	public int getAggregationThreads() {
+		return aggregationThreads;
+	}
+
+	/**
+	 * Sets the number of threads aggregating SUM queries.
+	 *
+	 * @param aggregationThreads The number of aggregation threads, 1 to aggregate on the calling thread.
+	 */
+	public void setAggregationThreads(int aggregationThreads) {
+		this.aggregationThreads = aggregationThreads;
+	}
+
+	/**
+	 * Returns the dictionary encoding the string values of all tables.
+	 *
+	 * @return The StringDictionary of this catalog.
+	 */
+	public StringDictionary getStringDictionary() {
+		return stringDictionary;
+	}
+
+	/**
+	 * Returns the way ScanOperators read CSV files.
+	 *
+	 * @return The scan mode used for CSV files.
+	 */
+	public ScanMode getScanMode() {
+		return scanMode;
+	}
+
+	/**
+	 * Sets the way ScanOperators read CSV files.
+	 *
+	 * @param scanMode The scan mode to be used for CSV files.
+	 */
+	public void setScanMode(ScanMode scanMode) {
+		this.scanMode = scanMode;
+	}
+
+	/**
+	 * Returns whether PARALLEL scans deliver rows in file order.
+	 *
+	 * @return True if rows are delivered in file order, false if the order is relaxed.
+	 */
+	public boolean isOrderedScan() {
+		return orderedScan;
+	}
+
+	/**
+	 * Sets whether PARALLEL scans deliver rows in file order.
 	 *
-	 * @return The List containing the tuples generated by query execution.
+	 * @param orderedScan True to keep the file order, false to deliver chunks as soon as they are parsed.
 	 */
-	public List<Tuple> getTupleList() {
-		return tupleList;
+	public void setOrderedScan(boolean orderedScan) {
+		this.orderedScan = orderedScan;
 	}
 
 	/**
-	 * Adds a tuple to the tuple list.
+	 * Returns whether SUM queries over acyclic joins are aggregated over the factorized join.
 	 *
-	 * @param tuple The Tuple object to be added to the tuple list.
+	 * @return True if such queries use a FactorizedAggregateOperator.
 	 */
-	public void addTupleList(Tuple tuple) {
-		tupleList.add(tuple);
+	public boolean isFactorizedAggregation() {
+		return factorizedAggregation;
 	}
 
 	/**
-	 * Replaces the current tuple list with the given tuple list.
+	 * Sets whether SUM queries over acyclic joins are aggregated over the factorized join.
 	 *
-	 * @param tupleList The List of Tuple objects to replace the current tuple list.
+	 * @param factorizedAggregation True to use a FactorizedAggregateOperator, false to aggregate the flat join result.
 	 */
-	public void setTupleList(List<Tuple> tupleList) {
-		this.tupleList = tupleList;
+	public void setFactorizedAggregation(boolean factorizedAggregation) {
+		this.factorizedAggregation = factorizedAggregation;
 	}
 }
 
@@ -0,0 +1,38 @@
+package ed.inf.adbs.minibase.Operator;
+
+/**
+ * EmptyOperator returns no tuples. QueryPlan uses it in place of the joins of a query body that
+ * cannot have any answer, such as one where a variable is held by both an int and a string column.
+ *
+ * @author jackson-zhou
+ */
+public class EmptyOperator extends Operator {
+	private Schema schema;
+
+	/**
+	 * Constructs an EmptyOperator.
+	 *
+	 * @param schema The schema of the tuples the operator would produce.
+	 */
+	public EmptyOperator(Schema schema) {
+		this.schema = schema;
+	}
+
+	@Override
+	public Tuple getNextTuple() {
+		return null;
+	}
+
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public void dump() {
+	}
+}
@@ -0,0 +1,94 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.Arrays;
+
+/**
+ * ExistsOperator answers a boolean query such as Q() :- R(x, y), S(y, z). The answer is a single
+ * empty tuple if the body has at least one satisfying binding, and no tuple otherwise. The child is
+ * read only until its first row, so the rest of the plan is never enumerated once the answer is known.
+ *
+ * @author jackson-zhou
+ */
+public class ExistsOperator extends Operator {
+	private Operator operator;
+	// The schema of the answer, without columns
+	private Schema schema;
+	// Whether the answer has been returned
+	private boolean done;
+
+	/**
+	 * Constructs an ExistsOperator checking whether its child has any row.
+	 *
+	 * @param operator  The plan of the query body.
+	 * @param tableName The name of the query head, naming the answer tuple.
+	 */
+	public ExistsOperator(Operator operator, String tableName) {
+		this.operator = operator;
+		this.schema = Schema.empty(tableName);
+	}
+
+	/**
+	 * Returns the empty answer tuple if the child has a row, reading no further than that row.
+	 *
+	 * @return The empty tuple on the first call if the query is true, null otherwise.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		if (done) {
+			return null;
+		}
+		done = true;
+		Tuple tuple;
+		while ((tuple = operator.getNextTuple()) != null) {
+			// Marker tuples of rejected rows carry no values
+			if (tuple.getValue().length > 0) {
+				return new Tuple(schema, new long[0]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a batch holding the empty answer tuple if the child has a row, reading no further than its first non-empty batch.
+	 *
+	 * @return The batch of the answer on the first call if the query is true, null otherwise.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		if (done) {
+			return null;
+		}
+		done = true;
+		TupleBatch batch;
+		while ((batch = operator.getNextBatch()) != null) {
+			if (batch.getSelectedCount() > 0) {
+				return new TupleBatch(schema, new long[0][], 1);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void reset() {
+		operator.reset();
+		done = false;
+	}
+
+	@Override
+	public void close() {
+		operator.close();
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * ExternalDistinct removes duplicate rows of tuple values within a memory budget, passing every row
+ * the first time it is seen. Rows are kept in a RowHashSet until its size exceeds the budget. The
+ * rows in the set are then partitioned into temporary SpillFiles by their hash, and from then on every
+ * added row is written to a second file of its partition, to be decided once the input has ended.
+ * Each partition is then deduplicated on its own: the rows already passed are loaded into a new set,
+ * and the deferred rows not in it are returned. Partitions still too large for the budget are split
+ * again with a different hash, as the partitions of a HashJoinOperator are.
+ *
+ * @author jackson-zhou
+ */
+public class ExternalDistinct {
+	// The number of partitions the rows are split into when the set exceeds the memory budget
+	private static final int PARTITION_COUNT = 16;
+	// Partitions are split again at most this many times
+	private static final int MAX_PARTITION_LEVEL = 4;
+
+	private int width;
+	private long memoryBudget;
+	// The rows seen so far, while everything fits in memory, or of the partition being deduplicated
+	private RowHashSet rows;
+	// For every partition, the rows already passed and the rows deferred after spilling, null before spilling
+	private SpillFile[] passedPartitions;
+	private SpillFile[] deferredPartitions;
+	// The partitions still to be deduplicated, and the deferred rows of the current one
+	private Deque<SpillFile[]> pendingPartitions = new ArrayDeque<>();
+	private Deque<Integer> pendingLevels = new ArrayDeque<>();
+	private SpillFile deferred;
+	// Reused to add the rows of a batch
+	private long[] scratch;
+
+	/**
+	 * Constructs an ExternalDistinct for rows of the given width.
+	 *
+	 * @param width        The number of values in each row.
+	 * @param memoryBudget The number of bytes the rows in memory may take; at least
+	 *                     SpillFile.MIN_SPILL_ROWS rows are kept whatever the budget.
+	 */
+	public ExternalDistinct(int width, long memoryBudget) {
+		this.width = width;
+		this.memoryBudget = memoryBudget;
+		this.rows = new RowHashSet(width);
+		this.scratch = new long[width];
+	}
+
+	/**
+	 * Adds a row, deciding at once whether it is new while the rows fit in memory.
+	 *
+	 * @param row The values of the row.
+	 * @return True if the row is seen for the first time and can be passed on now, false if it is a
+	 *         duplicate or deferred to finish().
+	 * @throws IOException If the row cannot be spilled.
+	 */
+	public boolean add(long[] row) throws IOException {
+		if (deferredPartitions != null) {
+			deferredPartitions[partition(row, 0)].write(row);
+			return false;
+		}
+		if (!rows.add(row)) {
+			return false;
+		}
+		if (rows.getMemoryUsage() > memoryBudget && rows.size() > SpillFile.MIN_SPILL_ROWS) {
+			spill();
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a row of a batch whose columns hold the values of the rows.
+	 *
+	 * @param columns The column vectors of the batch, as many as the width.
+	 * @param row     The row of the batch.
+	 * @return True if the row is seen for the first time and can be passed on now.
+	 * @throws IOException If the row cannot be spilled.
+	 */
+	public boolean add(long[][] columns, int row) throws IOException {
+		for (int i = 0; i < width; i++) {
+			scratch[i] = columns[i][row];
+		}
+		return add(scratch);
+	}
+
+	/**
+	 * Ends the input and queues the partitions holding deferred rows.
+	 *
+	 * @throws IOException If the partitions cannot be written.
+	 */
+	public void finish() throws IOException {
+		rows = null;
+		if (deferredPartitions != null) {
+			queuePartitions(passedPartitions, deferredPartitions, 0);
+			passedPartitions = null;
+			deferredPartitions = null;
+		}
+	}
+
+	/**
+	 * Returns the next deferred row that was not passed before, after finish().
+	 *
+	 * @return The values of the next new row, or null if there are none left.
+	 * @throws IOException If a partition cannot be read.
+	 */
+	public long[] next() throws IOException {
+		while (true) {
+			if (deferred != null) {
+				long[] row = deferred.read();
+				if (row != null) {
+					if (rows.add(row)) {
+						return row;
+					}
+					continue;
+				}
+				deferred.delete();
+				deferred = null;
+			}
+			if (pendingPartitions.isEmpty()) {
+				rows = null;
+				return null;
+			}
+			SpillFile[] partition = pendingPartitions.pop();
+			int level = pendingLevels.pop();
+			long rowCount = partition[0].getRowCount() + partition[1].getRowCount();
+			if (rowCount * 2 * Long.BYTES * width > memoryBudget && rowCount > SpillFile.MIN_SPILL_ROWS && level < MAX_PARTITION_LEVEL) {
+				queuePartitions(repartition(partition[0], level + 1), repartition(partition[1], level + 1), level + 1);
+				continue;
+			}
+			rows = new RowHashSet(width);
+			long[] row;
+			while ((row = partition[0].read()) != null) {
+				rows.add(row);
+			}
+			partition[0].delete();
+			deferred = partition[1];
+		}
+	}
+
+	/**
+	 * Deletes all files and releases the rows held in memory.
+	 */
+	public void close() {
+		for (SpillFile[] files : new SpillFile[][]{passedPartitions, deferredPartitions}) {
+			if (files != null) {
+				for (SpillFile file : files) {
+					file.delete();
+				}
+			}
+		}
+		for (SpillFile[] partition : pendingPartitions) {
+			partition[0].delete();
+			partition[1].delete();
+		}
+		pendingPartitions.clear();
+		pendingLevels.clear();
+		if (deferred != null) {
+			deferred.delete();
+			deferred = null;
+		}
+		rows = null;
+	}
+
+	/**
+	 * Writes the rows in memory to the partitions of the rows already passed, and opens the
+	 * partitions of the rows still to come.
+	 */
+	private void spill() throws IOException {
+		passedPartitions = createPartitions();
+		deferredPartitions = createPartitions();
+		for (int i = 0; i < rows.size(); i++) {
+			long[] row = rows.getRow(i);
+			passedPartitions[partition(row, 0)].write(row);
+		}
+		rows = null;
+	}
+
+	/**
+	 * Queues the partitions that hold deferred rows, deleting the others.
+	 */
+	private void queuePartitions(SpillFile[] passed, SpillFile[] deferredRows, int level) throws IOException {
+		for (int i = 0; i < PARTITION_COUNT; i++) {
+			passed[i].closeOutput();
+			deferredRows[i].closeOutput();
+			if (deferredRows[i].getRowCount() == 0) {
+				passed[i].delete();
+				deferredRows[i].delete();
+			} else {
+				pendingPartitions.push(new SpillFile[]{passed[i], deferredRows[i]});
+				pendingLevels.push(level);
+			}
+		}
+	}
+
+	/**
+	 * Splits a file into PARTITION_COUNT partitions by the hash of the given level, and deletes it.
+	 */
+	private SpillFile[] repartition(SpillFile file, int level) throws IOException {
+		SpillFile[] partitions = createPartitions();
+		long[] row;
+		while ((row = file.read()) != null) {
+			partitions[partition(row, level)].write(row);
+		}
+		file.delete();
+		return partitions;
+	}
+
+	private SpillFile[] createPartitions() throws IOException {
+		SpillFile[] partitions = new SpillFile[PARTITION_COUNT];
+		for (int i = 0; i < partitions.length; i++) {
+			partitions[i] = new SpillFile(width);
+		}
+		return partitions;
+	}
+
+	/**
+	 * Chooses the partition of a row at a level, with a seed per level that differs from the one of the RowHashSet.
+	 */
+	private static int partition(long[] row, int level) {
+		return RowHashSet.hash(row, level + 1) >>> 28;
+	}
+}
@@ -0,0 +1,226 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * ExternalSorter sorts rows of tuple values on some of their columns within a memory budget.
+ * Rows are collected in memory until the budget is used up, then sorted and spilled to a temporary
+ * SpillFile as a sorted run. When all rows are added, the runs are merged with a priority queue,
+ * at most MAX_FAN_IN at a time, so the sorted rows can be read back one by one.
+ * Inputs that fit in the budget are sorted in memory and never touch the disk.
+ *
+ * @author jackson-zhou
+ */
+public class ExternalSorter {
+	// The maximum number of runs merged at once, which bounds the open files and read buffers
+	private static final int MAX_FAN_IN = 64;
+	// The estimated heap bytes of a row besides its values: the array header and the list reference
+	private static final int ROW_OVERHEAD = 24;
+
+	// The number of values in each row
+	private int width;
+	// Orders rows by their key columns
+	private Comparator<long[]> comparator;
+	// The number of bytes the rows held in memory may take
+	private long memoryBudget;
+	// The rows added since the last run was spilled, and their estimated size in bytes
+	private List<long[]> rows = new ArrayList<>();
+	private long memoryUsed;
+	// The runs spilled to disk so far
+	private List<Run> runs = new ArrayList<>();
+	// The position of the next row in memory, when no run was spilled
+	private int rowIndex;
+	// The runs being merged, ordered by their current row
+	private PriorityQueue<Run> mergeQueue;
+
+	/**
+	 * Constructs an ExternalSorter for rows of the given width.
+	 *
+	 * @param width        The number of values in each row.
+	 * @param keyIndex     The positions of the columns to sort on, most significant first.
+	 * @param memoryBudget The number of bytes the rows held in memory may take, raised to hold at least
+	 *                     SpillFile.MIN_SPILL_ROWS rows.
+	 */
+	public ExternalSorter(int width, int[] keyIndex, long memoryBudget) {
+		this.width = width;
+		this.comparator = (a, b) -> compareKeys(a, keyIndex, b, keyIndex);
+		this.memoryBudget = Math.max(memoryBudget, SpillFile.MIN_SPILL_ROWS * (ROW_OVERHEAD + (long) Long.BYTES * width));
+	}
+
+	/**
+	 * Compares the key columns of two rows, column by column.
+	 *
+	 * @param a      The first row.
+	 * @param aIndex The positions of the key columns in the first row.
+	 * @param b      The second row.
+	 * @param bIndex The positions of the key columns in the second row, as many as in the first.
+	 * @return A negative number, zero, or a positive number as the first key is smaller than, equal to, or greater than the second.
+	 */
+	public static int compareKeys(long[] a, int[] aIndex, long[] b, int[] bIndex) {
+		for (int i = 0; i < aIndex.length; i++) {
+			int comparison = Long.compare(a[aIndex[i]], b[bIndex[i]]);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Adds a row to be sorted, spilling the rows in memory as a sorted run when the budget is used up.
+	 *
+	 * @param row The values of the row, which must not be modified afterwards.
+	 * @throws IOException If a run cannot be written.
+	 */
+	public void add(long[] row) throws IOException {
+		rows.add(row);
+		memoryUsed += ROW_OVERHEAD + (long) Long.BYTES * width;
+		if (memoryUsed >= memoryBudget) {
+			spill();
+		}
+	}
+
+	/**
+	 * Ends the input and prepares the rows to be read in sorted order.
+	 *
+	 * @throws IOException If the runs cannot be written or merged.
+	 */
+	public void finish() throws IOException {
+		if (runs.isEmpty()) {
+			rows.sort(comparator);
+			rowIndex = 0;
+			return;
+		}
+		if (!rows.isEmpty()) {
+			spill();
+		}
+		// Merge groups of runs until they can all be merged at once
+		while (runs.size() > MAX_FAN_IN) {
+			List<Run> merged = new ArrayList<>();
+			for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+				merged.add(merge(runs.subList(i, Math.min(i + MAX_FAN_IN, runs.size()))));
+			}
+			runs = merged;
+		}
+		mergeQueue = openQueue(runs);
+	}
+
+	/**
+	 * Returns the next row in sorted order.
+	 *
+	 * @return The next row, or null if all rows have been read.
+	 * @throws IOException If a run cannot be read.
+	 */
+	public long[] next() throws IOException {
+		if (mergeQueue == null) {
+			return rowIndex < rows.size() ? rows.get(rowIndex++) : null;
+		}
+		return nextMerged(mergeQueue);
+	}
+
+	/**
+	 * Returns the number of runs spilled to disk.
+	 *
+	 * @return The number of sorted runs, 0 if the rows were sorted in memory.
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+
+	/**
+	 * Deletes the run files and releases the rows held in memory.
+	 */
+	public void close() {
+		for (Run run : runs) {
+			run.file.delete();
+		}
+		runs.clear();
+		rows = new ArrayList<>();
+		memoryUsed = 0;
+		mergeQueue = null;
+	}
+
+	/**
+	 * Sorts the rows in memory and writes them to a new run file.
+	 */
+	private void spill() throws IOException {
+		rows.sort(comparator);
+		Run run = new Run(width);
+		for (long[] row : rows) {
+			run.file.write(row);
+		}
+		run.file.closeOutput();
+		runs.add(run);
+		rows = new ArrayList<>();
+		memoryUsed = 0;
+	}
+
+	/**
+	 * Merges some runs into one new run and deletes them.
+	 */
+	private Run merge(List<Run> group) throws IOException {
+		Run merged = new Run(width);
+		PriorityQueue<Run> queue = openQueue(group);
+		long[] row;
+		while ((row = nextMerged(queue)) != null) {
+			merged.file.write(row);
+		}
+		merged.file.closeOutput();
+		for (Run run : group) {
+			run.file.delete();
+		}
+		return merged;
+	}
+
+	/**
+	 * Opens the given runs for reading and puts those holding rows into a queue ordered by their first row.
+	 */
+	private PriorityQueue<Run> openQueue(List<Run> group) throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<>(group.size(), (a, b) -> comparator.compare(a.current, b.current));
+		for (Run run : group) {
+			if (run.advance()) {
+				queue.add(run);
+			}
+		}
+		return queue;
+	}
+
+	/**
+	 * Takes the smallest current row of the queued runs and advances its run.
+	 */
+	private static long[] nextMerged(PriorityQueue<Run> queue) throws IOException {
+		Run run = queue.poll();
+		if (run == null) {
+			return null;
+		}
+		long[] row = run.current;
+		if (run.advance()) {
+			queue.add(run);
+		}
+		return row;
+	}
+
+	/**
+	 * A sorted run stored in a SpillFile, and its current row while it is merged.
+	 */
+	private static class Run {
+		private SpillFile file;
+		private long[] current;
+
+		private Run(int width) throws IOException {
+			this.file = new SpillFile(width);
+		}
+
+		/**
+		 * Reads the next row of the run into current.
+		 */
+		private boolean advance() throws IOException {
+			current = file.read();
+			return current != null;
+		}
+	}
+}
@@ -0,0 +1,398 @@
+package ed.inf.adbs.minibase.Operator;
+
+import ed.inf.adbs.minibase.base.Head;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FactorizedAggregateOperator evaluates the SUM aggregate of an acyclic query over the factorized
+ * join result, without ever building the flat join. The atoms are visited bottom-up along the join
+ * tree of the QueryHypergraph. Every atom streams its rows, joins each row with the summaries of its
+ * children and adds the row's weight to its own summary: a map from the values of the variables that
+ * are still needed above the atom, those it shares with its parent and the head variables found in
+ * its subtree, to the sum over all partial join results with these values. The weight of a partial
+ * result is the product of the aggregate's variables bound in it, each taken from the one atom that
+ * owns it; a summary entry thus stands for the whole union of products below it, and the variables
+ * that are only joined on below are summed out as soon as they are no longer needed.
+ * The summary of the root is grouped by the head variables and holds the result.
+ * Rows that match no entry of a child's summary drop out, so dangling rows cost one probe each.
+ *
+ * @author jackson-zhou
+ */
+public class FactorizedAggregateOperator extends Operator {
+	// The operator reading each atom, which has already tested the atom's constants and comparisons
+	private List<Operator> inputs;
+	// The join tree: the parent of each atom and the atoms in bottom-up order
+	private int[] parent;
+	private int[] eliminationOrder;
+	// The variables that the head groups by, in the order of the head
+	private List<String> groupVariables;
+	// The variables of the aggregate's product, and the product of its constants
+	private List<String> productVariables = new ArrayList<>();
+	private long constantFactor = 1;
+	private Schema schema;
+	// The groups of the root and their sums, null until the child summaries have been computed
+	private Map<TupleKey, long[]> groups;
+	private Iterator<Map.Entry<TupleKey, long[]>> output;
+
+	/**
+	 * Constructs a FactorizedAggregateOperator computing the sum aggregate of a head over an acyclic query.
+	 *
+	 * @param inputs     The filtered scans of the atoms, in the order of the query body, holding
+	 *                   every variable the atom shares with another atom or with the head.
+	 * @param hypergraph The hypergraph of the query, which must be acyclic.
+	 * @param head       The head of the query, with a sum aggregate.
+	 */
+	public FactorizedAggregateOperator(List<Operator> inputs, QueryHypergraph hypergraph, Head head) {
+		this.inputs = inputs;
+		this.parent = hypergraph.getJoinTreeParents();
+		this.eliminationOrder = hypergraph.getEliminationOrder();
+		groupVariables = new ArrayList<>();
+		List<String> columnTypes = new ArrayList<>();
+		for (Variable variable : head.getVariables()) {
+			String name = variable.toString().trim();
+			groupVariables.add(name);
+			for (Operator input : inputs) {
+				int column = input.getSchema().indexOf(name);
+				if (column >= 0) {
+					columnTypes.add(input.getSchema().getColumnTypes().get(column));
+					break;
+				}
+			}
+		}
+		for (Term term : head.getSumAggregate().getProductTerms()) {
+			if (term instanceof Variable) {
+				productVariables.add(term.toString().trim());
+			} else if (term instanceof IntegerConstant) {
+				constantFactor *= ((IntegerConstant) term).getValue();
+			}
+		}
+		List<String> columnNames = new ArrayList<>(groupVariables);
+		columnNames.add(head.getSumAggregate().toString());
+		columnTypes.add("int");
+		schema = new Schema(inputs.get(0).getSchema().getTableName(), columnNames, columnTypes);
+	}
+
+	/**
+	 * Computes the summaries of all atoms bottom-up and keeps the one of the root.
+	 *
+	 * @param batchMode True to read the atoms batch at a time.
+	 */
+	private void aggregate(boolean batchMode) {
+		int atomCount = inputs.size();
+		// The atoms below each atom, itself included
+		List<Set<Integer>> subtrees = new ArrayList<>();
+		for (int i = 0; i < atomCount; i++) {
+			subtrees.add(new HashSet<>(Collections.singleton(i)));
+		}
+		for (int atom : eliminationOrder) {
+			if (parent[atom] >= 0) {
+				subtrees.get(parent[atom]).addAll(subtrees.get(atom));
+			}
+		}
+		// Every product variable is owned by the first atom holding it in bottom-up order, which
+		// multiplies in one factor per occurrence of the variable in the product
+		Map<String, Integer> owners = new HashMap<>();
+		List<Summary> summaries = new ArrayList<>(Collections.nCopies(atomCount, null));
+		Summary root = null;
+		for (int atom : eliminationOrder) {
+			List<String> columns = inputs.get(atom).getSchema().getColumnNames();
+			List<Integer> ownedColumns = new ArrayList<>();
+			for (String variable : productVariables) {
+				int column = columns.indexOf(variable);
+				if (column < 0) {
+					continue;
+				}
+				Integer owner = owners.putIfAbsent(variable, atom);
+				if (owner == null || owner == atom) {
+					ownedColumns.add(column);
+				}
+			}
+			// The variables kept in the summary: the head variables and those shared outside the subtree
+			Set<String> outside = new HashSet<>();
+			for (int i = 0; i < atomCount; i++) {
+				if (!subtrees.get(atom).contains(i)) {
+					outside.addAll(inputs.get(i).getSchema().getColumnNames());
+				}
+			}
+			List<Summary> children = new ArrayList<>();
+			for (int i = 0; i < atomCount; i++) {
+				if (parent[i] == atom) {
+					children.add(summaries.get(i));
+				}
+			}
+			Summary summary = new Summary(columns, ownedColumns, children, outside, parent[atom] < 0);
+			summary.build(inputs.get(atom), batchMode);
+			summaries.set(atom, summary);
+			for (int i = 0; i < atomCount; i++) {
+				if (parent[i] == atom) {
+					// The summaries of the children are no longer needed
+					summaries.set(i, null);
+				}
+			}
+			root = summary;
+		}
+		groups = root.sums;
+		output = groups.entrySet().iterator();
+	}
+
+	/**
+	 * Returns the next group with its sum, aggregating the atoms on the first call.
+	 *
+	 * @return The next aggregated tuple, or null when all groups have been returned.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		if (groups == null) {
+			aggregate(false);
+		}
+		return output.hasNext() ? toTuple(output.next()) : null;
+	}
+
+	/**
+	 * Returns the next groups with their sums as a batch, reading the atoms batch at a time on the first call.
+	 *
+	 * @return The next batch of aggregated tuples, or null when all groups have been returned.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		if (groups == null) {
+			aggregate(true);
+		}
+		long[][] columns = new long[schema.size()][TupleBatch.BATCH_SIZE];
+		int rowCount = 0;
+		while (rowCount < TupleBatch.BATCH_SIZE && output.hasNext()) {
+			long[] values = toTuple(output.next()).getValue();
+			for (int c = 0; c < columns.length; c++) {
+				columns[c][rowCount] = values[c];
+			}
+			rowCount++;
+		}
+		return rowCount == 0 ? null : new TupleBatch(schema, columns, rowCount);
+	}
+
+	/**
+	 * Builds the output tuple of a group: its group by values followed by its sum times the constants.
+	 */
+	private Tuple toTuple(Map.Entry<TupleKey, long[]> group) {
+		long[] values = Arrays.copyOf(group.getKey().getValues(), groupVariables.size() + 1);
+		values[groupVariables.size()] = group.getValue()[0] * constantFactor;
+		return new Tuple(schema, values);
+	}
+
+	/**
+	 * Resets the operator, so that the atoms are aggregated again on the next call.
+	 */
+	@Override
+	public void reset() {
+		for (Operator input : inputs) {
+			input.reset();
+		}
+		groups = null;
+	}
+
+	/**
+	 * Closes the operators reading the atoms.
+	 */
+	@Override
+	public void close() {
+		for (Operator input : inputs) {
+			input.close();
+		}
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+
+	/**
+	 * The summary of the subtree of one atom: the sum of the weights of its partial join results,
+	 * grouped by the variables still needed above it.
+	 */
+	private class Summary {
+		// The variables of a partial result: the atom's columns followed by those only its children's summaries hold
+		private List<String> layout;
+		// The columns of the atom that own a product variable
+		private int[] ownedIndex;
+		// For each child: the positions in the layout of its join variables and of the variables it adds,
+		// and its entries indexed by the join values, each holding the added values followed by the sum
+		private int[][] childJoinIndex;
+		private int[][] childExtraIndex;
+		private List<Map<TupleKey, List<long[]>>> childEntries = new ArrayList<>();
+		// The variables of the summary, as positions in the layout, in the order of the head at the root
+		private List<String> keyVariables = new ArrayList<>();
+		private int[] keyIndex;
+		private Map<TupleKey, long[]> sums = new HashMap<>();
+		// Scratch space for the partial result being built and for probing
+		private long[] partial;
+		private TupleKey[] probeKeys;
+		private TupleKey sumKey;
+
+		/**
+		 * Lays out the summary of an atom over the summaries of its children.
+		 *
+		 * @param columns      The columns of the atom.
+		 * @param ownedColumns The columns of the atom owning a product variable.
+		 * @param children     The summaries of the atom's children in the join tree.
+		 * @param outside      The variables of the atoms outside the atom's subtree.
+		 * @param root         Whether the atom is the root, whose summary is grouped by the head variables.
+		 */
+		private Summary(List<String> columns, List<Integer> ownedColumns, List<Summary> children, Set<String> outside, boolean root) {
+			layout = new ArrayList<>(columns);
+			ownedIndex = ownedColumns.stream().mapToInt(Integer::intValue).toArray();
+			childJoinIndex = new int[children.size()][];
+			childExtraIndex = new int[children.size()][];
+			probeKeys = new TupleKey[children.size()];
+			for (int c = 0; c < children.size(); c++) {
+				Summary child = children.get(c);
+				List<Integer> joinPositions = new ArrayList<>();
+				List<Integer> childJoin = new ArrayList<>();
+				List<Integer> childExtra = new ArrayList<>();
+				List<Integer> extraPositions = new ArrayList<>();
+				for (int k = 0; k < child.keyVariables.size(); k++) {
+					String variable = child.keyVariables.get(k);
+					if (layout.contains(variable)) {
+						joinPositions.add(layout.indexOf(variable));
+						childJoin.add(k);
+					} else {
+						extraPositions.add(layout.size());
+						layout.add(variable);
+						childExtra.add(k);
+					}
+				}
+				childJoinIndex[c] = joinPositions.stream().mapToInt(Integer::intValue).toArray();
+				childExtraIndex[c] = extraPositions.stream().mapToInt(Integer::intValue).toArray();
+				probeKeys[c] = new TupleKey(new long[childJoinIndex[c].length]);
+				// Index the child's entries by their join values, keeping the added values and the sum
+				Map<TupleKey, List<long[]>> entries = new HashMap<>();
+				for (Map.Entry<TupleKey, long[]> entry : child.sums.entrySet()) {
+					long[] key = entry.getKey().getValues();
+					long[] joinValues = new long[childJoin.size()];
+					for (int j = 0; j < joinValues.length; j++) {
+						joinValues[j] = key[childJoin.get(j)];
+					}
+					long[] extra = new long[childExtra.size() + 1];
+					for (int j = 0; j < childExtra.size(); j++) {
+						extra[j] = key[childExtra.get(j)];
+					}
+					extra[childExtra.size()] = entry.getValue()[0];
+					entries.computeIfAbsent(new TupleKey(joinValues), k -> new ArrayList<>()).add(extra);
+				}
+				childEntries.add(entries);
+			}
+			if (root) {
+				keyVariables.addAll(groupVariables);
+			} else {
+				for (String variable : layout) {
+					if (outside.contains(variable) || groupVariables.contains(variable)) {
+						keyVariables.add(variable);
+					}
+				}
+			}
+			keyIndex = new int[keyVariables.size()];
+			for (int k = 0; k < keyIndex.length; k++) {
+				keyIndex[k] = layout.indexOf(keyVariables.get(k));
+			}
+			partial = new long[layout.size()];
+			sumKey = new TupleKey(new long[keyIndex.length]);
+		}
+
+		/**
+		 * Streams the rows of the atom and adds every partial result they take part in to the summary.
+		 *
+		 * @param input     The operator reading the atom.
+		 * @param batchMode True to read the atom batch at a time.
+		 */
+		private void build(Operator input, boolean batchMode) {
+			int width = input.getSchema().size();
+			if (batchMode) {
+				TupleBatch batch;
+				while ((batch = input.getNextBatch()) != null) {
+					long[][] columns = batch.getColumns();
+					for (int k = 0; k < batch.getSelectedCount(); k++) {
+						int row = batch.getSelection()[k];
+						for (int c = 0; c < width; c++) {
+							partial[c] = columns[c][row];
+						}
+						addRow();
+					}
+				}
+			} else {
+				Tuple tuple;
+				while ((tuple = input.getNextTuple()) != null) {
+					// Marker tuples of rejected rows carry no values
+					if (tuple.getValue().length == 0) {
+						continue;
+					}
+					System.arraycopy(tuple.getValue(), 0, partial, 0, width);
+					addRow();
+				}
+			}
+			childEntries = null;
+		}
+
+		/**
+		 * Adds the row of the atom held at the start of the partial result.
+		 */
+		private void addRow() {
+			long weight = 1;
+			for (int column : ownedIndex) {
+				weight *= partial[column];
+			}
+			expand(0, weight);
+		}
+
+		/**
+		 * Joins the partial result with the entries of the children from the given one on,
+		 * and adds every complete combination to the summary.
+		 *
+		 * @param child  The first child not yet joined.
+		 * @param weight The weight of the partial result so far.
+		 */
+		private void expand(int child, long weight) {
+			if (child == childEntries.size()) {
+				sumKey.setProbe(partial, keyIndex);
+				long[] sum = sums.get(sumKey);
+				if (sum == null) {
+					sum = new long[1];
+					sums.put(TupleKey.of(partial, keyIndex), sum);
+				}
+				sum[0] += weight;
+				return;
+			}
+			TupleKey probeKey = probeKeys[child];
+			probeKey.setProbe(partial, childJoinIndex[child]);
+			List<long[]> matches = childEntries.get(child).get(probeKey);
+			if (matches == null) {
+				return;
+			}
+			int[] extraIndex = childExtraIndex[child];
+			for (long[] match : matches) {
+				for (int j = 0; j < extraIndex.length; j++) {
+					partial[extraIndex[j]] = match[j];
+				}
+				expand(child + 1, weight * match[extraIndex.length]);
+			}
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package ed.inf.adbs.minibase.Operator;
+
+import ed.inf.adbs.minibase.base.Head;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * HashAggregateOperator evaluates the SUM aggregate of a query head, grouped by the head's other
+ * variables. It reads its child incrementally, batch at a time or tuple at a time, and adds the
+ * product of the aggregate's terms for every row to a primitive long accumulator of the row's group.
+ * The groups are kept in a HashMap keyed by the TupleKey of the group by columns, probed with one
+ * reused key, so memory grows with the number of groups rather than the number of input rows.
+ * Every input row counts, as the aggregate is evaluated over the bag of all join results.
+ * <p>
+ * With more than one thread, batches are pre-aggregated in parallel on the common fork-join pool:
+ * every task adds a batch to a partial map that no other task uses at the same time, and the partial
+ * maps are then merged partition by partition, each partition of the group keys by its own task.
+ * The sums are long additions, which do not depend on the order they are done in, so the result
+ * is exactly the one of the single-threaded aggregation.
+ *
+ * @author jackson-zhou
+ */
+public class HashAggregateOperator extends Operator {
+	private Operator operator;
+	// The schema of the aggregated tuples: the group by variables followed by the sum
+	private Schema schema;
+	// The positions in the child's tuples of the group by variables
+	private int[] groupIndex;
+	// The positions in the child's tuples of the variables of the product, and the product of its constants
+	private int[] productIndex;
+	private long constantFactor = 1;
+	// The number of threads aggregating batches
+	private int parallelism;
+	// The sum of each group, keyed by its group by values, in one map per partition of the keys;
+	// null until the child has been aggregated
+	private List<Map<TupleKey, long[]>> partitions;
+	// The partition whose groups are being returned, and its groups still to be returned
+	private int partitionIndex;
+	private Iterator<Map.Entry<TupleKey, long[]>> output;
+
+	/**
+	 * Constructs a HashAggregateOperator computing the sum aggregate of a head over a child.
+	 *
+	 * @param operator The child whose tuples are aggregated, holding every variable of the head.
+	 * @param head     The head of the query, with a sum aggregate.
+	 */
+	public HashAggregateOperator(Operator operator, Head head) {
+		this(operator, head, 1);
+	}
+
+	/**
+	 * Constructs a HashAggregateOperator computing the sum aggregate of a head over a child,
+	 * pre-aggregating the batches of the child on several threads.
+	 *
+	 * @param operator    The child whose tuples are aggregated, holding every variable of the head.
+	 * @param head        The head of the query, with a sum aggregate.
+	 * @param parallelism The number of threads aggregating batches, 1 to aggregate on the calling thread.
+	 */
+	public HashAggregateOperator(Operator operator, Head head, int parallelism) {
+		this.operator = operator;
+		this.parallelism = parallelism;
+		Schema inputSchema = operator.getSchema();
+		List<String> columnNames = new ArrayList<>();
+		List<String> columnTypes = new ArrayList<>();
+		groupIndex = new int[head.getVariables().size()];
+		for (int i = 0; i < groupIndex.length; i++) {
+			groupIndex[i] = inputSchema.indexOf(head.getVariables().get(i).toString().trim());
+			columnNames.add(inputSchema.getColumnNames().get(groupIndex[i]));
+			columnTypes.add(inputSchema.getColumnTypes().get(groupIndex[i]));
+		}
+		List<Integer> productList = new ArrayList<>();
+		for (Term term : head.getSumAggregate().getProductTerms()) {
+			if (term instanceof Variable) {
+				productList.add(inputSchema.indexOf(term.toString().trim()));
+			} else if (term instanceof IntegerConstant) {
+				// The constants are multiplied once, not for every row
+				constantFactor *= ((IntegerConstant) term).getValue();
+			}
+		}
+		productIndex = new int[productList.size()];
+		for (int i = 0; i < productIndex.length; i++) {
+			productIndex[i] = productList.get(i);
+		}
+		columnNames.add(head.getSumAggregate().toString());
+		columnTypes.add("int");
+		schema = new Schema(inputSchema.getTableName(), columnNames, columnTypes);
+	}
+
+	/**
+	 * Aggregates the whole child into the groups, reading it by batch or by tuple.
+	 *
+	 * @param batchMode True to read the child batch at a time.
+	 */
+	private void aggregate(boolean batchMode) {
+		if (batchMode && parallelism > 1) {
+			partitions = aggregateParallel();
+		} else {
+			Map<TupleKey, long[]> groups = new HashMap<>();
+			TupleKey probeKey = new TupleKey(new long[groupIndex.length]);
+			if (batchMode) {
+				TupleBatch batch;
+				while ((batch = operator.getNextBatch()) != null) {
+					accumulate(groups, probeKey, batch);
+				}
+			} else {
+				Tuple tuple;
+				while ((tuple = operator.getNextTuple()) != null) {
+					long[] values = tuple.getValue();
+					// Marker tuples of rejected rows carry no values
+					if (values.length == 0) {
+						continue;
+					}
+					long product = constantFactor;
+					for (int p : productIndex) {
+						product *= values[p];
+					}
+					probeKey.setProbe(values, groupIndex);
+					long[] sum = groups.get(probeKey);
+					if (sum == null) {
+						sum = new long[1];
+						groups.put(TupleKey.of(values, groupIndex), sum);
+					}
+					sum[0] += product;
+				}
+			}
+			partitions = Collections.singletonList(groups);
+		}
+		partitionIndex = 0;
+		output = Collections.emptyIterator();
+	}
+
+	/**
+	 * Adds the selected rows of a batch to the sums of their groups.
+	 *
+	 * @param groups   The groups to add the rows to.
+	 * @param probeKey A key of the width of the group by columns, used to probe the groups.
+	 * @param batch    The batch to be aggregated.
+	 */
+	private void accumulate(Map<TupleKey, long[]> groups, TupleKey probeKey, TupleBatch batch) {
+		long[][] columns = batch.getColumns();
+		int[] selection = batch.getSelection();
+		for (int k = 0; k < batch.getSelectedCount(); k++) {
+			int row = selection[k];
+			long product = constantFactor;
+			for (int p : productIndex) {
+				product *= columns[p][row];
+			}
+			probeKey.setProbe(columns, groupIndex, row);
+			long[] sum = groups.get(probeKey);
+			if (sum == null) {
+				sum = new long[1];
+				groups.put(new TupleKey(probeKey.getValues().clone()), sum);
+			}
+			sum[0] += product;
+		}
+	}
+
+	/**
+	 * Aggregates the child on the common fork-join pool. The calling thread pulls the batches and
+	 * hands each to a task, as operators never touch a batch again once they returned it. A task
+	 * takes an idle partial map, or creates one, so each partial map is used by one task at a time,
+	 * and at most a few batches per thread are in flight. The partial maps are then split by the hash
+	 * of the group keys and every partition is merged by its own task. If any task fails, the tasks
+	 * still running are cancelled and the failure is thrown, as the sums of the other tasks alone
+	 * would be wrong.
+	 *
+	 * @return The groups, one map per partition.
+	 * @throws IllegalStateException If the child or a task fails, or the thread is interrupted.
+	 */
+	private List<Map<TupleKey, long[]>> aggregateParallel() {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		ConcurrentLinkedQueue<Map<TupleKey, long[]>> idle = new ConcurrentLinkedQueue<>();
+		List<Map<TupleKey, long[]>> partials = Collections.synchronizedList(new ArrayList<>());
+		ArrayDeque<Future<?>> inFlight = new ArrayDeque<>();
+		List<Future<List<List<Map.Entry<TupleKey, long[]>>>>> splits = new ArrayList<>();
+		List<Future<Map<TupleKey, long[]>>> merges = new ArrayList<>();
+		List<Map<TupleKey, long[]>> merged = new ArrayList<>();
+		try {
+			TupleBatch batch;
+			while ((batch = operator.getNextBatch()) != null) {
+				TupleBatch task = batch;
+				inFlight.add(pool.submit(() -> {
+					Map<TupleKey, long[]> groups = idle.poll();
+					if (groups == null) {
+						groups = new HashMap<>();
+						partials.add(groups);
+					}
+					accumulate(groups, new TupleKey(new long[groupIndex.length]), task);
+					idle.add(groups);
+				}));
+				if (inFlight.size() >= 2 * parallelism) {
+					inFlight.poll().get();
+				}
+			}
+			while (!inFlight.isEmpty()) {
+				inFlight.poll().get();
+			}
+
+			// Split every partial map into the partitions of the group keys
+			int partitionCount = Integer.highestOneBit(parallelism) * 2;
+			for (Map<TupleKey, long[]> partial : partials) {
+				splits.add(pool.submit(() -> {
+					List<List<Map.Entry<TupleKey, long[]>>> split = new ArrayList<>();
+					for (int p = 0; p < partitionCount; p++) {
+						split.add(new ArrayList<>());
+					}
+					for (Map.Entry<TupleKey, long[]> entry : partial.entrySet()) {
+						split.get(entry.getKey().hashCode() & (partitionCount - 1)).add(entry);
+					}
+					return split;
+				}));
+			}
+			List<List<List<Map.Entry<TupleKey, long[]>>>> splitPartials = new ArrayList<>();
+			for (Future<List<List<Map.Entry<TupleKey, long[]>>>> split : splits) {
+				splitPartials.add(split.get());
+			}
+			// Merge every partition of all partial maps into one map
+			for (int p = 0; p < partitionCount; p++) {
+				int partition = p;
+				merges.add(pool.submit(() -> {
+					Map<TupleKey, long[]> groups = new HashMap<>();
+					for (List<List<Map.Entry<TupleKey, long[]>>> split : splitPartials) {
+						for (Map.Entry<TupleKey, long[]> entry : split.get(partition)) {
+							long[] sum = groups.putIfAbsent(entry.getKey(), entry.getValue());
+							if (sum != null) {
+								sum[0] += entry.getValue()[0];
+							}
+						}
+					}
+					return groups;
+				}));
+			}
+			for (Future<Map<TupleKey, long[]>> merge : merges) {
+				merged.add(merge.get());
+			}
+		} catch (Exception e) {
+			for (Future<?> future : inFlight) {
+				future.cancel(true);
+			}
+			for (Future<?> future : splits) {
+				future.cancel(true);
+			}
+			for (Future<?> future : merges) {
+				future.cancel(true);
+			}
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Parallel aggregation failed", cause);
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the next group with its sum, aggregating the child on the first call.
+	 *
+	 * @return The next aggregated tuple, or null when all groups have been returned.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		if (partitions == null) {
+			aggregate(false);
+		}
+		return nextGroup() ? toTuple(output.next()) : null;
+	}
+
+	/**
+	 * Returns the next groups with their sums as a batch, aggregating the child batch at a time on the first call.
+	 *
+	 * @return The next batch of aggregated tuples, or null when all groups have been returned.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		if (partitions == null) {
+			aggregate(true);
+		}
+		long[][] columns = new long[schema.size()][TupleBatch.BATCH_SIZE];
+		int rowCount = 0;
+		while (rowCount < TupleBatch.BATCH_SIZE && nextGroup()) {
+			long[] values = toTuple(output.next()).getValue();
+			for (int c = 0; c < columns.length; c++) {
+				columns[c][rowCount] = values[c];
+			}
+			rowCount++;
+		}
+		return rowCount == 0 ? null : new TupleBatch(schema, columns, rowCount);
+	}
+
+	/**
+	 * Moves on to the next partition until there is a group left to be returned.
+	 *
+	 * @return True if there is a next group.
+	 */
+	private boolean nextGroup() {
+		while (!output.hasNext() && partitionIndex < partitions.size()) {
+			output = partitions.get(partitionIndex++).entrySet().iterator();
+		}
+		return output.hasNext();
+	}
+
+	/**
+	 * Builds the output tuple of a group: its group by values followed by its sum.
+	 */
+	private Tuple toTuple(Map.Entry<TupleKey, long[]> group) {
+		long[] values = Arrays.copyOf(group.getKey().getValues(), groupIndex.length + 1);
+		values[groupIndex.length] = group.getValue()[0];
+		return new Tuple(schema, values);
+	}
+
+	/**
+	 * Resets the operator, so that the child is aggregated again on the next call.
+	 */
+	@Override
+	public void reset() {
+		operator.reset();
+		partitions = null;
+	}
+
+	/**
+	 * Closes the child.
+	 */
+	@Override
+	public void close() {
+		operator.close();
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+}
@@ -0,0 +1,558 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * HashJoinOperator performs an equi-join of two child operators on the variables they share.
+ * On the first call it builds a hash table over the right (inner) child, keyed by the values of
+ * the shared variables, and then probes that table with every tuple of the left (outer) child.
+ * Children without shared variables are joined as a cross product.
+ * When the hash table grows beyond the memory budget, the join turns into a Grace hash join: both
+ * children are partitioned into SpillFiles by the hash of the join key, and the partition pairs are
+ * joined one after the other, splitting again with a different hash those still too large to fit.
+ * QueryPlan chains these binary joins into a left-deep tree.
+ *
+ * @author jackson-zhou
+ */
+public class HashJoinOperator extends Operator {
+	// The number of partitions an input is split into when the hash table exceeds the memory budget
+	private static final int PARTITION_COUNT = 16;
+	// Partitions are split again at most this many times, further splits cannot separate rows sharing one key
+	private static final int MAX_PARTITION_LEVEL = 4;
+
+	// The outer (probe) and inner (build) child operators
+	private Operator leftOperator;
+	private Operator rightOperator;
+	// Positions of the shared variables in the left and right tuples, pairwise aligned
+	private int[] leftKeyIndex;
+	private int[] rightKeyIndex;
+	// Pairs of positions that hold the same variable inside one child and must be equal
+	private int[][] leftRepeatedIndex;
+	private int[][] rightRepeatedIndex;
+	// Hash table built over the right child, from join key to all matching right tuples
+	private HashMap<TupleKey, List<Tuple>> hashTable;
+	// The current left tuple and the right tuples it matches
+	private Tuple leftTuple;
+	private List<Tuple> matchList = Collections.emptyList();
+	private int matchIndex;
+	// The schema of the joined tuples: the left columns followed by the right columns
+	private Schema schema;
+	// The left batch being probed, the position of the next row in its selection vector and the current row
+	private TupleBatch probeBatch;
+	private int probeIndex;
+	private int probeRow;
+	// The right tuples matching the current row of the probe batch
+	private List<Tuple> batchMatchList = Collections.emptyList();
+	private int batchMatchIndex;
+	// The key reused to probe the hash table with the rows of a batch
+	private TupleKey probeKey;
+	// The number of bytes the hash table may take before the inputs are partitioned to disk
+	private long memoryBudget;
+	// Whether the inputs were partitioned to disk because the hash table exceeded the memory budget
+	private boolean spilled;
+	// The partition pairs still to be joined
+	private Deque<Partition> pendingPartitions = new ArrayDeque<>();
+	// The left partition probed against the hash table built over its right partition
+	private SpillFile probePartition;
+
+	/**
+	 * Constructs a HashJoinOperator joining the tuples of two child operators in memory.
+	 *
+	 * @param leftOperator  The outer child, probed against the hash table.
+	 * @param rightOperator The inner child, used to build the hash table.
+	 */
+	public HashJoinOperator(Operator leftOperator, Operator rightOperator) {
+		this(leftOperator, rightOperator, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs a HashJoinOperator joining the tuples of two child operators, partitioning them
+	 * to disk when the hash table exceeds the memory budget.
+	 *
+	 * @param leftOperator  The outer child, probed against the hash table.
+	 * @param rightOperator The inner child, used to build the hash table.
+	 * @param memoryBudget  The number of bytes the hash table may take, raised to hold at least
+	 *                      SpillFile.MIN_SPILL_ROWS tuples.
+	 */
+	public HashJoinOperator(Operator leftOperator, Operator rightOperator, long memoryBudget) {
+		this.leftOperator = leftOperator;
+		this.rightOperator = rightOperator;
+		this.memoryBudget = Math.max(memoryBudget, SpillFile.MIN_SPILL_ROWS * estimateRowSize(rightOperator.getSchema().size()));
+		this.schema = leftOperator.getSchema().concat(rightOperator.getSchema());
+		// The column names of the children are the query terms they hold
+		List<String> leftColumns = leftOperator.getSchema().getColumnNames();
+		List<String> rightColumns = rightOperator.getSchema().getColumnNames();
+		int[][] keyIndex = findKeyColumns(leftColumns, rightColumns);
+		this.leftKeyIndex = keyIndex[0];
+		this.rightKeyIndex = keyIndex[1];
+		this.probeKey = new TupleKey(new long[leftKeyIndex.length]);
+		this.leftRepeatedIndex = findRepeatedColumns(leftColumns);
+		this.rightRepeatedIndex = findRepeatedColumns(rightColumns);
+	}
+
+	/**
+	 * Finds the variables shared by both children of a join and their positions.
+	 * Only the first occurrence of a variable on each side is used as a key,
+	 * further occurrences are checked by findRepeatedColumns.
+	 *
+	 * @param leftColumns  The column names of the left child.
+	 * @param rightColumns The column names of the right child.
+	 * @return The positions of the key columns in the left and in the right tuples, pairwise aligned.
+	 */
+	static int[][] findKeyColumns(List<String> leftColumns, List<String> rightColumns) {
+		List<Integer> leftKeys = new ArrayList<>();
+		List<Integer> rightKeys = new ArrayList<>();
+		for (int j = 0; j < rightColumns.size(); j++) {
+			String column = rightColumns.get(j);
+			// Constants are not join variables, and only the first occurrence on the right is a key
+			if (!isVariable(column) || rightColumns.indexOf(column) != j) {
+				continue;
+			}
+			int i = leftColumns.indexOf(column);
+			if (i >= 0) {
+				leftKeys.add(i);
+				rightKeys.add(j);
+			}
+		}
+		return new int[][]{toArray(leftKeys), toArray(rightKeys)};
+	}
+
+	/**
+	 * Collects the pairs of positions that hold the same variable within one child.
+	 *
+	 * @param columns The column names of the child.
+	 * @return An array of {first occurrence, later occurrence} position pairs.
+	 */
+	static int[][] findRepeatedColumns(List<String> columns) {
+		List<int[]> pairs = new ArrayList<>();
+		for (int j = 0; j < columns.size(); j++) {
+			int first = columns.indexOf(columns.get(j));
+			if (isVariable(columns.get(j)) && first != j) {
+				pairs.add(new int[]{first, j});
+			}
+		}
+		return pairs.toArray(new int[0][]);
+	}
+
+	/**
+	 * Estimates the heap bytes an entry of the hash table takes: the Tuple, its long[] values and the list reference.
+	 *
+	 * @param width The number of values in the tuple.
+	 * @return The estimated size of the entry in bytes.
+	 */
+	static long estimateRowSize(int width) {
+		return 56 + (long) Long.BYTES * width;
+	}
+
+	/**
+	 * Builds the hash table by draining the right child, or partitions both children to disk
+	 * once the hash table exceeds the memory budget.
+	 */
+	private void buildHashTable() {
+		hashTable = new HashMap<>();
+		long rowSize = estimateRowSize(rightOperator.getSchema().size());
+		long memoryUsed = 0;
+		Tuple tuple;
+		while ((tuple = rightOperator.getNextTuple()) != null) {
+			// Skip tuples whose repeated variables disagree, they can never be part of a result
+			if (!isConsistent(tuple, rightRepeatedIndex)) {
+				continue;
+			}
+			hashTable.computeIfAbsent(TupleKey.of(tuple, rightKeyIndex), key -> new ArrayList<>()).add(tuple);
+			memoryUsed += rowSize;
+			// Cross products have no key to partition on and stay in memory
+			if (memoryUsed > memoryBudget && rightKeyIndex.length > 0) {
+				spillInputs();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Partitions both children to disk by the hash of their join key, starting with the right tuples
+	 * already in the hash table, and queues the partition pairs to be joined.
+	 *
+	 * @throws UncheckedIOException If a partition cannot be written
+	 */
+	private void spillInputs() {
+		spilled = true;
+		try {
+			SpillFile[] rightPartitions = createPartitions(rightOperator.getSchema().size());
+			for (List<Tuple> tuples : hashTable.values()) {
+				for (Tuple tuple : tuples) {
+					writePartition(rightPartitions, tuple.getValue(), rightKeyIndex, 0);
+				}
+			}
+			hashTable = new HashMap<>();
+			Tuple tuple;
+			while ((tuple = rightOperator.getNextTuple()) != null) {
+				if (isConsistent(tuple, rightRepeatedIndex)) {
+					writePartition(rightPartitions, tuple.getValue(), rightKeyIndex, 0);
+				}
+			}
+			SpillFile[] leftPartitions = createPartitions(leftOperator.getSchema().size());
+			while ((tuple = leftOperator.getNextTuple()) != null) {
+				if (isConsistent(tuple, leftRepeatedIndex)) {
+					writePartition(leftPartitions, tuple.getValue(), leftKeyIndex, 0);
+				}
+			}
+			queuePartitions(leftPartitions, rightPartitions, 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Partitioning join input failed", e);
+		}
+	}
+
+	/**
+	 * Creates one empty SpillFile per partition.
+	 */
+	private static SpillFile[] createPartitions(int width) throws IOException {
+		SpillFile[] partitions = new SpillFile[PARTITION_COUNT];
+		for (int i = 0; i < partitions.length; i++) {
+			partitions[i] = new SpillFile(width);
+		}
+		return partitions;
+	}
+
+	/**
+	 * Writes a row to the partition chosen by the hash of its join key at the given level.
+	 * Every level mixes the key with a different seed, so a partition split again spreads its rows.
+	 */
+	private static void writePartition(SpillFile[] partitions, long[] row, int[] keyIndex, int level) throws IOException {
+		int hash = level;
+		for (int index : keyIndex) {
+			hash = 31 * hash + Long.hashCode(row[index]);
+		}
+		hash *= 0x9E3779B9;
+		partitions[(hash ^ (hash >>> 16)) & (PARTITION_COUNT - 1)].write(row);
+	}
+
+	/**
+	 * Queues the pairs of left and right partitions that can produce results, deleting the others.
+	 */
+	private void queuePartitions(SpillFile[] leftPartitions, SpillFile[] rightPartitions, int level) throws IOException {
+		for (int i = 0; i < PARTITION_COUNT; i++) {
+			leftPartitions[i].closeOutput();
+			rightPartitions[i].closeOutput();
+			if (leftPartitions[i].getRowCount() == 0 || rightPartitions[i].getRowCount() == 0) {
+				leftPartitions[i].delete();
+				rightPartitions[i].delete();
+			} else {
+				pendingPartitions.push(new Partition(leftPartitions[i], rightPartitions[i], level));
+			}
+		}
+	}
+
+	/**
+	 * Splits a partition into PARTITION_COUNT partitions by the hash of the next level, and deletes it.
+	 */
+	private static SpillFile[] repartition(SpillFile partition, int[] keyIndex, int level, int width) throws IOException {
+		SpillFile[] partitions = createPartitions(width);
+		long[] row;
+		while ((row = partition.read()) != null) {
+			writePartition(partitions, row, keyIndex, level);
+		}
+		partition.delete();
+		return partitions;
+	}
+
+	/**
+	 * Builds the hash table over the right side of the next pending partition pair that fits in the
+	 * memory budget, splitting the pairs that do not fit.
+	 *
+	 * @return True if a partition pair is ready to be probed, false if all pairs have been joined.
+	 */
+	private boolean loadNextPartition() throws IOException {
+		int leftWidth = leftOperator.getSchema().size();
+		int rightWidth = rightOperator.getSchema().size();
+		while (!pendingPartitions.isEmpty()) {
+			Partition partition = pendingPartitions.pop();
+			if (partition.right.getRowCount() * estimateRowSize(rightWidth) > memoryBudget && partition.level < MAX_PARTITION_LEVEL) {
+				SpillFile[] rightPartitions = repartition(partition.right, rightKeyIndex, partition.level + 1, rightWidth);
+				SpillFile[] leftPartitions = repartition(partition.left, leftKeyIndex, partition.level + 1, leftWidth);
+				queuePartitions(leftPartitions, rightPartitions, partition.level + 1);
+				continue;
+			}
+			hashTable = new HashMap<>();
+			long[] row;
+			while ((row = partition.right.read()) != null) {
+				Tuple tuple = new Tuple(rightOperator.getSchema(), row);
+				hashTable.computeIfAbsent(TupleKey.of(tuple, rightKeyIndex), key -> new ArrayList<>()).add(tuple);
+			}
+			partition.right.delete();
+			probePartition = partition.left;
+			return true;
+		}
+		hashTable = new HashMap<>();
+		return false;
+	}
+
+	/**
+	 * Retrieves the next joined tuple after the inputs were partitioned to disk, probing the left
+	 * partitions one after the other against the hash tables over their right partitions.
+	 *
+	 * @return The next joined tuple, or null if all partition pairs have been joined.
+	 * @throws UncheckedIOException If a partition cannot be read or split
+	 */
+	private Tuple getNextSpilledTuple() {
+		try {
+			while (matchIndex >= matchList.size()) {
+				long[] row = probePartition == null ? null : probePartition.read();
+				if (row == null) {
+					if (probePartition != null) {
+						probePartition.delete();
+						probePartition = null;
+					}
+					if (!loadNextPartition()) {
+						return null;
+					}
+					continue;
+				}
+				leftTuple = new Tuple(leftOperator.getSchema(), row);
+				matchList = hashTable.getOrDefault(TupleKey.of(leftTuple, leftKeyIndex), Collections.emptyList());
+				matchIndex = 0;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Joining spilled partitions failed", e);
+		}
+		return joinTuple(leftTuple, matchList.get(matchIndex++));
+	}
+
+	/**
+	 * Retrieves the next joined tuple.
+	 * Emits the remaining matches of the current left tuple first, and otherwise
+	 * advances the left child until a tuple with at least one match is found.
+	 *
+	 * @return The next joined tuple, or null if the join is exhausted.
+	 * @throws UncheckedIOException If the inputs were partitioned to disk and a partition cannot be written or read
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		// Build the hash table lazily on the first call
+		if (hashTable == null) {
+			buildHashTable();
+		}
+		if (spilled) {
+			return getNextSpilledTuple();
+		}
+		while (matchIndex >= matchList.size()) {
+			leftTuple = leftOperator.getNextTuple();
+			if (leftTuple == null) {
+				return null;
+			}
+			if (!isConsistent(leftTuple, leftRepeatedIndex)) {
+				continue;
+			}
+			// Probe the hash table with the key of the current left tuple
+			matchList = hashTable.getOrDefault(TupleKey.of(leftTuple, leftKeyIndex), Collections.emptyList());
+			matchIndex = 0;
+		}
+		return joinTuple(leftTuple, matchList.get(matchIndex++));
+	}
+
+	/**
+	 * Retrieves the next batch of joined tuples.
+	 * Every selected row of the left batches probes the hash table with a reused key, and the
+	 * left row and its matching right tuples are written into the column vectors of the output batch.
+	 * Partitioned joins collect their tuples into batches.
+	 *
+	 * @return The next batch of joined tuples, or null if the join is exhausted.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		// Build the hash table lazily on the first call
+		if (hashTable == null) {
+			buildHashTable();
+		}
+		if (spilled) {
+			return super.getNextBatch();
+		}
+		int leftWidth = leftOperator.getSchema().size();
+		long[][] columns = new long[schema.size()][TupleBatch.BATCH_SIZE];
+		int rowCount = 0;
+		while (rowCount < TupleBatch.BATCH_SIZE) {
+			// Emit the next match of the current left row
+			if (batchMatchIndex < batchMatchList.size()) {
+				long[] rightValue = batchMatchList.get(batchMatchIndex++).getValue();
+				for (int c = 0; c < leftWidth; c++) {
+					columns[c][rowCount] = probeBatch.getColumn(c)[probeRow];
+				}
+				for (int c = 0; c < rightValue.length; c++) {
+					columns[leftWidth + c][rowCount] = rightValue[c];
+				}
+				rowCount++;
+				continue;
+			}
+			// Move on to the next left batch when the current one is probed completely
+			if (probeBatch == null || probeIndex >= probeBatch.getSelectedCount()) {
+				probeBatch = leftOperator.getNextBatch();
+				probeIndex = 0;
+				if (probeBatch == null) {
+					break;
+				}
+				continue;
+			}
+			probeRow = probeBatch.getSelection()[probeIndex++];
+			if (!isConsistent(probeBatch.getColumns(), probeRow, leftRepeatedIndex)) {
+				continue;
+			}
+			// Probe the hash table with the key of the current left row
+			probeKey.setProbe(probeBatch.getColumns(), leftKeyIndex, probeRow);
+			batchMatchList = hashTable.getOrDefault(probeKey, Collections.emptyList());
+			batchMatchIndex = 0;
+		}
+		return rowCount == 0 ? null : new TupleBatch(schema, columns, rowCount);
+	}
+
+	/**
+	 * Checks that all columns holding the same variable have the same value in one row of a batch.
+	 *
+	 * @param columns       The column vectors of the batch.
+	 * @param row           The row to be checked.
+	 * @param repeatedIndex The pairs of positions that must be equal.
+	 * @return True if the row is consistent, false otherwise.
+	 */
+	private static boolean isConsistent(long[][] columns, int row, int[][] repeatedIndex) {
+		for (int[] pair : repeatedIndex) {
+			if (columns[pair[0]][row] != columns[pair[1]][row]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks that all columns holding the same variable have the same value.
+	 *
+	 * @param tuple         The tuple to be checked.
+	 * @param repeatedIndex The pairs of positions that must be equal.
+	 * @return True if the tuple is consistent, false otherwise.
+	 */
+	private static boolean isConsistent(Tuple tuple, int[][] repeatedIndex) {
+		for (int[] pair : repeatedIndex) {
+			if (tuple.getValue(pair[0]) != tuple.getValue(pair[1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Concatenates a left and a right tuple into a new joined tuple.
+	 *
+	 * @param left  The tuple from the left child.
+	 * @param right The tuple from the right child.
+	 * @return A new tuple holding the columns of both tuples.
+	 */
+	private Tuple joinTuple(Tuple left, Tuple right) {
+		long[] value = Arrays.copyOf(left.getValue(), left.getValue().length + right.getValue().length);
+		System.arraycopy(right.getValue(), 0, value, left.getValue().length, right.getValue().length);
+		return new Tuple(schema, value);
+	}
+
+	/**
+	 * Check if the column name represents a variable rather than a constant.
+	 */
+	static boolean isVariable(String column) {
+		return !column.startsWith("'") && !Character.isDigit(column.charAt(0)) && column.charAt(0) != '-';
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Resets the join to the first output tuple.
+	 * Only the left child is rescanned, the hash table over the right child is kept. Partitions are
+	 * consumed while they are joined, so a partitioned join rescans and partitions both children again.
+	 */
+	@Override
+	public void reset() {
+		if (spilled) {
+			deletePartitions();
+			rightOperator.reset();
+			hashTable = null;
+			spilled = false;
+		}
+		leftOperator.reset();
+		leftTuple = null;
+		matchList = Collections.emptyList();
+		matchIndex = 0;
+		probeBatch = null;
+		batchMatchList = Collections.emptyList();
+		batchMatchIndex = 0;
+	}
+
+	/**
+	 * Deletes the partition files that have not been joined yet and closes both children.
+	 */
+	@Override
+	public void close() {
+		deletePartitions();
+		leftOperator.close();
+		rightOperator.close();
+	}
+
+	/**
+	 * Deletes the pending partition pairs and the left partition being probed.
+	 */
+	private void deletePartitions() {
+		for (Partition partition : pendingPartitions) {
+			partition.left.delete();
+			partition.right.delete();
+		}
+		pendingPartitions.clear();
+		if (probePartition != null) {
+			probePartition.delete();
+			probePartition = null;
+		}
+	}
+
+	/**
+	 * Returns the schema of the joined tuples.
+	 *
+	 * @return The columns of the left child followed by the columns of the right child.
+	 */
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Dumps all the tuples in the join operation.
+	 */
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+
+	/**
+	 * A pair of left and right partitions holding the rows whose join keys hash to the same partition.
+	 */
+	private static class Partition {
+		private SpillFile left;
+		private SpillFile right;
+		// The number of times the rows were split, which selects the hash of the next split
+		private int level;
+
+		private Partition(SpillFile left, SpillFile right, int level) {
+			this.left = left;
+			this.right = right;
+			this.level = level;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * HashSemiJoinOperator keeps the tuples of its left child that match at least one tuple of its right
+ * child on the variables they share, and passes them on unchanged. QueryPlan uses it in place of a
+ * HashJoinOperator where none of the right child's other variables is needed above the join and
+ * duplicates do not matter. On the first call it collects only the distinct join keys of the right
+ * child, in a LongHashSet for a single shared variable, so probing a left tuple stops at its first
+ * match instead of enumerating every matching right tuple. The left child is read lazily, so a
+ * consumer that stops early, such as an ExistsOperator, stops the probing as well.
+ *
+ * @author jackson-zhou
+ */
+public class HashSemiJoinOperator extends Operator {
+	private Operator leftOperator;
+	private Operator rightOperator;
+	// Positions of the shared variables in the left and right tuples, pairwise aligned
+	private int[] leftKeyIndex;
+	private int[] rightKeyIndex;
+	// Pairs of positions that hold the same variable inside one child and must be equal
+	private int[][] leftRepeatedIndex;
+	private int[][] rightRepeatedIndex;
+	// The distinct keys of the right child, in a primitive set for a single key column
+	private LongHashSet singleKeys;
+	private HashSet<TupleKey> keys;
+	// Whether the right child has any tuple, which decides a semi-join without shared variables
+	private boolean rightNonEmpty;
+	private boolean built;
+	// The key reused to probe the set of keys
+	private TupleKey probeKey;
+
+	/**
+	 * Constructs a HashSemiJoinOperator keeping the tuples of the left child that match the right child.
+	 *
+	 * @param leftOperator  The child whose matching tuples are returned.
+	 * @param rightOperator The child whose join keys are collected.
+	 */
+	public HashSemiJoinOperator(Operator leftOperator, Operator rightOperator) {
+		this.leftOperator = leftOperator;
+		this.rightOperator = rightOperator;
+		int[][] keyIndex = HashJoinOperator.findKeyColumns(leftOperator.getSchema().getColumnNames(), rightOperator.getSchema().getColumnNames());
+		this.leftKeyIndex = keyIndex[0];
+		this.rightKeyIndex = keyIndex[1];
+		this.leftRepeatedIndex = HashJoinOperator.findRepeatedColumns(leftOperator.getSchema().getColumnNames());
+		this.rightRepeatedIndex = HashJoinOperator.findRepeatedColumns(rightOperator.getSchema().getColumnNames());
+		this.probeKey = new TupleKey(new long[leftKeyIndex.length]);
+	}
+
+	/**
+	 * Collects the distinct join keys of the right child, by batch or by tuple.
+	 *
+	 * @param batchMode True to read the right child batch at a time.
+	 */
+	private void buildKeys(boolean batchMode) {
+		if (rightKeyIndex.length == 1) {
+			singleKeys = new LongHashSet();
+		} else {
+			keys = new HashSet<>();
+		}
+		if (batchMode) {
+			TupleBatch batch;
+			while ((batch = rightOperator.getNextBatch()) != null) {
+				long[][] columns = batch.getColumns();
+				for (int k = 0; k < batch.getSelectedCount(); k++) {
+					addKey(columns, batch.getSelection()[k]);
+				}
+			}
+		} else {
+			Tuple tuple;
+			while ((tuple = rightOperator.getNextTuple()) != null) {
+				// Marker tuples of rejected rows carry no values
+				if (tuple.getValue().length > 0) {
+					addKey(tuple.getValue());
+				}
+			}
+		}
+		built = true;
+	}
+
+	/**
+	 * Adds the join key of a row of a right batch.
+	 */
+	private void addKey(long[][] columns, int row) {
+		if (!matchesRepeated(columns, row, rightRepeatedIndex)) {
+			return;
+		}
+		rightNonEmpty = true;
+		if (singleKeys != null) {
+			singleKeys.add(columns[rightKeyIndex[0]][row]);
+		} else {
+			probeKey.setProbe(columns, rightKeyIndex, row);
+			if (!keys.contains(probeKey)) {
+				keys.add(new TupleKey(probeKey.getValues().clone()));
+			}
+		}
+	}
+
+	/**
+	 * Adds the join key of a right tuple.
+	 */
+	private void addKey(long[] values) {
+		if (!matchesRepeated(values, rightRepeatedIndex)) {
+			return;
+		}
+		rightNonEmpty = true;
+		if (singleKeys != null) {
+			singleKeys.add(values[rightKeyIndex[0]]);
+		} else {
+			probeKey.setProbe(values, rightKeyIndex);
+			if (!keys.contains(probeKey)) {
+				keys.add(TupleKey.of(values, rightKeyIndex));
+			}
+		}
+	}
+
+	/**
+	 * Checks that all columns of a batch row holding the same variable have the same value.
+	 */
+	private static boolean matchesRepeated(long[][] columns, int row, int[][] repeatedIndex) {
+		for (int[] pair : repeatedIndex) {
+			if (columns[pair[0]][row] != columns[pair[1]][row]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks that all values of a tuple holding the same variable are equal.
+	 */
+	private static boolean matchesRepeated(long[] values, int[][] repeatedIndex) {
+		for (int[] pair : repeatedIndex) {
+			if (values[pair[0]] != values[pair[1]]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the right child holds the key of a row of a left batch.
+	 */
+	private boolean hasMatch(long[][] columns, int row) {
+		if (!rightNonEmpty || !matchesRepeated(columns, row, leftRepeatedIndex)) {
+			return false;
+		}
+		if (singleKeys != null) {
+			return singleKeys.contains(columns[leftKeyIndex[0]][row]);
+		}
+		if (leftKeyIndex.length == 0) {
+			return true;
+		}
+		probeKey.setProbe(columns, leftKeyIndex, row);
+		return keys.contains(probeKey);
+	}
+
+	/**
+	 * Checks whether the right child holds the key of a left tuple.
+	 */
+	private boolean hasMatch(long[] values) {
+		if (!rightNonEmpty || !matchesRepeated(values, leftRepeatedIndex)) {
+			return false;
+		}
+		if (singleKeys != null) {
+			return singleKeys.contains(values[leftKeyIndex[0]]);
+		}
+		if (leftKeyIndex.length == 0) {
+			return true;
+		}
+		probeKey.setProbe(values, leftKeyIndex);
+		return keys.contains(probeKey);
+	}
+
+	/**
+	 * Retrieves the next left tuple that matches the right child.
+	 *
+	 * @return The next matching left tuple, or null if the left child is exhausted.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		if (!built) {
+			buildKeys(false);
+		}
+		Tuple tuple;
+		while ((tuple = leftOperator.getNextTuple()) != null) {
+			if (tuple.getValue().length > 0 && hasMatch(tuple.getValue())) {
+				return tuple;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves the next batch of left tuples that match the right child.
+	 * The matching rows are compacted into the selection vector of the left batch, whose column vectors are passed on.
+	 *
+	 * @return The next batch of matching left tuples, or null if the left child is exhausted.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		if (!built) {
+			buildKeys(true);
+		}
+		TupleBatch batch;
+		while ((batch = leftOperator.getNextBatch()) != null) {
+			long[][] columns = batch.getColumns();
+			int[] selection = batch.getSelection();
+			int selected = 0;
+			for (int k = 0; k < batch.getSelectedCount(); k++) {
+				int row = selection[k];
+				if (hasMatch(columns, row)) {
+					selection[selected++] = row;
+				}
+			}
+			if (selected > 0) {
+				return new TupleBatch(batch.getSchema(), columns, batch.getRowCount(), selection, selected);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Resets the left child; the keys of the right child are kept.
+	 */
+	@Override
+	public void reset() {
+		leftOperator.reset();
+	}
+
+	/**
+	 * Closes both children.
+	 */
+	@Override
+	public void close() {
+		leftOperator.close();
+		rightOperator.close();
+	}
+
+	@Override
+	public Schema getSchema() {
+		return leftOperator.getSchema();
+	}
+
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+}
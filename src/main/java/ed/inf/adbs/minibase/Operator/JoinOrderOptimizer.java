@@ -0,0 +1,288 @@
+package ed.inf.adbs.minibase.Operator;
+
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JoinOrderOptimizer chooses the order in which the relational atoms of a query are joined.
+ * It runs a dynamic-programming enumeration over the connected subsets of the atoms and keeps,
+ * for every subset, the cheapest (left-deep or bushy) join tree. Result sizes are estimated from
+ * the row counts and distinct value counts of the tables in the DatabaseCatalog, and the cost of
+ * a tree is the sum of the estimated sizes of all its intermediate results.
+ * Atoms that share no variables are joined by cross products only after each connected
+ * component has been joined on its own.
+ *
+ * @author jackson-zhou
+ */
+public class JoinOrderOptimizer {
+	// Above this number of atoms the enumeration is too expensive and the textual order is kept
+	private static final int MAX_DP_RELATIONS = 12;
+	// The fraction of rows assumed to pass a range or inequality comparison, as in System R
+	private static final double RANGE_SELECTIVITY = 1.0 / 3;
+
+	private List<RelationalAtom> relationalBody;
+	// The comparisons tested right after each atom's scan
+	private List<List<ComparisonAtom>> atomComparisons;
+	private DatabaseCatalog dbCatalog;
+	// The cheapest join tree found for each subset of atoms, indexed by the subset's bit mask
+	private JoinTree[] bestTree;
+	private JoinTree joinTree;
+
+	/**
+	 * Constructs a JoinOrderOptimizer and computes the join tree for the given atoms.
+	 *
+	 * @param relationalBody The list of relational atoms to be joined.
+	 * @param dbCatalog      The database catalog providing the table statistics.
+	 */
+	public JoinOrderOptimizer(List<RelationalAtom> relationalBody, DatabaseCatalog dbCatalog) {
+		this(relationalBody, Collections.nCopies(relationalBody.size(), Collections.emptyList()), dbCatalog);
+	}
+
+	/**
+	 * Constructs a JoinOrderOptimizer for atoms that are filtered by comparisons before they are joined.
+	 *
+	 * @param relationalBody  The list of relational atoms to be joined.
+	 * @param atomComparisons The comparisons tested right after the scan of each atom.
+	 * @param dbCatalog       The database catalog providing the table statistics.
+	 */
+	public JoinOrderOptimizer(List<RelationalAtom> relationalBody, List<List<ComparisonAtom>> atomComparisons, DatabaseCatalog dbCatalog) {
+		this.relationalBody = relationalBody;
+		this.atomComparisons = atomComparisons;
+		this.dbCatalog = dbCatalog;
+		if (relationalBody.size() > MAX_DP_RELATIONS) {
+			joinTree = createTextualOrderTree();
+		} else {
+			enumerateSubsets();
+			joinTree = combineComponents();
+		}
+	}
+
+	/**
+	 * Returns the chosen join tree.
+	 *
+	 * @return The root of the join tree covering all relational atoms.
+	 */
+	public JoinTree getJoinTree() {
+		return joinTree;
+	}
+
+	/**
+	 * Fills bestTree bottom-up. Every subset is split into two connected halves that share
+	 * a variable, and the cheapest combination of the halves' best trees is kept.
+	 * Subsets that cannot be split this way are not connected and keep no tree.
+	 */
+	private void enumerateSubsets() {
+		int size = relationalBody.size();
+		bestTree = new JoinTree[1 << size];
+		for (int i = 0; i < size; i++) {
+			bestTree[1 << i] = createLeaf(i);
+		}
+		for (int mask = 1; mask < bestTree.length; mask++) {
+			if (Integer.bitCount(mask) < 2) {
+				continue;
+			}
+			// Enumerate each unordered split once, join() decides which side builds the hash table
+			for (int left = (mask - 1) & mask; left > (mask ^ left); left = (left - 1) & mask) {
+				JoinTree leftTree = bestTree[left];
+				JoinTree rightTree = bestTree[mask ^ left];
+				if (leftTree == null || rightTree == null || !sharesVariable(leftTree, rightTree)) {
+					continue;
+				}
+				JoinTree tree = join(leftTree, rightTree);
+				if (bestTree[mask] == null || tree.cost < bestTree[mask].cost) {
+					bestTree[mask] = tree;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Joins the best trees of the connected components of the query with cross products,
+	 * smallest components first.
+	 *
+	 * @return The join tree covering all relational atoms.
+	 */
+	private JoinTree combineComponents() {
+		List<JoinTree> components = new ArrayList<>();
+		int remaining = bestTree.length - 1;
+		while (remaining != 0) {
+			// The largest connected subset containing the lowest remaining atom is its component
+			int lowest = Integer.lowestOneBit(remaining);
+			int component = lowest;
+			for (int mask = remaining; mask != 0; mask = (mask - 1) & remaining) {
+				if ((mask & lowest) != 0 && bestTree[mask] != null && Integer.bitCount(mask) > Integer.bitCount(component)) {
+					component = mask;
+				}
+			}
+			components.add(bestTree[component]);
+			remaining &= ~component;
+		}
+		components.sort(Comparator.comparingDouble(tree -> tree.cardinality));
+
+		JoinTree tree = components.get(0);
+		for (int i = 1; i < components.size(); i++) {
+			tree = join(tree, components.get(i));
+		}
+		return tree;
+	}
+
+	/**
+	 * Joins the atoms in the order they appear in the query.
+	 *
+	 * @return A join tree over all relational atoms.
+	 */
+	private JoinTree createTextualOrderTree() {
+		JoinTree tree = createLeaf(0);
+		for (int i = 1; i < relationalBody.size(); i++) {
+			tree = join(tree, createLeaf(i));
+		}
+		return tree;
+	}
+
+	/**
+	 * Creates the leaf of a join tree for one relational atom and estimates its size.
+	 * Every constant and every repeated variable in the atom keeps about 1 / V of the rows,
+	 * where V is the number of distinct values in that column. So does an equality comparison
+	 * tested after the scan, while any other comparison keeps a third of the rows.
+	 *
+	 * @param atomIndex The position of the atom in the query body.
+	 * @return The leaf JoinTree of the atom.
+	 */
+	private JoinTree createLeaf(int atomIndex) {
+		RelationalAtom atom = relationalBody.get(atomIndex);
+		TableStatistics statistics = dbCatalog.getTableStatistics(atom.getName());
+		double cardinality = statistics.getRowCount();
+		Map<String, Double> distinct = new HashMap<>();
+
+		List<Term> terms = atom.getTerms();
+		for (int i = 0; i < terms.size(); i++) {
+			double columnDistinct = Math.max(1, statistics.getDistinctCount(i));
+			if (terms.get(i) instanceof Variable) {
+				String variable = terms.get(i).toString().trim();
+				if (distinct.containsKey(variable)) {
+					cardinality /= columnDistinct;
+				}
+				distinct.merge(variable, columnDistinct, Math::min);
+			} else {
+				cardinality /= columnDistinct;
+			}
+		}
+		for (ComparisonAtom comparison : atomComparisons.get(atomIndex)) {
+			if (comparison.getOp() != ComparisonOperator.EQ) {
+				cardinality *= RANGE_SELECTIVITY;
+			} else {
+				double comparisonDistinct = 1;
+				for (Term term : new Term[]{comparison.getTerm1(), comparison.getTerm2()}) {
+					if (term instanceof Variable) {
+						comparisonDistinct = Math.max(comparisonDistinct, distinct.get(term.toString().trim()));
+					}
+				}
+				cardinality /= comparisonDistinct;
+			}
+		}
+		// A filtered atom has no more distinct values in a column than rows
+		for (Map.Entry<String, Double> entry : distinct.entrySet()) {
+			entry.setValue(Math.max(1, Math.min(entry.getValue(), cardinality)));
+		}
+		JoinTree leaf = new JoinTree(atomIndex, null, null, cardinality, distinct);
+		leaf.cost = cardinality;
+		return leaf;
+	}
+
+	/**
+	 * Creates the join of two trees and estimates its size as |L| * |R| / max(V(L, v), V(R, v))
+	 * for every shared variable v. The smaller input becomes the right (build) side.
+	 *
+	 * @param first  One input of the join.
+	 * @param second The other input of the join.
+	 * @return The JoinTree joining both inputs.
+	 */
+	private static JoinTree join(JoinTree first, JoinTree second) {
+		JoinTree left = first.cardinality >= second.cardinality ? first : second;
+		JoinTree right = left == first ? second : first;
+
+		double cardinality = left.cardinality * right.cardinality;
+		Map<String, Double> distinct = new HashMap<>(left.distinct);
+		for (Map.Entry<String, Double> entry : right.distinct.entrySet()) {
+			Double leftDistinct = distinct.get(entry.getKey());
+			if (leftDistinct != null) {
+				cardinality /= Math.max(leftDistinct, entry.getValue());
+			}
+			distinct.merge(entry.getKey(), entry.getValue(), Math::min);
+		}
+		// A column of the result cannot have more distinct values than the result has rows
+		for (Map.Entry<String, Double> entry : distinct.entrySet()) {
+			entry.setValue(Math.min(entry.getValue(), Math.max(1, cardinality)));
+		}
+
+		JoinTree tree = new JoinTree(-1, left, right, cardinality, distinct);
+		tree.cost = left.cost + right.cost + cardinality;
+		return tree;
+	}
+
+	/**
+	 * Checks whether two join trees have a variable in common.
+	 */
+	private static boolean sharesVariable(JoinTree left, JoinTree right) {
+		for (String variable : right.distinct.keySet()) {
+			if (left.distinct.containsKey(variable)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A node of a join tree. Leaves stand for one relational atom, inner nodes for the
+	 * join of their left (probe) and right (build) subtrees.
+	 */
+	public static class JoinTree {
+		// The position of the atom in the query body for leaves, -1 for joins
+		private int atomIndex;
+		private JoinTree left;
+		private JoinTree right;
+		// The estimated number of result rows and the total estimated cost of the subtree
+		private double cardinality;
+		private double cost;
+		// The estimated number of distinct values of each variable in the result
+		private Map<String, Double> distinct;
+
+		private JoinTree(int atomIndex, JoinTree left, JoinTree right, double cardinality, Map<String, Double> distinct) {
+			this.atomIndex = atomIndex;
+			this.left = left;
+			this.right = right;
+			this.cardinality = cardinality;
+			this.distinct = distinct;
+		}
+
+		public boolean isLeaf() {
+			return atomIndex >= 0;
+		}
+
+		public int getAtomIndex() {
+			return atomIndex;
+		}
+
+		public JoinTree getLeft() {
+			return left;
+		}
+
+		public JoinTree getRight() {
+			return right;
+		}
+
+		public double getCardinality() {
+			return cardinality;
+		}
+	}
+}
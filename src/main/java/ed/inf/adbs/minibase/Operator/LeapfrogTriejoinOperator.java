@@ -0,0 +1,456 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LeapfrogTriejoinOperator joins any number of child operators at once with the Leapfrog Triejoin
+ * algorithm, a worst-case optimal join whose running time stays within the AGM bound of the query.
+ * Every child is materialised as a trie: its rows are projected onto its variables, ordered by the
+ * global variable order, sorted and deduplicated, counting how often each row occurs. The join then binds one variable at a time: the
+ * tries of the children containing the variable leapfrog over each other with binary-search seeks
+ * until they agree on a value, and the next variable is bound below that value. A complete binding
+ * is returned as often as the product of the counts of its rows, as a tree of binary joins would.
+ * Unlike a tree of binary joins, it never builds an intermediate result larger than the output,
+ * which is what makes cyclic queries such as triangles tractable. QueryPlan uses it for queries
+ * whose hypergraph is cyclic.
+ * When only the first variables of the order are output, as for a projection whose other variables
+ * are existential, every binding of the output variables is returned once: the variables below are
+ * only bound until a first witness is found, and the join then moves on to the next output binding.
+ *
+ * @author jackson-zhou
+ */
+public class LeapfrogTriejoinOperator extends Operator {
+	// The children whose tuples are joined
+	private List<Operator> inputs;
+	// The variables in the order they are bound, which is also the column order of the output
+	private List<String> variableOrder;
+	// The number of leading variables of the order that are output; the others only need a witness
+	private int outputDepth;
+	// The schema of the joined tuples: one column per output variable
+	private Schema schema;
+	// The tries of the children containing each variable, by the position of the variable in the order
+	private TrieIterator[][] variableTries;
+	// True if a child without variables has no rows, so the join is empty
+	private boolean empty;
+	// The leapfrog join of each variable, the variable being bound and the values bound so far
+	private LeapfrogJoin[] joins;
+	private int depth;
+	private long[] binding;
+	// Whether the tries have been built, and whether the bindings are being enumerated
+	private boolean opened;
+	private boolean started;
+	// The number of times the current binding still has to be returned
+	private long repeatCount;
+	// All tries, whose current rows together make up a complete binding
+	private List<TrieIterator> allTries = new ArrayList<>();
+
+	/**
+	 * Constructs a LeapfrogTriejoinOperator over the given children.
+	 *
+	 * @param inputs        The children to be joined, whose column names are the terms of their atoms
+	 *                      and whose rows already match the constants and repeated variables of the atoms.
+	 * @param variableOrder All variables of the children, in the order they are bound.
+	 */
+	public LeapfrogTriejoinOperator(List<Operator> inputs, List<String> variableOrder) {
+		this(inputs, variableOrder, variableOrder.size());
+	}
+
+	/**
+	 * Constructs a LeapfrogTriejoinOperator returning every distinct binding of the first variables of the order once.
+	 *
+	 * @param inputs        The children to be joined, whose column names are the terms of their atoms
+	 *                      and whose rows already match the constants and repeated variables of the atoms.
+	 * @param variableOrder All variables of the children, in the order they are bound.
+	 * @param outputDepth   The number of leading variables that are output, at least one; with fewer
+	 *                      than all variables, the others are existential and duplicates are not returned.
+	 */
+	public LeapfrogTriejoinOperator(List<Operator> inputs, List<String> variableOrder, int outputDepth) {
+		this.inputs = inputs;
+		this.variableOrder = variableOrder;
+		this.outputDepth = outputDepth;
+		initSchema();
+	}
+
+	/**
+	 * Creates the output schema, typing every output variable after the first child column holding it.
+	 */
+	private void initSchema() {
+		List<String> columnTypes = new ArrayList<>();
+		for (String variable : variableOrder.subList(0, outputDepth)) {
+			for (Operator input : inputs) {
+				int column = input.getSchema().indexOf(variable);
+				if (column >= 0) {
+					columnTypes.add(input.getSchema().getColumnTypes().get(column));
+					break;
+				}
+			}
+		}
+		schema = new Schema(inputs.get(0).getSchema().getTableName(), new ArrayList<>(variableOrder.subList(0, outputDepth)), columnTypes);
+	}
+
+	/**
+	 * Materialises the tries of all children and groups them by the variables they contain.
+	 */
+	private void open() {
+		List<List<TrieIterator>> tries = new ArrayList<>();
+		for (int v = 0; v < variableOrder.size(); v++) {
+			tries.add(new ArrayList<>());
+		}
+		for (Operator input : inputs) {
+			TrieIterator trie = buildTrie(input);
+			if (trie == null) {
+				continue;
+			}
+			allTries.add(trie);
+			for (int v = 0; v < variableOrder.size(); v++) {
+				if (input.getSchema().indexOf(variableOrder.get(v)) >= 0) {
+					tries.get(v).add(trie);
+				}
+			}
+		}
+		variableTries = new TrieIterator[variableOrder.size()][];
+		joins = new LeapfrogJoin[variableOrder.size()];
+		for (int v = 0; v < variableOrder.size(); v++) {
+			variableTries[v] = tries.get(v).toArray(new TrieIterator[0]);
+			joins[v] = new LeapfrogJoin(variableTries[v]);
+		}
+		binding = new long[variableOrder.size()];
+		opened = true;
+	}
+
+	/**
+	 * Reads a child into a sorted trie over its variables.
+	 *
+	 * @param input The child operator.
+	 * @return The trie of the child, or null if the child has no variables.
+	 */
+	private TrieIterator buildTrie(Operator input) {
+		Schema inputSchema = input.getSchema();
+		// The column holding each variable of the child, in the global variable order
+		List<Integer> variableColumns = new ArrayList<>();
+		for (String variable : variableOrder) {
+			int column = inputSchema.indexOf(variable);
+			if (column >= 0) {
+				variableColumns.add(column);
+			}
+		}
+
+		List<long[]> rows = new ArrayList<>();
+		Tuple tuple;
+		while ((tuple = input.getNextTuple()) != null) {
+			long[] row = new long[variableColumns.size()];
+			for (int i = 0; i < row.length; i++) {
+				row[i] = tuple.getValue(variableColumns.get(i));
+			}
+			rows.add(row);
+		}
+		if (variableColumns.isEmpty()) {
+			// An atom without variables only decides whether there are any results
+			empty |= rows.isEmpty();
+			return null;
+		}
+		int[] keyIndex = new int[variableColumns.size()];
+		for (int i = 0; i < keyIndex.length; i++) {
+			keyIndex[i] = i;
+		}
+		rows.sort((a, b) -> ExternalSorter.compareKeys(a, keyIndex, b, keyIndex));
+		// Store duplicate rows once, with the number of times they occur
+		List<long[]> distinctRows = new ArrayList<>();
+		int[] counts = new int[rows.size()];
+		for (long[] row : rows) {
+			if (distinctRows.isEmpty() || !Arrays.equals(distinctRows.get(distinctRows.size() - 1), row)) {
+				distinctRows.add(row);
+			}
+			counts[distinctRows.size() - 1]++;
+		}
+		return new TrieIterator(distinctRows.toArray(new long[0][]), Arrays.copyOf(counts, distinctRows.size()), keyIndex.length);
+	}
+
+	/**
+	 * Retrieves the next joined tuple.
+	 * Binds the variables depth by depth: when the leapfrog join of a variable is exhausted, the tries
+	 * go back up to the previous variable, which moves on to its next value. Once a witness for the
+	 * existential variables is found, the tries go straight back up to the last output variable.
+	 *
+	 * @return The next joined tuple, or null if the join is exhausted.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		// Build the tries lazily on the first call
+		if (!opened) {
+			open();
+		}
+		if (empty || variableOrder.isEmpty()) {
+			return null;
+		}
+		if (repeatCount > 0) {
+			repeatCount--;
+			return new Tuple(schema, Arrays.copyOf(binding, outputDepth));
+		}
+		if (!started) {
+			started = true;
+			depth = 0;
+			openDepth();
+		} else if (depth < 0) {
+			return null;
+		} else {
+			// Move past the binding returned last
+			joins[depth].next();
+		}
+		while (true) {
+			if (joins[depth].atEnd) {
+				closeDepth();
+				depth--;
+				if (depth < 0) {
+					return null;
+				}
+				joins[depth].next();
+				continue;
+			}
+			binding[depth] = joins[depth].key;
+			if (depth == variableOrder.size() - 1 && outputDepth < variableOrder.size()) {
+				// A witness for the existential variables, the next call moves on from the last output variable
+				while (depth >= outputDepth) {
+					closeDepth();
+					depth--;
+				}
+				return new Tuple(schema, Arrays.copyOf(binding, outputDepth));
+			}
+			if (depth == variableOrder.size() - 1) {
+				// Every trie is at its last level now, at the one row matching the binding
+				long multiplicity = 1;
+				for (TrieIterator trie : allTries) {
+					multiplicity *= trie.count();
+				}
+				repeatCount = multiplicity - 1;
+				return new Tuple(schema, Arrays.copyOf(binding, outputDepth));
+			}
+			depth++;
+			openDepth();
+		}
+	}
+
+	/**
+	 * Descends the tries of the current variable to its level and starts its leapfrog join.
+	 */
+	private void openDepth() {
+		for (TrieIterator trie : variableTries[depth]) {
+			trie.open();
+		}
+		joins[depth].init();
+	}
+
+	/**
+	 * Moves the tries of the current variable back up to the previous level.
+	 */
+	private void closeDepth() {
+		for (TrieIterator trie : variableTries[depth]) {
+			trie.up();
+		}
+	}
+
+	/**
+	 * Resets the join to the first output tuple. The tries are kept.
+	 */
+	@Override
+	public void reset() {
+		if (!started) {
+			return;
+		}
+		// Move every trie back up to the root
+		while (depth >= 0) {
+			closeDepth();
+			depth--;
+		}
+		started = false;
+		repeatCount = 0;
+	}
+
+	/**
+	 * Closes the operators the tries were built from.
+	 */
+	@Override
+	public void close() {
+		for (Operator input : inputs) {
+			input.close();
+		}
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Dumps all the tuples in the join operation.
+	 */
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+
+	/**
+	 * An iterator over a trie stored as sorted, distinct rows: the values at level d of the trie are
+	 * column d of the rows sharing the values of the levels above. Every level is a range of rows,
+	 * and moving within a level is a binary search for the end of the current value or for a target.
+	 */
+	private static class TrieIterator {
+		private long[][] rows;
+		// The number of times each row occurs in the child
+		private int[] counts;
+		// The current level, -1 at the root
+		private int level = -1;
+		// The current row and the end of the range of rows of each level
+		private int[] position;
+		private int[] end;
+
+		private TrieIterator(long[][] rows, int[] counts, int width) {
+			this.rows = rows;
+			this.counts = counts;
+			this.position = new int[width];
+			this.end = new int[width];
+		}
+
+		/**
+		 * Descends to the values below the current value, or to the first level from the root.
+		 */
+		private void open() {
+			level++;
+			if (level == 0) {
+				position[0] = 0;
+				end[0] = rows.length;
+			} else {
+				int start = position[level - 1];
+				position[level] = start;
+				end[level] = upperBound(level - 1, rows[start][level - 1], start, end[level - 1]);
+			}
+		}
+
+		private void up() {
+			level--;
+		}
+
+		private boolean atEnd() {
+			return position[level] >= end[level];
+		}
+
+		private long key() {
+			return rows[position[level]][level];
+		}
+
+		/**
+		 * Returns how often the current row occurs, at the last level where the position is a single row.
+		 */
+		private int count() {
+			return counts[position[level]];
+		}
+
+		/**
+		 * Moves to the next value of the level.
+		 */
+		private void next() {
+			position[level] = upperBound(level, key(), position[level], end[level]);
+		}
+
+		/**
+		 * Moves to the first value of the level not smaller than the target.
+		 */
+		private void seek(long target) {
+			position[level] = lowerBound(level, target, position[level], end[level]);
+		}
+
+		/**
+		 * Finds the first row in [from, to) whose value in the column is at least the target.
+		 */
+		private int lowerBound(int column, long target, int from, int to) {
+			while (from < to) {
+				int middle = (from + to) >>> 1;
+				if (rows[middle][column] < target) {
+					from = middle + 1;
+				} else {
+					to = middle;
+				}
+			}
+			return from;
+		}
+
+		/**
+		 * Finds the first row in [from, to) whose value in the column is greater than the target.
+		 */
+		private int upperBound(int column, long target, int from, int to) {
+			return target == Long.MAX_VALUE ? to : lowerBound(column, target + 1, from, to);
+		}
+	}
+
+	/**
+	 * The leapfrog join of the tries containing one variable: the trie with the smallest value seeks
+	 * the largest value of the others, until all of them are at the same value.
+	 */
+	private static class LeapfrogJoin {
+		private TrieIterator[] tries;
+		// The trie to move next
+		private int current;
+		private boolean atEnd;
+		// The value all tries agree on
+		private long key;
+
+		private LeapfrogJoin(TrieIterator[] tries) {
+			this.tries = tries;
+		}
+
+		/**
+		 * Starts the join after the tries were opened at the level of the variable.
+		 */
+		private void init() {
+			atEnd = false;
+			for (TrieIterator trie : tries) {
+				if (trie.atEnd()) {
+					atEnd = true;
+					return;
+				}
+			}
+			Arrays.sort(tries, (a, b) -> Long.compare(a.key(), b.key()));
+			current = 0;
+			search();
+		}
+
+		/**
+		 * Leapfrogs the tries until they all agree on a value, or one of them is exhausted.
+		 */
+		private void search() {
+			long max = tries[(current + tries.length - 1) % tries.length].key();
+			while (true) {
+				TrieIterator trie = tries[current];
+				if (trie.key() == max) {
+					key = max;
+					return;
+				}
+				trie.seek(max);
+				if (trie.atEnd()) {
+					atEnd = true;
+					return;
+				}
+				max = trie.key();
+				current = (current + 1) % tries.length;
+			}
+		}
+
+		/**
+		 * Moves to the next value all tries agree on.
+		 */
+		private void next() {
+			tries[current].next();
+			if (tries[current].atEnd()) {
+				atEnd = true;
+				return;
+			}
+			current = (current + 1) % tries.length;
+			search();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package ed.inf.adbs.minibase.Operator;
+
+/**
+ * LongHashSet is a set of primitive long values with open addressing and linear probing.
+ * It stands in for a HashSet of single-column TupleKeys where millions of rows are probed,
+ * as in the semi-joins of a SemiJoinReducer, without allocating a key object per row.
+ *
+ * @author jackson-zhou
+ */
+public class LongHashSet {
+	// Marks an empty slot; the value itself is tracked by containsEmptyMarker
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] slots;
+	private int size;
+	private boolean containsEmptyMarker;
+
+	/**
+	 * Constructs an empty LongHashSet.
+	 */
+	public LongHashSet() {
+		slots = new long[16];
+		java.util.Arrays.fill(slots, EMPTY);
+	}
+
+	/**
+	 * Adds a value to the set.
+	 *
+	 * @param value The value to be added.
+	 * @return True if the value was not in the set before.
+	 */
+	public boolean add(long value) {
+		if (value == EMPTY) {
+			boolean added = !containsEmptyMarker;
+			containsEmptyMarker = true;
+			return added;
+		}
+		int mask = slots.length - 1;
+		int slot = hash(value) & mask;
+		while (slots[slot] != EMPTY) {
+			if (slots[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = value;
+		// Keep the table at most half full so probe sequences stay short
+		if (++size * 2 > slots.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a value is in the set.
+	 *
+	 * @param value The value to look for.
+	 * @return True if the set contains the value.
+	 */
+	public boolean contains(long value) {
+		if (value == EMPTY) {
+			return containsEmptyMarker;
+		}
+		int mask = slots.length - 1;
+		int slot = hash(value) & mask;
+		while (slots[slot] != EMPTY) {
+			if (slots[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of values in the set.
+	 *
+	 * @return The size of the set.
+	 */
+	public int size() {
+		return size + (containsEmptyMarker ? 1 : 0);
+	}
+
+	/**
+	 * Doubles the table and reinserts all values.
+	 */
+	private void grow() {
+		long[] oldSlots = slots;
+		slots = new long[oldSlots.length * 2];
+		java.util.Arrays.fill(slots, EMPTY);
+		int mask = slots.length - 1;
+		for (long value : oldSlots) {
+			if (value != EMPTY) {
+				int slot = hash(value) & mask;
+				while (slots[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = value;
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a value, so that consecutive ids do not fill consecutive slots.
+	 */
+	private static int hash(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
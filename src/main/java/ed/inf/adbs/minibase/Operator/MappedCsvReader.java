@@ -0,0 +1,249 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedCsvReader reads the rows of a CSV table file through a memory-mapped window of the file.
+ * Field boundaries are found by scanning the mapped bytes, and values are parsed directly from
+ * the buffer, so no String is created for a line and no array or list is created for a row.
+ * The reader covers a byte range of the file, which lets several readers parse one file in parallel.
+ * Since the pages are mapped from the OS page cache, concurrent queries share them.
+ *
+ * @author jackson-zhou
+ */
+public class MappedCsvReader {
+	// The largest part of the file mapped at once, larger ranges are mapped window by window
+	private static final long MAX_WINDOW_SIZE = 1L << 30;
+
+	private File file;
+	// The byte range [rangeStart, rangeEnd) of the file read by this reader
+	private long rangeStart;
+	private long rangeEnd;
+	// The currently mapped window and its offset in the file
+	private MappedByteBuffer window;
+	private long windowStart;
+	// The position in the window where the next row starts
+	private int position;
+	// The start (inclusive) and end (exclusive) of each field of the current row, in the window
+	private int[] fieldStart;
+	private int[] fieldEnd;
+	private int fieldCount;
+
+	/**
+	 * Constructs a MappedCsvReader over the whole file.
+	 *
+	 * @param file        The CSV file to be read.
+	 * @param columnCount The number of columns of the table.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	public MappedCsvReader(File file, int columnCount) throws IOException {
+		this(file, 0, file.length(), columnCount);
+	}
+
+	/**
+	 * Constructs a MappedCsvReader over a byte range of the file.
+	 * The range must start at the beginning of a line and end right after a line break or at the end of the file.
+	 *
+	 * @param file        The CSV file to be read.
+	 * @param rangeStart  The offset of the first byte to be read.
+	 * @param rangeEnd    The offset after the last byte to be read.
+	 * @param columnCount The number of columns of the table.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	public MappedCsvReader(File file, long rangeStart, long rangeEnd, int columnCount) throws IOException {
+		this.file = file;
+		this.rangeStart = rangeStart;
+		this.rangeEnd = rangeEnd;
+		this.fieldStart = new int[columnCount];
+		this.fieldEnd = new int[columnCount];
+		mapWindow(rangeStart);
+	}
+
+	/**
+	 * Maps the window of the file starting at the given offset.
+	 * The channel is closed right away, the mapping stays valid until it is garbage collected.
+	 *
+	 * @param offset The offset in the file where the window starts.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	private void mapWindow(long offset) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = Math.min(MAX_WINDOW_SIZE, rangeEnd - offset);
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+			windowStart = offset;
+			position = 0;
+		}
+	}
+
+	/**
+	 * Advances to the next row, skipping empty lines, and records its field boundaries.
+	 *
+	 * @return True if a row was read, false at the end of the range.
+	 * @throws IOException If the next window of the file cannot be mapped.
+	 */
+	public boolean nextRow() throws IOException {
+		while (true) {
+			int limit = window.limit();
+			// Skip line breaks left over from the previous row and empty lines
+			while (position < limit && (window.get(position) == '\n' || window.get(position) == '\r')) {
+				position++;
+			}
+			if (position >= limit) {
+				if (windowStart + limit >= rangeEnd) {
+					return false;
+				}
+				mapWindow(windowStart + position);
+				continue;
+			}
+
+			int start = position;
+			fieldCount = 0;
+			int i = position;
+			while (i < limit) {
+				byte b = window.get(i);
+				if (b == '\n' || b == '\r') {
+					break;
+				}
+				if (b == ',') {
+					addField(start, i);
+					start = i + 1;
+				}
+				i++;
+			}
+			// A row cut off by the end of the window is read again from a window starting at the row
+			if (i == limit && windowStart + limit < rangeEnd) {
+				if (position == 0) {
+					throw new IOException("Row longer than the mapping window in " + file);
+				}
+				mapWindow(windowStart + position);
+				continue;
+			}
+			addField(start, i);
+			// The fields missing from a short row are empty, not those of the previous row
+			for (int field = fieldCount; field < fieldStart.length; field++) {
+				fieldStart[field] = i;
+				fieldEnd[field] = i;
+			}
+			position = i;
+			return true;
+		}
+	}
+
+	/**
+	 * Records the boundaries of one field, without the surrounding characters String.trim() removes.
+	 */
+	private void addField(int start, int end) {
+		if (fieldCount == fieldStart.length) {
+			// Extra fields beyond the schema are ignored
+			return;
+		}
+		while (start < end && isTrimmed(window.get(start))) {
+			start++;
+		}
+		while (end > start && isTrimmed(window.get(end - 1))) {
+			end--;
+		}
+		fieldStart[fieldCount] = start;
+		fieldEnd[fieldCount] = end;
+		fieldCount++;
+	}
+
+	/**
+	 * Checks whether a byte is a space or a control character, which String.trim() removes.
+	 * The bytes of multi-byte UTF-8 characters are negative and never trimmed.
+	 */
+	private static boolean isTrimmed(byte b) {
+		return b >= 0 && b <= ' ';
+	}
+
+	/**
+	 * Parses an int field of the current row directly from the mapped bytes, as Long.parseLong does.
+	 *
+	 * @param column The position of the column.
+	 * @return The value of the field.
+	 * @throws NumberFormatException If the field is not an optionally signed decimal number, or does not fit in a long.
+	 */
+	public long getLong(int column) {
+		int i = fieldStart[column];
+		int end = fieldEnd[column];
+		boolean negative = false;
+		if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+			negative = window.get(i) == '-';
+			i++;
+		}
+		if (i == end) {
+			throw invalidNumber(column);
+		}
+		// The value is accumulated negatively, so that Long.MIN_VALUE can be parsed too
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = window.get(i) - '0';
+			if (digit < 0 || digit > 9 || value < limit / 10 || value * 10 < limit + digit) {
+				throw invalidNumber(column);
+			}
+			value = value * 10 - digit;
+		}
+		return negative ? value : -value;
+	}
+
+	/**
+	 * Parses an int field of the current row that has to fit in an int, such as a column of a ColumnarTable.
+	 *
+	 * @param column The position of the column.
+	 * @return The value of the field.
+	 * @throws NumberFormatException If the field is not a decimal number, or does not fit in an int.
+	 */
+	public int getInt(int column) {
+		long value = getLong(column);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw invalidNumber(column);
+		}
+		return (int) value;
+	}
+
+	private NumberFormatException invalidNumber(int column) {
+		return new NumberFormatException("Invalid int value \"" + getString(column) + "\" in " + file);
+	}
+
+	/**
+	 * Decodes a field of the current row as a String.
+	 *
+	 * @param column The position of the column.
+	 * @return The text of the field, as it appears in the file.
+	 */
+	public String getString(int column) {
+		byte[] bytes = new byte[fieldEnd[column] - fieldStart[column]];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = window.get(fieldStart[column] + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the number of fields of the current row.
+	 *
+	 * @return The number of fields read for the current row.
+	 */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * Moves back to the first row of the range.
+	 *
+	 * @throws IOException If the first window of the range cannot be mapped.
+	 */
+	public void rewind() throws IOException {
+		if (windowStart == rangeStart) {
+			position = 0;
+		} else {
+			mapWindow(rangeStart);
+		}
+	}
+}
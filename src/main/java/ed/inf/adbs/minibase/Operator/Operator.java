@@ -18,6 +18,34 @@ public abstract class Operator {
 	 */
 	public abstract Tuple getNextTuple();
 
+	/**
+	 * Retrieves the next batch of tuples from the operator, column by column.
+	 * This default implementation adapts tuple-at-a-time operators by collecting up to
+	 * TupleBatch.BATCH_SIZE tuples from getNextTuple(); the empty marker tuples some
+	 * operators return for rejected rows are dropped. Operators with tight loops over
+	 * column vectors override it. A consumer should read an operator either by tuple or
+	 * by batch, not both.
+	 *
+	 * @return The next batch with at least one selected row, or null if there are no more tuples.
+	 */
+	public TupleBatch getNextBatch() {
+		Schema schema = getSchema();
+		long[][] columns = new long[schema.size()][TupleBatch.BATCH_SIZE];
+		int rowCount = 0;
+		Tuple tuple;
+		while (rowCount < TupleBatch.BATCH_SIZE && (tuple = getNextTuple()) != null) {
+			// Marker tuples are empty tuples that do not belong to the operator's schema
+			if (tuple.getSchema() != schema && tuple.getValue().length == 0) {
+				continue;
+			}
+			for (int c = 0; c < columns.length; c++) {
+				columns[c][rowCount] = tuple.getValue(c);
+			}
+			rowCount++;
+		}
+		return rowCount == 0 ? null : new TupleBatch(schema, columns, rowCount);
+	}
+
 	/**
 	 * Resets the operator's state.
 	 * Concrete subclasses of Operator should implement this method to define
@@ -26,6 +54,14 @@ public abstract class Operator {
 	 */
 	public abstract void reset();
 
+	/**
+	 * Releases what the operator holds beyond the current tuple, such as the temporary files of
+	 * spilled rows, and closes its children. The operator is not read after it is closed.
+	 * This default implementation holds nothing; operators with children or spill files override it.
+	 */
+	public void close() {
+	}
+
 	/**
 	 * Dumps the output of the operator.
 	 * Concrete subclasses of Operator should implement this method to define
@@ -33,5 +69,14 @@ public abstract class Operator {
 	 * by iterating through the tuples generated by the operator and printing them.
 	 */
 	public abstract void dump();
+
+	/**
+	 * Returns the schema of the tuples produced by the operator.
+	 * Concrete subclasses of Operator should resolve their schema once, when the
+	 * query plan is built, and share it between all the tuples they produce.
+	 *
+	 * @return The Schema describing the columns of the operator's tuples.
+	 */
+	public abstract Schema getSchema();
 }
 
@@ -0,0 +1,173 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelCsvScanner parses a CSV table file on the common fork-join pool.
+ * The file is split into byte ranges that end at line breaks, each range is parsed by its own
+ * MappedCsvReader into a ColumnarTable chunk, and the chunks are handed out one batch at a time.
+ * Chunks are delivered in file order, or in the order they finish when the order is relaxed.
+ * Only a few chunks per worker thread are parsed ahead of the consumer, which bounds the memory used.
+ *
+ * @author jackson-zhou
+ */
+public class ParallelCsvScanner {
+	// The target size in bytes of the range parsed by one task
+	private static final long CHUNK_SIZE = 8L << 20;
+
+	private File file;
+	private List<String> columnTypes;
+	// The positions of the columns to be parsed
+	private int[] columnIndex;
+	private StringDictionary dictionary;
+	private boolean ordered;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	// The {start, end} byte offsets of every range of the file
+	private List<long[]> ranges;
+	private int nextRange;
+	private int maxInFlight;
+	// Tasks in submission order, used when the file order is preserved
+	private ArrayDeque<Future<ColumnarTable>> pending = new ArrayDeque<>();
+	// Tasks in completion order, used when the order is relaxed
+	private ExecutorCompletionService<ColumnarTable> completionService;
+	private int inFlight;
+
+	/**
+	 * Constructs a ParallelCsvScanner and starts parsing the first ranges of the file.
+	 *
+	 * @param file        The CSV file of the table.
+	 * @param columnTypes The schema types of the columns.
+	 * @param dictionary  The dictionary encoding the string values.
+	 * @param ordered     True to deliver the chunks in file order, false to deliver them as they finish.
+	 * @throws IOException If the file cannot be split into ranges.
+	 */
+	public ParallelCsvScanner(File file, List<String> columnTypes, StringDictionary dictionary, boolean ordered) throws IOException {
+		this(file, columnTypes, null, dictionary, ordered);
+	}
+
+	/**
+	 * Constructs a ParallelCsvScanner parsing only some columns of the file, and starts parsing its first ranges.
+	 * The chunks hold the parsed columns in the given order.
+	 *
+	 * @param file        The CSV file of the table.
+	 * @param columnTypes The schema types of all columns.
+	 * @param columnIndex The positions of the columns to be parsed, or null for all columns.
+	 * @param dictionary  The dictionary encoding the string values.
+	 * @param ordered     True to deliver the chunks in file order, false to deliver them as they finish.
+	 * @throws IOException If the file cannot be split into ranges.
+	 */
+	public ParallelCsvScanner(File file, List<String> columnTypes, int[] columnIndex, StringDictionary dictionary, boolean ordered) throws IOException {
+		this.file = file;
+		this.columnTypes = columnTypes;
+		if (columnIndex == null) {
+			columnIndex = new int[columnTypes.size()];
+			for (int c = 0; c < columnIndex.length; c++) {
+				columnIndex[c] = c;
+			}
+		}
+		this.columnIndex = columnIndex;
+		this.dictionary = dictionary;
+		this.ordered = ordered;
+		this.ranges = splitRanges(file, CHUNK_SIZE);
+		this.maxInFlight = 2 * pool.getParallelism();
+		this.completionService = new ExecutorCompletionService<>(pool);
+		submitTasks();
+	}
+
+	/**
+	 * Splits the file into ranges of about chunkSize bytes, each ending right after a line break.
+	 *
+	 * @param file      The file to be split.
+	 * @param chunkSize The target size of a range.
+	 * @return The {start, end} byte offsets of every range.
+	 * @throws IOException If the file cannot be read.
+	 */
+	static List<long[]> splitRanges(File file, long chunkSize) throws IOException {
+		List<long[]> ranges = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			long start = 0;
+			while (start < size) {
+				long end = Math.min(size, start + chunkSize);
+				// Move the end forward to just after the next line break
+				while (end < size) {
+					buffer.clear();
+					int read = channel.read(buffer, end);
+					int i = 0;
+					while (i < read && buffer.get(i) != '\n') {
+						i++;
+					}
+					end = Math.min(size, end + i + (i < read ? 1 : 0));
+					if (i < read) {
+						break;
+					}
+				}
+				ranges.add(new long[]{start, end});
+				start = end;
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Submits parsing tasks until enough ranges are in flight or all ranges are submitted.
+	 */
+	private void submitTasks() {
+		while (inFlight < maxInFlight && nextRange < ranges.size()) {
+			long[] range = ranges.get(nextRange++);
+			if (ordered) {
+				pending.add(pool.submit(() -> parseRange(range)));
+			} else {
+				completionService.submit(() -> parseRange(range));
+			}
+			inFlight++;
+		}
+	}
+
+	/**
+	 * Parses one range of the file.
+	 *
+	 * @param range The {start, end} byte offsets of the range.
+	 * @return The rows of the range.
+	 * @throws IOException If the range cannot be read.
+	 */
+	private ColumnarTable parseRange(long[] range) throws IOException {
+		return ColumnarTable.readCsv(new MappedCsvReader(file, range[0], range[1], columnTypes.size()), columnTypes, columnIndex, dictionary);
+	}
+
+	/**
+	 * Returns the next parsed chunk of the file, waiting for it if it is not ready yet.
+	 *
+	 * @return The rows of the next chunk, or null when all chunks have been delivered.
+	 * @throws IOException If a range could not be parsed.
+	 */
+	public ColumnarTable nextChunk() throws IOException {
+		if (inFlight == 0) {
+			return null;
+		}
+		try {
+			Future<ColumnarTable> future = ordered ? pending.poll() : completionService.take();
+			ColumnarTable chunk = future.get();
+			inFlight--;
+			submitTasks();
+			return chunk;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing " + file, e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to parse " + file, e.getCause());
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package ed.inf.adbs.minibase.Operator;
+
+import ed.inf.adbs.minibase.base.Head;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.Term;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ProductAggregateOperator evaluates the SUM aggregate of a query whose body falls apart into
+ * components that share no variables. Each child aggregates one component on its own, grouped by the
+ * head variables of that component, with the sum of the component's share of the product; a
+ * component holding none of the product's variables counts its rows. The joined rows of the query
+ * are the cross product of the components' rows, so the sum of a combination of groups is the
+ * product of their sums, times the constants of the aggregate. The cross product is only enumerated
+ * over the groups, never over the rows.
+ * Long multiplication distributes over long addition even when it overflows, so the sums are the
+ * same as those of aggregating the flat join result.
+ *
+ * @author jackson-zhou
+ */
+public class ProductAggregateOperator extends Operator {
+	// The aggregate of each component: its group by variables followed by its sum
+	private List<Operator> children;
+	private Schema schema;
+	// For every head variable, the child holding it and its position in that child's tuples
+	private int[] groupChild;
+	private int[] groupColumn;
+	// The product of the constants of the aggregate
+	private long constantFactor = 1;
+	// The groups of each child, null until the children have been read
+	private List<List<long[]>> groups;
+	// The group of each child in the combination to be returned next, null once all have been returned
+	private int[] position;
+
+	/**
+	 * Constructs a ProductAggregateOperator combining the aggregates of the components of a query.
+	 *
+	 * @param children The aggregate of each component, whose last column is the component's sum.
+	 * @param head     The head of the query, with a sum aggregate.
+	 */
+	public ProductAggregateOperator(List<Operator> children, Head head) {
+		this.children = children;
+		List<String> columnNames = new ArrayList<>();
+		List<String> columnTypes = new ArrayList<>();
+		groupChild = new int[head.getVariables().size()];
+		groupColumn = new int[groupChild.length];
+		for (int i = 0; i < groupChild.length; i++) {
+			String variable = head.getVariables().get(i).toString().trim();
+			for (int c = 0; c < children.size(); c++) {
+				Schema childSchema = children.get(c).getSchema();
+				int column = childSchema.indexOf(variable);
+				if (column >= 0) {
+					groupChild[i] = c;
+					groupColumn[i] = column;
+					columnNames.add(variable);
+					columnTypes.add(childSchema.getColumnTypes().get(column));
+					break;
+				}
+			}
+		}
+		for (Term term : head.getSumAggregate().getProductTerms()) {
+			if (term instanceof IntegerConstant) {
+				constantFactor *= ((IntegerConstant) term).getValue();
+			}
+		}
+		columnNames.add(head.getSumAggregate().toString());
+		columnTypes.add("int");
+		schema = new Schema(children.get(0).getSchema().getTableName(), columnNames, columnTypes);
+	}
+
+	/**
+	 * Reads the groups of all children, by batch or by tuple. If a component has no rows, neither
+	 * does the query, and no combination is returned.
+	 *
+	 * @param batchMode True to read the children batch at a time.
+	 */
+	private void load(boolean batchMode) {
+		groups = new ArrayList<>();
+		boolean empty = false;
+		for (Operator child : children) {
+			List<long[]> childGroups = new ArrayList<>();
+			if (batchMode) {
+				TupleBatch batch;
+				while ((batch = child.getNextBatch()) != null) {
+					long[][] columns = batch.getColumns();
+					for (int k = 0; k < batch.getSelectedCount(); k++) {
+						int row = batch.getSelection()[k];
+						long[] values = new long[columns.length];
+						for (int c = 0; c < values.length; c++) {
+							values[c] = columns[c][row];
+						}
+						childGroups.add(values);
+					}
+				}
+			} else {
+				Tuple tuple;
+				while ((tuple = child.getNextTuple()) != null) {
+					childGroups.add(tuple.getValue());
+				}
+			}
+			empty |= childGroups.isEmpty();
+			groups.add(childGroups);
+		}
+		position = empty ? null : new int[children.size()];
+	}
+
+	/**
+	 * Builds the values of the current combination of groups and moves on to the next one.
+	 *
+	 * @return The group by values followed by the product of the sums.
+	 */
+	private long[] nextCombination() {
+		long[] values = new long[groupChild.length + 1];
+		for (int i = 0; i < groupChild.length; i++) {
+			values[i] = groups.get(groupChild[i]).get(position[groupChild[i]])[groupColumn[i]];
+		}
+		long product = constantFactor;
+		for (int c = 0; c < position.length; c++) {
+			long[] group = groups.get(c).get(position[c]);
+			product *= group[group.length - 1];
+		}
+		values[groupChild.length] = product;
+		// Advance the positions like an odometer, the last child fastest
+		int c = position.length - 1;
+		while (c >= 0 && ++position[c] == groups.get(c).size()) {
+			position[c--] = 0;
+		}
+		if (c < 0) {
+			position = null;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the next combination of groups with its sum, reading the children on the first call.
+	 *
+	 * @return The next aggregated tuple, or null when all combinations have been returned.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		if (groups == null) {
+			load(false);
+		}
+		return position == null ? null : new Tuple(schema, nextCombination());
+	}
+
+	/**
+	 * Returns the next combinations of groups with their sums as a batch, reading the children batch at a time on the first call.
+	 *
+	 * @return The next batch of aggregated tuples, or null when all combinations have been returned.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		if (groups == null) {
+			load(true);
+		}
+		long[][] columns = new long[schema.size()][TupleBatch.BATCH_SIZE];
+		int rowCount = 0;
+		while (rowCount < TupleBatch.BATCH_SIZE && position != null) {
+			long[] values = nextCombination();
+			for (int c = 0; c < columns.length; c++) {
+				columns[c][rowCount] = values[c];
+			}
+			rowCount++;
+		}
+		return rowCount == 0 ? null : new TupleBatch(schema, columns, rowCount);
+	}
+
+	/**
+	 * Resets the operator, so that the children are read again on the next call.
+	 */
+	@Override
+	public void reset() {
+		for (Operator child : children) {
+			child.reset();
+		}
+		groups = null;
+		position = null;
+	}
+
+	/**
+	 * Closes the children.
+	 */
+	@Override
+	public void close() {
+		for (Operator child : children) {
+			child.close();
+		}
+	}
+
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+}
@@ -1,8 +1,9 @@
 package ed.inf.adbs.minibase.Operator;
 
 import ed.inf.adbs.minibase.base.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -12,33 +13,29 @@ import java.util.List;
  **/
 public class ProjectOperator extends Operator {
 	// Initializaiton
-	Head headAtom1;
-	private List<ComparisonAtom> comparisonList;
 	private DatabaseCatalog dbCatalog;
 	Operator operator;
 	List<Variable> headVariable;
 	Tuple tuple;
-	Tuple oldTuple;
-	private SumAggregate headAgg = null;
-	private List<Term> headAggVariable = new ArrayList<>();
 	List<String> allVariable = new ArrayList<>();
-	HashSet<List<String>> tupleSet = new HashSet<>();
-	List<String> nonValideString = new ArrayList<>();
-	Tuple nonValidTuple = new Tuple("Nonvalid", nonValideString, nonValideString, nonValideString);
-	Tuple newTuple;
+	// The distinct projected rows, spilled to disk beyond the memory budget
+	ExternalDistinct distinct;
+	// Whether the input is exhausted and only rows deferred by the distinct are left
+	boolean inputDone;
+	// The positions in the input tuples of the projected columns
+	int[] projectIndex;
+	// The schema of the projected tuples
+	Schema schema;
 
 	/**
 	 * Initializes the ProjectOperator with the provided parameters.
 	 *
-	 * @param operator       The underlying operator to be used
-	 * @param headAtom       The Head atom containing variables and sum aggregate information
-	 * @param comparisonList The list of comparison atoms for filtering
-	 * @param dbCatalogs     The database catalog used to store and retrieve table data
+	 * @param operator   The underlying operator to be used
+	 * @param headAtom   The Head atom containing the projected variables
+	 * @param dbCatalogs The database catalog providing the distinct memory budget
 	 */
-	public ProjectOperator(Operator operator, Head headAtom, List<ComparisonAtom> comparisonList, DatabaseCatalog dbCatalogs) {
+	public ProjectOperator(Operator operator, Head headAtom, DatabaseCatalog dbCatalogs) {
 		// Set the provided parameters to their respective instance variables
-		this.headAtom1 = headAtom;
-		this.comparisonList = comparisonList;
 		this.dbCatalog = dbCatalogs;
 		this.operator = operator;
 		this.headVariable = headAtom.getVariables();
@@ -48,169 +45,210 @@ public class ProjectOperator extends Operator {
 			allVariable.add(headVariable.get(i).toString().trim());
 		}
 
-		// If there is a sum aggregate in the head atom, add its product terms to the allVariable list
-		if (headAtom.getSumAggregate() != null) {
-			this.headAgg = headAtom.getSumAggregate();
-			this.headAggVariable = headAtom.getSumAggregate().getProductTerms();
-			for (int j = 0; j < headAggVariable.size(); j++) {
-				allVariable.add(headAggVariable.get(j).toString().trim());
-			}
-		}
+		// Resolve the projected columns against the schema of the input
+		initProjection(operator.getSchema());
+		distinct = new ExternalDistinct(projectIndex.length, dbCatalog.getDistinctMemoryBudget());
 	}
 
 	/**
 	 * Retrieves the next tuple after performing the project operation.
+	 * Input tuples whose projection was seen before, or is deferred by the distinct after spilling, are skipped.
 	 *
 	 * @return The next tuple after projection or null if no more tuples are available
+	 * @throws UncheckedIOException If the distinct rows cannot be spilled or read back
 	 */
 	@Override
 	public Tuple getNextTuple() {
-		// Fetch the next tuple from the underlying operator
-		oldTuple = operator.getNextTuple();
-		// If there is a tuple and it is not a "NonValid" tuple, perform the projection operation
-		if ((oldTuple != null)&&(!oldTuple.getTableName().equals("NonValid"))) {
-				oldTuple = runProject();
+		// If there are no columns to project, there is no output
+		if (allVariable.isEmpty()) {
+			return null;
 		}
-		// Update the instance variable and return the tuple
-		tuple = oldTuple;
+		Tuple inputTuple;
+		while (!inputDone && (inputTuple = operator.getNextTuple()) != null) {
+			tuple = runProject(inputTuple);
+			if (tuple != null) {
+				return tuple;
+			}
+		}
+		// Once the input is exhausted, return the rows the distinct deferred after spilling
+		if (!inputDone) {
+			finishInput();
+		}
+		tuple = nextDeferred();
 		return tuple;
 	}
 
 	/**
-	 * Performs the projection operation on the current tuple and returns the result.
+	 * Performs the projection operation on an input tuple.
 	 *
-	 * @return The projected tuple or null if there are no columns to project
+	 * @param inputTuple The tuple to be projected
+	 * @return The projected tuple, or null if it was output before or is deferred by the distinct
 	 */
-	private Tuple runProject() {
-		// Initialize the lists to store the ordered column names, column types, and values
-		List<String> columnName = new ArrayList<>();
-		List<String> columnType = new ArrayList<>();
-		List<String> value = new ArrayList<>();
-
-		// If there are variables in the query, perform the projection
-		if (!allVariable.isEmpty()) {
-			// Remove duplicate columns from the tuple
-			removeDuplicateColumns(oldTuple);
-			// Order the columns in the tuple based on the query
-			orderColumns(oldTuple, columnName, columnType, value);
-
-			// Create a new tuple with the ordered columns
-			Tuple newTuple = new Tuple(oldTuple.getTableName(), columnName, columnType, value);
-
-			// If there is no sum aggregate, return distinct tuples
-			if (headAtom1.getSumAggregate() == null) {
-				// If the new tuple already exists in the tupleSet, return the nonValidTuple
-				if (tupleSet.contains(newTuple.getValue())) {
-					return nonValidTuple;
-				} else {
-					// Add the new tuple to the tupleSet and return it
-					tupleSet.add(newTuple.getValue());
-					return newTuple;
-				}
-			} else {
-				// If there is a sum aggregate, return the new tuple without checking for distinctness
-				return newTuple;
-			}
-		} else {
-			// If there are no columns to project, return null
-			return null;
+	private Tuple runProject(Tuple inputTuple) {
+		// Copy the projected values in the order of the query
+		long[] value = new long[projectIndex.length];
+		for (int i = 0; i < projectIndex.length; i++) {
+			value[i] = inputTuple.getValue(projectIndex[i]);
+		}
+		try {
+			return distinct.add(value) ? new Tuple(schema, value) : null;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Spilling projection rows failed", e);
 		}
 	}
+
 	/**
-	 * Orders the columns of the given tuple based on the query and adds them to the provided lists.
+	 * Retrieves the next batch after performing the project operation.
+	 * The projected batch shares the column vectors and the selection vector of its input, and
+	 * rows seen before are removed from the selection. Rows the distinct
+	 * deferred after spilling are returned in batches of their own once the input is exhausted.
 	 *
-	 * @param tuple      The tuple with unordered columns
-	 * @param columnName The list that will store the ordered column names
-	 * @param columnType The list that will store the ordered column types
-	 * @param value      The list that will store the ordered values
+	 * @return The next projected batch or null if no more tuples are available
+	 * @throws UncheckedIOException If the distinct rows cannot be spilled or read back
 	 */
-	private void orderColumns(Tuple tuple, List<String> columnName, List<String> columnType, List<String> value) {
-		// Iterate through all the variables in the query
-		for (String var : allVariable) {
-			// Iterate through the columns in the tuple
-			for (int j = 0; j < tuple.getColumnName().size(); j++) {
-				// If the column name matches the variable in the query
-				if (tuple.getColumnName().get(j).equals(var)) {
-					// Add the column name, column type, and value to their respective lists
-					columnName.add(tuple.getColumnName().get(j));
-					columnType.add(tuple.getColumnType().get(j));
-					value.add(tuple.getValue().get(j));
+	@Override
+	public TupleBatch getNextBatch() {
+		// If there are no columns to project, there is no output
+		if (allVariable.isEmpty()) {
+			return null;
+		}
+		TupleBatch batch;
+		while (!inputDone && (batch = operator.getNextBatch()) != null) {
+			long[][] columns = new long[projectIndex.length][];
+			for (int i = 0; i < projectIndex.length; i++) {
+				columns[i] = batch.getColumn(projectIndex[i]);
+			}
+			int[] selection = batch.getSelection();
+			int count = batch.getSelectedCount();
+			// Keep only the rows that were not output before
+			int distinctCount = 0;
+			try {
+				for (int k = 0; k < count; k++) {
+					int row = selection[k];
+					if (distinct.add(columns, row)) {
+						selection[distinctCount++] = row;
+					}
 				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Spilling projection rows failed", e);
+			}
+			if (distinctCount > 0) {
+				return new TupleBatch(schema, columns, batch.getRowCount(), selection, distinctCount);
 			}
 		}
+		if (!inputDone) {
+			finishInput();
+		}
+		// Collect the deferred rows that are new into a batch
+		long[][] columns = new long[projectIndex.length][TupleBatch.BATCH_SIZE];
+		int count = 0;
+		Tuple deferred;
+		while (count < TupleBatch.BATCH_SIZE && (deferred = nextDeferred()) != null) {
+			for (int i = 0; i < columns.length; i++) {
+				columns[i][count] = deferred.getValue(i);
+			}
+			count++;
+		}
+		return count > 0 ? new TupleBatch(schema, columns, count) : null;
 	}
 
 	/**
-	 * Removes duplicate columns from the given tuple.
+	 * Ends the input of the distinct, so that it deduplicates the rows it deferred after spilling.
 	 *
-	 * @param tuple The tuple from which duplicate columns will be removed
+	 * @throws UncheckedIOException If the spilled partitions cannot be written
 	 */
-	private void removeDuplicateColumns(Tuple tuple) {
-		// Iterate through the columns in the tuple
-		for (int i = 0; i < tuple.getColumnName().size(); i++) {
-			// Iterate through the remaining columns (after the current column)
-			for (int j = i + 1; j < tuple.getColumnName().size(); j++) {
-				// Check if the current column and the compared column have the same name
-				if (tuple.getColumnName().get(i).equals(tuple.getColumnName().get(j))) {
-					// Remove the duplicate column name, column type, and value from the tuple
-					removeDuplicateTuple(tuple,j);
-					// Decrement the index to account for the removed column
-					j--;
-				}
-			}
+	private void finishInput() {
+		inputDone = true;
+		try {
+			distinct.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Spilling projection rows failed", e);
 		}
 	}
 
 	/**
-	 * Removes the column at the specified index from the given tuple.
-	 * This method also removes the associated column type and value for the removed column.
+	 * Retrieves the next row deferred by the distinct that was not output before.
 	 *
-	 * @param tuple The tuple from which to remove the column, its type, and its value.
-	 * @param index The index of the column to remove from the tuple.
-	 * @throws IndexOutOfBoundsException If the index is out of range (index < 0 || index >= tuple.getColumnName().size()).
+	 * @return The next deferred projected tuple or null if there are none left
+	 * @throws UncheckedIOException If the spilled partitions cannot be read
 	 */
-	private void removeDuplicateTuple(Tuple tuple, int index) {
-		// Check if the provided index is within the bounds of the tuple's column list
-		if (index < 0 || index >= tuple.getColumnName().size()) {
-			throw new IndexOutOfBoundsException("Index out of range: " + index);
+	private Tuple nextDeferred() {
+		try {
+			long[] value = distinct.next();
+			return value == null ? null : new Tuple(schema, value);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Reading spilled projection rows failed", e);
 		}
-
-		// Remove the column name at the specified index from the tuple's column name list
-		tuple.getColumnName().remove(index);
-
-		// Remove the column type at the specified index from the tuple's column type list
-		tuple.getColumnType().remove(index);
-
-		// Remove the value at the specified index from the tuple's value list
-		tuple.getValue().remove(index);
 	}
 
+	/**
+	 * Finds the position of every projected variable in the input tuples, ordered according to the query.
+	 * Columns repeating a variable are skipped, and variables that no column holds are left out.
+	 *
+	 * @param inputSchema The schema of the input tuples
+	 */
+	private void initProjection(Schema inputSchema) {
+		List<Integer> indexList = new ArrayList<>();
+		List<String> columnName = new ArrayList<>();
+		List<String> columnType = new ArrayList<>();
+		// Iterate through all the variables in the query
+		for (String var : allVariable) {
+			// The first column holding the variable provides its value
+			int j = inputSchema.indexOf(var);
+			if (j >= 0) {
+				indexList.add(j);
+				columnName.add(inputSchema.getColumnNames().get(j));
+				columnType.add(inputSchema.getColumnTypes().get(j));
+			}
+		}
+		projectIndex = new int[indexList.size()];
+		for (int i = 0; i < projectIndex.length; i++) {
+			projectIndex[i] = indexList.get(i);
+		}
+		schema = new Schema(inputSchema.getTableName(), columnName, columnType);
+	}
 
 	/**
-	 * Processes all remaining tuples in the operator and adds them to the database catalog.
+	 * Processes all remaining tuples in the operator and prints them.
 	 */
 	@Override
 	public void dump() {
 		// Continuously fetches tuples until there are no more tuples left
-		while (tuple != null) {
-			// If the tuple is not a "NonValid" tuple, it is added to the database catalog
-			if (!tuple.getTableName().equals("NonValid")) {
-				dbCatalog.addTupleList(tuple);
-			}
-			// Fetch the next tuple
-			tuple = getNextTuple();
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(tuple);
 		}
 	}
 
 	/**
-	 * Resets the ProjectOperator, clearing the tuple set.
+	 * Returns the schema of the projected tuples.
+	 *
+	 * @return The Schema holding the projected columns in the order of the query.
+	 */
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Resets the ProjectOperator, clearing the distinct rows and deleting their spilled partitions.
 	 */
 	@Override
 	public void reset() {
 		// Resets the underlying operator
 		operator.reset();
-		// Clears the set of tuples to remove any existing tuple information
-		tupleSet.clear();
+		// Clears the distinct rows to remove any existing tuple information
+		distinct.close();
+		distinct = new ExternalDistinct(projectIndex.length, dbCatalog.getDistinctMemoryBudget());
+		inputDone = false;
+	}
+
+	/**
+	 * Closes the ProjectOperator, deleting the spilled partitions of the distinct rows.
+	 */
+	@Override
+	public void close() {
+		operator.close();
+		distinct.close();
 	}
 
 }
@@ -0,0 +1,158 @@
+package ed.inf.adbs.minibase.Operator;
+
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * QueryHypergraph is the hypergraph of the body of a conjunctive query: its vertices are the variables
+ * and every relational atom is a hyperedge over the variables it mentions. QueryPlan uses it to tell
+ * acyclic queries from cyclic ones such as triangles, which are evaluated by a worst-case optimal
+ * LeapfrogTriejoinOperator. For acyclic queries the GYO reduction also yields a join tree, along
+ * which a SemiJoinReducer removes dangling tuples before the binary joins.
+ *
+ * @author jackson-zhou
+ */
+public class QueryHypergraph {
+	// The variables of each relational atom, in the order they appear in the atom
+	private List<Set<String>> edges = new ArrayList<>();
+	// The parent of each atom in the join tree, -1 for the root, or null if the query is cyclic
+	private int[] parent;
+	// The atoms in the order the GYO reduction removed them, every atom before its parent and the root last
+	private int[] eliminationOrder;
+
+	/**
+	 * Constructs the hypergraph of the given relational atoms.
+	 *
+	 * @param relationalBody The list of relational atoms in the query body.
+	 */
+	public QueryHypergraph(List<RelationalAtom> relationalBody) {
+		for (RelationalAtom atom : relationalBody) {
+			Set<String> edge = new LinkedHashSet<>();
+			for (Term term : atom.getTerms()) {
+				if (term instanceof Variable) {
+					edge.add(term.toString().trim());
+				}
+			}
+			edges.add(edge);
+		}
+		reduce();
+	}
+
+	/**
+	 * Returns the variables of each relational atom.
+	 *
+	 * @return One set of variables per atom, in the order of the query body.
+	 */
+	public List<Set<String>> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Runs the GYO reduction: variables that occur in only one atom are removed, as are atoms whose
+	 * variables are all contained in another atom, which becomes their parent in the join tree.
+	 * The hypergraph is acyclic if this leaves a single atom, the root of the join tree.
+	 * Atoms of different connected components end up with no variables left, so they are attached
+	 * to each other without sharing variables.
+	 */
+	private void reduce() {
+		List<Set<String>> remaining = new ArrayList<>();
+		List<Integer> atoms = new ArrayList<>();
+		for (int i = 0; i < edges.size(); i++) {
+			remaining.add(new LinkedHashSet<>(edges.get(i)));
+			atoms.add(i);
+		}
+		int[] parents = new int[edges.size()];
+		int[] order = new int[edges.size()];
+		int eliminated = 0;
+		boolean changed = true;
+		while (changed && remaining.size() > 1) {
+			changed = false;
+			// Remove the variables occurring in a single atom
+			for (Set<String> edge : remaining) {
+				changed |= edge.removeIf(variable -> countEdges(remaining, variable) == 1);
+			}
+			// Remove an atom contained in another one, which becomes its parent
+			for (int i = 0; i < remaining.size(); i++) {
+				int container = findContainer(remaining, i);
+				if (container >= 0) {
+					parents[atoms.get(i)] = atoms.get(container);
+					order[eliminated++] = atoms.get(i);
+					remaining.remove(i);
+					atoms.remove(i);
+					changed = true;
+					break;
+				}
+			}
+		}
+		if (remaining.size() <= 1) {
+			if (!atoms.isEmpty()) {
+				parents[atoms.get(0)] = -1;
+				order[eliminated] = atoms.get(0);
+			}
+			parent = parents;
+			eliminationOrder = order;
+		}
+	}
+
+	/**
+	 * Checks whether the hypergraph is alpha-acyclic according to the GYO reduction.
+	 *
+	 * @return True if the query is acyclic, false if it contains a cycle.
+	 */
+	public boolean isAcyclic() {
+		return parent != null;
+	}
+
+	/**
+	 * Returns the join tree of an acyclic query: for every atom, the atom containing all variables
+	 * it shares with the atoms eliminated after it.
+	 *
+	 * @return The parent of each atom, -1 for the root, or null if the query is cyclic.
+	 */
+	public int[] getJoinTreeParents() {
+		return parent;
+	}
+
+	/**
+	 * Returns the atoms in the order the GYO reduction removed them, which lists every atom
+	 * before its parent and ends with the root of the join tree.
+	 *
+	 * @return The positions of the atoms in bottom-up order, or null if the query is cyclic.
+	 */
+	public int[] getEliminationOrder() {
+		return eliminationOrder;
+	}
+
+	/**
+	 * Counts the atoms containing a variable.
+	 */
+	private static int countEdges(List<Set<String>> edges, String variable) {
+		int count = 0;
+		for (Set<String> edge : edges) {
+			if (edge.contains(variable)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds another atom containing all variables of an atom.
+	 *
+	 * @return The position of the containing atom, or -1 if there is none.
+	 */
+	private static int findContainer(List<Set<String>> edges, int index) {
+		for (int j = 0; j < edges.size(); j++) {
+			if (j != index && edges.get(j).containsAll(edges.get(index))) {
+				return j;
+			}
+		}
+		return -1;
+	}
+}
@@ -2,9 +2,22 @@ package ed.inf.adbs.minibase.Operator;
 
 import ed.inf.adbs.minibase.base.ComparisonAtom;
 import ed.inf.adbs.minibase.base.Head;
+import ed.inf.adbs.minibase.base.IntegerConstant;
 import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.SumAggregate;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * QueryPlan is responsible for constructing an optimized query plan for a given query.
@@ -14,12 +27,17 @@ import java.util.List;
  * @author jackson-zhou
  */
 public class QueryPlan {
+	// Acyclic queries with at least this many atoms are reduced by semi-joins before they are joined
+	private static final int MIN_SEMI_JOIN_RELATIONS = 3;
 
 	private Operator operator;
 
 	/**
 	 * Constructs an optimized query plan using the given head, relationalBody, comparisonBody, and dbCatalog.
-	 * The plan is a combination of various operators like Scan, Select, Join, and Project.
+	 * The plan is a combination of various operators like Scan, Select, Join, and Project, or a
+	 * HashAggregateOperator on top if the head has a sum aggregate, or an ExistsOperator if the head is
+	 * empty and the query is a boolean one. A sum over a body that falls apart
+	 * into components sharing no variables aggregates every component on its own and multiplies the sums.
 	 * The detailed explanation can be found in readme.md.
 	 *
 	 * @param head            the query head
@@ -28,43 +46,630 @@ public class QueryPlan {
 	 * @param dbCatalog       the database catalog
 	 */
 	public QueryPlan(Head head, List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, DatabaseCatalog dbCatalog) {
-		if (relationalBody.size() == 1) {
-			createSingleRelationPlan(relationalBody, comparisonBody, dbCatalog);
+		if (head.getSumAggregate() != null) {
+			List<List<Integer>> components = findComponents(relationalBody, comparisonBody);
+			if (components.size() > 1) {
+				createComponentAggregatePlan(head, relationalBody, comparisonBody, components, dbCatalog);
+				return;
+			}
+		}
+		createPlan(head, relationalBody, comparisonBody, dbCatalog);
+	}
+
+	/**
+	 * Creates the plan of a query, or of one component of a query whose sum is aggregated per component.
+	 *
+	 * @param head            the query head
+	 * @param relationalBody  the list of relational atoms in the query body
+	 * @param comparisonBody  the list of comparison atoms in the query body
+	 * @param dbCatalog       the database catalog
+	 */
+	private void createPlan(Head head, List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, DatabaseCatalog dbCatalog) {
+		// The variables the ProjectOperator or HashAggregateOperator reads: those of the head and of its sum aggregate
+		Set<String> headVariables = new LinkedHashSet<>();
+		for (Variable variable : head.getVariables()) {
+			headVariables.add(variable.toString().trim());
+		}
+		if (head.getSumAggregate() != null) {
+			headVariables.addAll(variablesOf(head.getSumAggregate().getProductTerms()));
+		}
+
+		if (hasConflictingTypes(relationalBody, dbCatalog)) {
+			// Joins and selections compare the raw values of columns, where an int could equal the
+			// dictionary id of a string, so a variable held by both an int and a string column is ruled out here
+			List<String> columnNames = new ArrayList<>();
+			for (Variable variable : head.getVariables()) {
+				columnNames.add(variable.toString().trim());
+			}
+			operator = new EmptyOperator(new Schema(head.getName(), columnNames, Collections.nCopies(columnNames.size(), "int")));
+		} else if (relationalBody.size() == 1) {
+			createSingleRelationPlan(relationalBody, comparisonBody, headVariables, dbCatalog);
+		} else if (createMultiRelationPlan(head, relationalBody, comparisonBody, headVariables, dbCatalog)) {
+			// The sum was already aggregated over the factorized join
+			return;
+		}
+
+		if (head.getSumAggregate() != null) {
+			operator = new HashAggregateOperator(operator, head, dbCatalog.getAggregationThreads());
+		} else if (head.getVariables().isEmpty()) {
+			operator = new ExistsOperator(operator, head.getName());
 		} else {
-			createMultiRelationPlan(relationalBody, comparisonBody, dbCatalog);
+			operator = new ProjectOperator(operator, head, dbCatalog);
 		}
+	}
 
-		operator = new ProjectOperator(operator, head, comparisonBody, dbCatalog);
+	/**
+	 * Splits the atoms of a query into its components: atoms sharing a variable, directly or through
+	 * other atoms, are in the same component, and so are atoms whose variables a comparison relates.
+	 *
+	 * @param relationalBody  the list of relational atoms in the query body
+	 * @param comparisonBody  the list of comparison atoms in the query body
+	 * @return the positions of the atoms of every component, in the order of the query body
+	 */
+	private static List<List<Integer>> findComponents(List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody) {
+		List<Set<String>> links = new ArrayList<>();
+		for (RelationalAtom atom : relationalBody) {
+			links.add(variablesOf(atom.getTerms()));
+		}
+		for (ComparisonAtom comparison : comparisonBody) {
+			links.add(variablesOf(Arrays.asList(comparison.getTerm1(), comparison.getTerm2())));
+		}
+		// Every link merges the components of all atoms holding one of its variables
+		int[] component = new int[relationalBody.size()];
+		for (int i = 0; i < component.length; i++) {
+			component[i] = i;
+		}
+		for (Set<String> link : links) {
+			int first = -1;
+			for (int i = 0; i < component.length; i++) {
+				if (Collections.disjoint(link, links.get(i))) {
+					continue;
+				}
+				if (first < 0) {
+					first = component[i];
+				} else if (component[i] != first) {
+					int merged = component[i];
+					for (int j = 0; j < component.length; j++) {
+						if (component[j] == merged) {
+							component[j] = first;
+						}
+					}
+				}
+			}
+		}
+		Map<Integer, List<Integer>> components = new LinkedHashMap<>();
+		for (int i = 0; i < component.length; i++) {
+			components.computeIfAbsent(component[i], c -> new ArrayList<>()).add(i);
+		}
+		return new ArrayList<>(components.values());
 	}
 
 	/**
-	 * Creates a query plan for a single relational atom.
+	 * Creates the plan of a sum over a body whose components share no variables. Every component is
+	 * planned on its own and aggregated by a HashAggregateOperator, grouped by its head variables, with
+	 * the sum of the product of its variables in the aggregate, or the count of its rows if it holds
+	 * none. A ProductAggregateOperator combines the groups of the components and multiplies their sums,
+	 * so the cross product of the components' rows is never enumerated. Comparisons without variables
+	 * go with the first component.
 	 *
+	 * @param head            the query head
 	 * @param relationalBody  the list of relational atoms in the query body
 	 * @param comparisonBody  the list of comparison atoms in the query body
+	 * @param components      the positions of the atoms of every component
 	 * @param dbCatalog       the database catalog
 	 */
-	private void createSingleRelationPlan(List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, DatabaseCatalog dbCatalog) {
-		operator = new ScanOperator(relationalBody.get(0), dbCatalog);
-
-		if (!comparisonBody.isEmpty()) {
-			operator = new SelectOperator(operator, comparisonBody, dbCatalog);
+	private void createComponentAggregatePlan(Head head, List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, List<List<Integer>> components, DatabaseCatalog dbCatalog) {
+		List<Operator> componentAggregates = new ArrayList<>();
+		for (int c = 0; c < components.size(); c++) {
+			List<RelationalAtom> componentBody = new ArrayList<>();
+			Set<String> componentVariables = new LinkedHashSet<>();
+			for (int i : components.get(c)) {
+				componentBody.add(relationalBody.get(i));
+				componentVariables.addAll(variablesOf(relationalBody.get(i).getTerms()));
+			}
+			List<ComparisonAtom> componentComparisons = new ArrayList<>();
+			for (ComparisonAtom comparison : comparisonBody) {
+				Set<String> variables = variablesOf(Arrays.asList(comparison.getTerm1(), comparison.getTerm2()));
+				if (variables.isEmpty() ? c == 0 : componentVariables.containsAll(variables)) {
+					componentComparisons.add(comparison);
+				}
+			}
+			List<Variable> groupVariables = new ArrayList<>();
+			for (Variable variable : head.getVariables()) {
+				if (componentVariables.contains(variable.toString().trim())) {
+					groupVariables.add(variable);
+				}
+			}
+			List<Term> productTerms = new ArrayList<>();
+			for (Term term : head.getSumAggregate().getProductTerms()) {
+				if (term instanceof Variable && componentVariables.contains(term.toString().trim())) {
+					productTerms.add(term);
+				}
+			}
+			if (productTerms.isEmpty()) {
+				productTerms.add(new IntegerConstant(1));
+			}
+			createPlan(new Head(head.getName(), groupVariables, new SumAggregate(productTerms)), componentBody, componentComparisons, dbCatalog);
+			componentAggregates.add(operator);
 		}
+		operator = new ProductAggregateOperator(componentAggregates, head);
+	}
+
+	/**
+	 * Creates a query plan for a single relational atom.
+	 *
+	 * @param relationalBody  the list of relational atoms in the query body
+	 * @param comparisonBody  the list of comparison atoms in the query body
+	 * @param headVariables   the variables read by the head
+	 * @param dbCatalog       the database catalog
+	 */
+	private void createSingleRelationPlan(List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, Set<String> headVariables, DatabaseCatalog dbCatalog) {
+		operator = createAtomOperator(relationalBody.get(0), comparisonBody, headVariables, dbCatalog);
 	}
 
 	/**
 	 * Creates a query plan for multiple relational atoms.
+	 * Cyclic queries are joined all at once by a LeapfrogTriejoinOperator. For acyclic queries the
+	 * JoinOrderOptimizer picks the cheapest join tree for the atoms based on the table statistics,
+	 * and every inner node of that tree becomes a hash or sort-merge join. With three or more atoms,
+	 * a SemiJoinReducer first removes the dangling rows of every atom along the GYO join tree;
+	 * two atoms are joined directly, as a hash join already reads each of them only once.
+	 * Every atom is filtered right after its scan by its constants, its repeated variables and the
+	 * comparisons over its variables alone; only comparisons spanning several atoms are tested
+	 * above the joins. Columns are pruned as early as possible: an atom only keeps the variables
+	 * that another atom, a comparison above the joins or the head refers to, and every join below
+	 * the root only keeps the variables still referred to outside its subtree.
+	 * A sum over an acyclic query without comparisons spanning several atoms is instead aggregated
+	 * along the join tree by a FactorizedAggregateOperator, which never builds the flat join.
+	 * Queries without a sum treat the variables missing from the head as existential: joins whose
+	 * right input adds no needed variable become HashSemiJoinOperators, and a triejoin returns every
+	 * binding of the needed variables once, with a single witness for the others. Boolean queries
+	 * also skip the SemiJoinReducer, which would read every atom in full.
 	 *
+	 * @param head            the query head
 	 * @param relationalBody  the list of relational atoms in the query body
 	 * @param comparisonBody  the list of comparison atoms in the query body
+	 * @param headVariables   the variables read by the head
+	 * @param dbCatalog       the database catalog
+	 * @return true if the plan already aggregates the sum of the head
+	 */
+	private boolean createMultiRelationPlan(Head head, List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, Set<String> headVariables, DatabaseCatalog dbCatalog) {
+		List<List<ComparisonAtom>> atomComparisons = new ArrayList<>();
+		List<ComparisonAtom> joinComparisons = assignComparisons(relationalBody, comparisonBody, atomComparisons);
+		// The variables needed above the joins, by the comparisons spanning several atoms and by the head
+		Set<String> rootVariables = new LinkedHashSet<>(headVariables);
+		for (ComparisonAtom comparison : joinComparisons) {
+			rootVariables.addAll(variablesOf(Arrays.asList(comparison.getTerm1(), comparison.getTerm2())));
+		}
+		List<Set<String>> atomVariables = new ArrayList<>();
+		for (RelationalAtom atom : relationalBody) {
+			atomVariables.add(variablesOf(atom.getTerms()));
+		}
+		List<Operator> atomOperators = new ArrayList<>();
+		for (int i = 0; i < relationalBody.size(); i++) {
+			Set<String> neededVariables = findNeededVariables(Collections.singleton(i), atomVariables, rootVariables);
+			atomOperators.add(createAtomOperator(relationalBody.get(i), atomComparisons.get(i), neededVariables, dbCatalog));
+		}
+
+		QueryHypergraph hypergraph = new QueryHypergraph(relationalBody);
+		if (head.getSumAggregate() != null && hypergraph.isAcyclic() && joinComparisons.isEmpty() && dbCatalog.isFactorizedAggregation()) {
+			operator = new FactorizedAggregateOperator(atomOperators, hypergraph, head);
+			return true;
+		}
+		if (hypergraph.isAcyclic()) {
+			JoinOrderOptimizer optimizer = new JoinOrderOptimizer(relationalBody, atomComparisons, dbCatalog);
+			boolean booleanQuery = head.getVariables().isEmpty() && head.getSumAggregate() == null;
+			if (relationalBody.size() >= MIN_SEMI_JOIN_RELATIONS && !booleanQuery) {
+				SemiJoinReducer reducer = new SemiJoinReducer(new ArrayList<>(atomOperators), hypergraph);
+				for (int i = 0; i < atomOperators.size(); i++) {
+					atomOperators.set(i, reducer.getReducedOperator(i));
+				}
+			}
+			// Without a sum, duplicates are removed by the projection and existential atoms can be semi-joins
+			operator = createJoinOperator(optimizer.getJoinTree(), atomOperators, atomVariables, rootVariables, true, head.getSumAggregate() == null, dbCatalog);
+		} else {
+			// Variables pruned from every atom are not bound by the triejoin at all
+			Set<String> keptVariables = new LinkedHashSet<>();
+			for (Operator atomOperator : atomOperators) {
+				keptVariables.addAll(atomOperator.getSchema().getColumnNames());
+			}
+			// Without a sum, the variables needed above the join are bound first and the others only need a witness
+			Set<String> outputVariables = head.getSumAggregate() == null ? rootVariables : keptVariables;
+			List<String> order = chooseVariableOrder(relationalBody, hypergraph, keptVariables, outputVariables, dbCatalog);
+			int outputDepth = 0;
+			while (outputDepth < order.size() && outputVariables.contains(order.get(outputDepth))) {
+				outputDepth++;
+			}
+			operator = new LeapfrogTriejoinOperator(atomOperators, order, Math.max(outputDepth, 1));
+		}
+
+		if (!joinComparisons.isEmpty()) {
+			// The atoms' constants and repeated variables were already tested after their scans
+			operator = new SelectOperator(operator, joinComparisons, false, dbCatalog);
+		}
+		return false;
+	}
+
+	/**
+	 * Assigns every comparison over the variables of a single atom to the first atom holding all of
+	 * them, so that it is tested right after that atom's scan. Comparisons without variables are
+	 * assigned to the first atom, whose filter then either keeps or drops all rows.
+	 *
+	 * @param relationalBody   the list of relational atoms in the query body
+	 * @param comparisonBody   the list of comparison atoms in the query body
+	 * @param atomComparisons  filled with the comparisons assigned to each atom
+	 * @return the comparisons spanning several atoms, to be tested after the joins
+	 */
+	private List<ComparisonAtom> assignComparisons(List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, List<List<ComparisonAtom>> atomComparisons) {
+		List<Set<String>> atomVariables = new ArrayList<>();
+		for (RelationalAtom atom : relationalBody) {
+			atomVariables.add(variablesOf(atom.getTerms()));
+			atomComparisons.add(new ArrayList<>());
+		}
+		List<ComparisonAtom> joinComparisons = new ArrayList<>();
+		for (ComparisonAtom comparison : comparisonBody) {
+			Set<String> variables = variablesOf(Arrays.asList(comparison.getTerm1(), comparison.getTerm2()));
+			int atomIndex = -1;
+			for (int i = 0; i < atomVariables.size() && atomIndex < 0; i++) {
+				if (atomVariables.get(i).containsAll(variables)) {
+					atomIndex = i;
+				}
+			}
+			if (atomIndex >= 0) {
+				atomComparisons.get(atomIndex).add(comparison);
+			} else {
+				joinComparisons.add(comparison);
+			}
+		}
+		return joinComparisons;
+	}
+
+	/**
+	 * Collects the variables among some terms.
+	 *
+	 * @param terms the terms
+	 * @return the names of the variables, in the order of the terms
+	 */
+	private static Set<String> variablesOf(List<Term> terms) {
+		Set<String> variables = new LinkedHashSet<>();
+		for (Term term : terms) {
+			if (term instanceof Variable) {
+				variables.add(term.toString().trim());
+			}
+		}
+		return variables;
+	}
+
+	/**
+	 * Finds the variables of some atoms that are still needed once those atoms are joined:
+	 * the variables that an atom outside the group shares, or that are needed above the joins.
+	 *
+	 * @param atoms          the positions of the atoms in the group
+	 * @param atomVariables  the variables of every atom
+	 * @param rootVariables  the variables needed above the joins
+	 * @return the needed variables of the group
+	 */
+	private static Set<String> findNeededVariables(Set<Integer> atoms, List<Set<String>> atomVariables, Set<String> rootVariables) {
+		Set<String> referenced = new LinkedHashSet<>(rootVariables);
+		for (int i = 0; i < atomVariables.size(); i++) {
+			if (!atoms.contains(i)) {
+				referenced.addAll(atomVariables.get(i));
+			}
+		}
+		Set<String> needed = new LinkedHashSet<>();
+		for (int i : atoms) {
+			for (String variable : atomVariables.get(i)) {
+				if (referenced.contains(variable)) {
+					needed.add(variable);
+				}
+			}
+		}
+		return needed;
+	}
+
+	/**
+	 * Creates the operator reading one relational atom: a ScanOperator, followed by a SelectOperator
+	 * if the atom holds constants or repeated variables, or if some comparisons were assigned to it.
+	 * The scan only parses the columns that the selection tests or that hold a needed variable, and
+	 * a ColumnPruneOperator drops the columns only the selection needed. At least one column is kept,
+	 * so that the rows of an atom without needed variables still count.
+	 *
+	 * @param atom            the relational atom
+	 * @param comparisons     the comparisons over the variables of the atom alone
+	 * @param neededVariables the variables of the atom that later operators read
+	 * @param dbCatalog       the database catalog
+	 * @return the operator delivering the needed columns of the rows of the atom's relation that match the atom
+	 */
+	private Operator createAtomOperator(RelationalAtom atom, List<ComparisonAtom> comparisons, Set<String> neededVariables, DatabaseCatalog dbCatalog) {
+		List<String> terms = new ArrayList<>();
+		for (Term term : atom.getTerms()) {
+			terms.add(term.toString().trim());
+		}
+		Set<String> comparedVariables = new LinkedHashSet<>();
+		for (ComparisonAtom comparison : comparisons) {
+			comparedVariables.addAll(variablesOf(Arrays.asList(comparison.getTerm1(), comparison.getTerm2())));
+		}
+		boolean atomTerms = false;
+		boolean[] scanned = new boolean[terms.size()];
+		List<String> keptColumns = new ArrayList<>();
+		for (int c = 0; c < terms.size(); c++) {
+			String term = terms.get(c);
+			boolean firstOccurrence = terms.indexOf(term) == c;
+			if (!HashJoinOperator.isVariable(term) || !firstOccurrence || terms.lastIndexOf(term) != c) {
+				// Constants and every occurrence of a repeated variable are tested by the selection
+				atomTerms |= !HashJoinOperator.isVariable(term) || !firstOccurrence;
+				scanned[c] = true;
+			}
+			if (firstOccurrence && comparedVariables.contains(term)) {
+				scanned[c] = true;
+			}
+			if (firstOccurrence && neededVariables.contains(term)) {
+				scanned[c] = true;
+				keptColumns.add(term);
+			}
+		}
+		if (keptColumns.isEmpty()) {
+			scanned[0] = true;
+			keptColumns.add(terms.get(0));
+		}
+		List<Integer> columnList = new ArrayList<>();
+		for (int c = 0; c < scanned.length; c++) {
+			if (scanned[c]) {
+				columnList.add(c);
+			}
+		}
+		int[] columnIndex = new int[columnList.size()];
+		for (int i = 0; i < columnIndex.length; i++) {
+			columnIndex[i] = columnList.get(i);
+		}
+
+		Operator atomOperator = new ScanOperator(atom, columnIndex, dbCatalog);
+		if (atomTerms || !comparisons.isEmpty()) {
+			atomOperator = new SelectOperator(atomOperator, comparisons, dbCatalog);
+		}
+		if (columnIndex.length > keptColumns.size()) {
+			atomOperator = new ColumnPruneOperator(atomOperator, keptColumns);
+		}
+		return atomOperator;
+	}
+
+	/**
+	 * Chooses the order in which a triejoin binds the variables. Greedily, the next variable is one
+	 * that shares an atom with the variables already chosen, so no level enumerates a cross product,
+	 * preferring variables occurring in more atoms and then those with fewer distinct values, which
+	 * leapfrog over fewer candidates. Variables pruned from all atoms are left out, and the output
+	 * variables come before all others, which the triejoin then only binds to find a witness.
+	 *
+	 * @param relationalBody  the list of relational atoms in the query body
+	 * @param hypergraph      the hypergraph of the query body
+	 * @param keptVariables   the variables still held by the pruned atoms
+	 * @param outputVariables the variables to be bound first
 	 * @param dbCatalog       the database catalog
+	 * @return the variables in the order they are bound
+	 */
+	private List<String> chooseVariableOrder(List<RelationalAtom> relationalBody, QueryHypergraph hypergraph, Set<String> keptVariables, Set<String> outputVariables, DatabaseCatalog dbCatalog) {
+		List<Set<String>> edges = hypergraph.getEdges();
+		// The number of atoms containing each variable and the fewest distinct values of its columns
+		Map<String, Integer> atomCount = new LinkedHashMap<>();
+		Map<String, Long> distinctCount = new HashMap<>();
+		for (int a = 0; a < relationalBody.size(); a++) {
+			RelationalAtom atom = relationalBody.get(a);
+			TableStatistics statistics = dbCatalog.getTableStatistics(atom.getName());
+			for (String variable : edges.get(a)) {
+				atomCount.merge(variable, 1, Integer::sum);
+			}
+			List<Term> terms = atom.getTerms();
+			for (int i = 0; i < terms.size(); i++) {
+				if (terms.get(i) instanceof Variable) {
+					distinctCount.merge(terms.get(i).toString().trim(), statistics.getDistinctCount(i), Math::min);
+				}
+			}
+		}
+		Comparator<String> preference = Comparator.<String>comparingInt(atomCount::get).reversed()
+				.thenComparingLong(distinctCount::get);
+
+		List<String> order = new ArrayList<>();
+		Set<String> remaining = new LinkedHashSet<>(atomCount.keySet());
+		remaining.retainAll(keptVariables);
+		while (!remaining.isEmpty()) {
+			String best = null;
+			boolean bestConnected = false;
+			boolean outputLeft = !Collections.disjoint(remaining, outputVariables);
+			for (String variable : remaining) {
+				if (outputLeft && !outputVariables.contains(variable)) {
+					continue;
+				}
+				boolean connected = false;
+				for (Set<String> edge : edges) {
+					if (edge.contains(variable) && !Collections.disjoint(edge, order)) {
+						connected = true;
+						break;
+					}
+				}
+				if (best == null || (connected && !bestConnected)
+						|| (connected == bestConnected && preference.compare(variable, best) < 0)) {
+					best = variable;
+					bestConnected = connected;
+				}
+			}
+			order.add(best);
+			remaining.remove(best);
+		}
+		return order;
+	}
+
+	/**
+	 * Recursively turns a join tree into operators.
+	 * Leaves become the operators of their atoms, and inner nodes become HashJoinOperators, or SortMergeJoinOperators where useSortMergeJoin says so.
+	 * Both find their join columns in the schemas of their children. Below the root, a join whose
+	 * output holds duplicate key columns or variables no longer needed is followed by a ColumnPruneOperator.
+	 *
+	 * @param joinTree        the join tree chosen by the optimizer
+	 * @param atomOperators   the operator reading each relational atom, in the order of the query body
+	 * @param atomVariables   the variables of every relational atom
+	 * @param rootVariables   the variables needed above the joins
+	 * @param root            whether the node is the root of the join tree, whose columns the ProjectOperator picks
+	 * @param semiJoins       whether duplicates do not matter, so that joins whose right input adds no needed
+	 *                        variable can be HashSemiJoinOperators
+	 * @param dbCatalog       the database catalog
+	 * @return the root operator of the join tree
+	 */
+	private Operator createJoinOperator(JoinOrderOptimizer.JoinTree joinTree, List<Operator> atomOperators, List<Set<String>> atomVariables, Set<String> rootVariables, boolean root, boolean semiJoins, DatabaseCatalog dbCatalog) {
+		if (joinTree.isLeaf()) {
+			return atomOperators.get(joinTree.getAtomIndex());
+		}
+		Operator left = createJoinOperator(joinTree.getLeft(), atomOperators, atomVariables, rootVariables, false, semiJoins, dbCatalog);
+		Operator right = createJoinOperator(joinTree.getRight(), atomOperators, atomVariables, rootVariables, false, semiJoins, dbCatalog);
+		Set<String> neededVariables = root ? rootVariables : findNeededVariables(collectAtoms(joinTree, new LinkedHashSet<>()), atomVariables, rootVariables);
+		Operator join;
+		if (semiJoins && addsNoVariable(left, right, neededVariables)) {
+			join = new HashSemiJoinOperator(left, right);
+		} else {
+			join = createBinaryJoin(joinTree, left, right, dbCatalog);
+		}
+		if (root) {
+			return join;
+		}
+		List<String> keptColumns = new ArrayList<>();
+		for (String columnName : join.getSchema().getColumnNames()) {
+			if (neededVariables.contains(columnName) && !keptColumns.contains(columnName)) {
+				keptColumns.add(columnName);
+			}
+		}
+		if (keptColumns.isEmpty()) {
+			keptColumns.add(join.getSchema().getColumnNames().get(0));
+		}
+		return keptColumns.size() < join.getSchema().size() ? new ColumnPruneOperator(join, keptColumns) : join;
+	}
+
+	/**
+	 * Checks whether every variable of the right input of a join that is needed above the join is
+	 * also held by the left input, so that a semi-join loses no needed value.
+	 *
+	 * @param left            the operator of the left input
+	 * @param right           the operator of the right input
+	 * @param neededVariables the variables needed above the join
+	 * @return true if the right input only filters the left one
+	 */
+	private static boolean addsNoVariable(Operator left, Operator right, Set<String> neededVariables) {
+		for (String column : right.getSchema().getColumnNames()) {
+			if (neededVariables.contains(column) && !left.getSchema().getColumnNames().contains(column)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the atoms at the leaves of a join tree.
+	 *
+	 * @param joinTree the join tree
+	 * @param atoms    the set the positions of the atoms are added to
+	 * @return the set of atoms
+	 */
+	private static Set<Integer> collectAtoms(JoinOrderOptimizer.JoinTree joinTree, Set<Integer> atoms) {
+		if (joinTree.isLeaf()) {
+			atoms.add(joinTree.getAtomIndex());
+		} else {
+			collectAtoms(joinTree.getLeft(), atoms);
+			collectAtoms(joinTree.getRight(), atoms);
+		}
+		return atoms;
+	}
+
+	/**
+	 * Creates the join of two inputs, as a hash join or as a sort-merge join where useSortMergeJoin says so.
+	 *
+	 * @param joinTree  the join tree node of the join
+	 * @param left      the operator of the left (probe) input
+	 * @param right     the operator of the right (build) input
+	 * @param dbCatalog the database catalog
+	 * @return the join operator
+	 */
+	private Operator createBinaryJoin(JoinOrderOptimizer.JoinTree joinTree, Operator left, Operator right, DatabaseCatalog dbCatalog) {
+		int[][] keyIndex = HashJoinOperator.findKeyColumns(left.getSchema().getColumnNames(), right.getSchema().getColumnNames());
+		// Sorted inputs can only be merged directly on a single key column
+		boolean leftSorted = keyIndex[0].length == 1 && isSortedOn(left, keyIndex[0][0]);
+		boolean rightSorted = keyIndex[1].length == 1 && isSortedOn(right, keyIndex[1][0]);
+		if (useSortMergeJoin(joinTree, right, keyIndex[0].length, leftSorted && rightSorted, dbCatalog)) {
+			return new SortMergeJoinOperator(left, right, leftSorted, rightSorted, dbCatalog.getJoinMemoryBudget());
+		}
+		return new HashJoinOperator(left, right, dbCatalog.getJoinMemoryBudget());
+	}
+
+	/**
+	 * Checks whether a variable of the body is held by both an int column and a string column,
+	 * in which case no value can bind it and the body has no answers.
+	 *
+	 * @param relationalBody the list of relational atoms in the query body
+	 * @param dbCatalog      the database catalog holding the column types of the tables
+	 * @return true if some variable is held by columns of both types
+	 */
+	private static boolean hasConflictingTypes(List<RelationalAtom> relationalBody, DatabaseCatalog dbCatalog) {
+		Map<String, String> variableTypes = new HashMap<>();
+		for (RelationalAtom atom : relationalBody) {
+			List<String> columnTypes = dbCatalog.getDbCatalogType().get(atom.getName());
+			List<Term> terms = atom.getTerms();
+			for (int i = 0; i < terms.size(); i++) {
+				if (terms.get(i) instanceof Variable) {
+					String type = columnTypes.get(i).toLowerCase();
+					String previous = variableTypes.putIfAbsent(terms.get(i).toString().trim(), type);
+					if (previous != null && !previous.equals(type)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Decides whether a join is run as a sort-merge join instead of a hash join.
+	 * Cross products always use a hash join. Otherwise a sort-merge join is used when both inputs
+	 * are already sorted on the join key, or when the hash table over the right input is estimated
+	 * to be larger than the join memory budget, in which case the inputs are sorted externally.
+	 *
+	 * @param joinTree     the join tree node of the join
+	 * @param right        the operator of the right (build) input
+	 * @param keyCount     the number of join key columns
+	 * @param inputsSorted whether both inputs are already sorted on the join key
+	 * @param dbCatalog    the database catalog
+	 * @return true if the join should be a SortMergeJoinOperator
 	 */
-	private void createMultiRelationPlan(List<RelationalAtom> relationalBody, List<ComparisonAtom> comparisonBody, DatabaseCatalog dbCatalog) {
-		operator = new JoinOperator(relationalBody, comparisonBody, dbCatalog);
+	private boolean useSortMergeJoin(JoinOrderOptimizer.JoinTree joinTree, Operator right, int keyCount, boolean inputsSorted, DatabaseCatalog dbCatalog) {
+		if (keyCount == 0) {
+			return false;
+		}
+		if (inputsSorted) {
+			return true;
+		}
+		double rowSize = HashJoinOperator.estimateRowSize(right.getSchema().size());
+		return joinTree.getRight().getCardinality() * rowSize > dbCatalog.getJoinMemoryBudget();
+	}
 
-		if (!comparisonBody.isEmpty()) {
-			operator = new SelectOperator(operator, comparisonBody, dbCatalog);
+	/**
+	 * Checks whether an operator delivers its tuples in ascending order of a column.
+	 *
+	 * @param operator the operator
+	 * @param column   the position of the column in the operator's tuples
+	 * @return true if the operator is a scan or a sort-merge join known to be sorted on the column,
+	 *         possibly below selections and column pruning, which keep the order of their input
+	 */
+	private static boolean isSortedOn(Operator operator, int column) {
+		if (operator instanceof SelectOperator) {
+			return isSortedOn(((SelectOperator) operator).getChild(), column);
+		}
+		if (operator instanceof ColumnPruneOperator) {
+			ColumnPruneOperator prune = (ColumnPruneOperator) operator;
+			return isSortedOn(prune.getChild(), prune.getChildColumn(column));
+		}
+		if (operator instanceof ScanOperator) {
+			return ((ScanOperator) operator).isSortedOn(column);
+		}
+		if (operator instanceof SortMergeJoinOperator) {
+			return ((SortMergeJoinOperator) operator).isSortedOn(column);
 		}
+		return false;
 	}
 
 	/**
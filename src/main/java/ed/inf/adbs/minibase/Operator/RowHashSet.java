@@ -0,0 +1,141 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.Arrays;
+
+/**
+ * RowHashSet is a set of rows of tuple values of a fixed width, stored compactly: the values of all
+ * rows are appended to one long array, and an open addressing table with linear probing holds the
+ * position of each row together with a 32-bit fingerprint of its values. Rows are only compared
+ * value by value when their fingerprints agree, and no object is allocated per row, so a row takes
+ * little more than its values instead of a key object, an array and a hash table entry.
+ *
+ * @author jackson-zhou
+ */
+public class RowHashSet {
+	private int width;
+	// The values of the rows, one row after the other
+	private long[] values;
+	private int size;
+	// The position of the row in each slot plus one, 0 for an empty slot, and the fingerprint of that row
+	private int[] slots;
+	private int[] fingerprints;
+
+	/**
+	 * Constructs an empty RowHashSet for rows of the given width.
+	 *
+	 * @param width The number of values in each row.
+	 */
+	public RowHashSet(int width) {
+		this.width = width;
+		this.values = new long[16 * Math.max(width, 1)];
+		this.slots = new int[32];
+		this.fingerprints = new int[32];
+	}
+
+	/**
+	 * Adds a copy of a row to the set.
+	 *
+	 * @param row The values of the row.
+	 * @return True if the row was not in the set before.
+	 */
+	public boolean add(long[] row) {
+		int fingerprint = hash(row, 0);
+		int mask = slots.length - 1;
+		int slot = fingerprint & mask;
+		while (slots[slot] != 0) {
+			if (fingerprints[slot] == fingerprint && matches(slots[slot] - 1, row)) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if ((size + 1) * width > values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		System.arraycopy(row, 0, values, size * width, width);
+		slots[slot] = ++size;
+		fingerprints[slot] = fingerprint;
+		// Keep the table at most half full so probe sequences stay short
+		if (size * 2 > slots.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of rows in the set.
+	 *
+	 * @return The size of the set.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Copies a row of the set, in the order the rows were added.
+	 *
+	 * @param index The position of the row, smaller than the size of the set.
+	 * @return The values of the row.
+	 */
+	public long[] getRow(int index) {
+		return Arrays.copyOfRange(values, index * width, (index + 1) * width);
+	}
+
+	/**
+	 * Estimates the heap bytes the set takes: the value array and the table.
+	 *
+	 * @return The estimated size of the set in bytes.
+	 */
+	public long getMemoryUsage() {
+		return (long) Long.BYTES * values.length + (long) 2 * Integer.BYTES * slots.length;
+	}
+
+	/**
+	 * Hashes the values of a row, mixing in a seed so that different seeds spread rows independently.
+	 *
+	 * @param row  The values of the row.
+	 * @param seed The seed of the hash.
+	 * @return The hash of the row.
+	 */
+	static int hash(long[] row, int seed) {
+		long h = seed;
+		for (long value : row) {
+			h = (h ^ value) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 29;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Checks whether the stored row at a position has the given values.
+	 */
+	private boolean matches(int index, long[] row) {
+		int offset = index * width;
+		for (int i = 0; i < width; i++) {
+			if (values[offset + i] != row[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the table and reinserts all rows by their fingerprints.
+	 */
+	private void grow() {
+		int[] oldSlots = slots;
+		int[] oldFingerprints = fingerprints;
+		slots = new int[oldSlots.length * 2];
+		fingerprints = new int[slots.length];
+		int mask = slots.length - 1;
+		for (int i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] != 0) {
+				int slot = oldFingerprints[i] & mask;
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = oldSlots[i];
+				fingerprints[slot] = oldFingerprints[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package ed.inf.adbs.minibase.Operator;
+
+/**
+ * The ways a ScanOperator can read the CSV file of a table.
+ * The mode is set on the DatabaseCatalog and defaults to the value of the
+ * system property "minibase.scanMode", or MAPPED if the property is not set.
+ *
+ * @author jackson-zhou
+ */
+public enum ScanMode {
+	// Read the file line by line with a BufferedReader and split each line
+	BUFFERED,
+	// Memory-map the file and parse fields directly from the mapped bytes
+	MAPPED,
+	// Split the file into ranges at line breaks and parse them in parallel on the fork-join pool
+	PARALLEL;
+
+	/**
+	 * Returns the scan mode configured by the "minibase.scanMode" system property.
+	 *
+	 * @return The configured scan mode, or MAPPED if none is configured.
+	 */
+	public static ScanMode fromSystemProperty() {
+		return valueOf(System.getProperty("minibase.scanMode", MAPPED.name()).toUpperCase());
+	}
+}
@@ -6,12 +6,21 @@ import ed.inf.adbs.minibase.base.Term;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * ScanOperator is responsible for scanning tuples in tables.
  * It extends the Operator class and implements the required methods for processing tuples.
+ * Tables that fit in the DatabaseCatalog's table cache are scanned from memory, and rescans
+ * and later queries reuse the cached rows. Larger tables are streamed from disk: if the table has
+ * an up-to-date binary columnar file it is decoded block by block by a ColumnarTableReader, otherwise
+ * the CSV file is read through a memory-mapped MappedCsvReader, in parallel chunks by a ParallelCsvScanner,
+ * or line by line, depending on the ScanMode of the DatabaseCatalog.
+ * A scan can be restricted to some columns of the table, in which case the other fields of the
+ * CSV file are never parsed or looked up in the dictionary.
  *
  * @author jackson-zhou
  */
@@ -20,9 +29,27 @@ public class ScanOperator extends Operator {
 	private DatabaseCatalog dbCatalog;
 	private List<String> columnNames;
 	private List<String> columnTypes;
-	private List<String> values;
+	// The position in the table of each scanned column
+	private int[] columnIndex;
+	// The position in the current columnar table of each scanned column: columnIndex for whole
+	// tables, the scanned columns themselves for parallel chunks, which only hold those
+	private int[] sourceIndex;
+	// The schema shared by all tuples of the scan
+	private Schema schema;
+	private long[] values;
+	// The dictionary encoding the values of string columns
+	private StringDictionary dictionary;
 	private BufferedReader bufferedReader;
 	private String currentLine;
+	// The cached table or the current block of the columnar file or parallel chunk, or null when scanning the CSV file
+	private ColumnarTable columnarTable;
+	private int rowIndex;
+	// The reader over the memory-mapped CSV file, or null when not scanning in MAPPED mode
+	private MappedCsvReader mappedCsvReader;
+	// The scanner delivering parsed chunks of the CSV file, or null when not scanning in PARALLEL mode
+	private ParallelCsvScanner parallelScanner;
+	// The reader delivering blocks of the columnar file of an uncached table, or null
+	private ColumnarTableReader columnarReader;
 	/**
 	 * Constructor for ScanOperator.
 	 * Initializes the tableName, dbCatalog, columnNames, columnTypes, and sets up the bufferedReader.
@@ -31,42 +58,152 @@ public class ScanOperator extends Operator {
 	 * @param dbCatalog A DatabaseCatalog object containing the database schema and file paths.
 	 */
 	public ScanOperator(RelationalAtom atom, DatabaseCatalog dbCatalog) {
+		this(atom, null, dbCatalog);
+	}
+	/**
+	 * Constructor for a ScanOperator delivering only some columns of the table.
+	 *
+	 * @param atom        A RelationalAtom object representing the table.
+	 * @param columnIndex The positions of the scanned columns in the atom, in ascending order, or null for all columns.
+	 * @param dbCatalog   A DatabaseCatalog object containing the database schema and file paths.
+	 */
+	public ScanOperator(RelationalAtom atom, int[] columnIndex, DatabaseCatalog dbCatalog) {
 		// Set the tableName from the provided RelationalAtom object
 		this.tableName = atom.getName();
 		// Set the DatabaseCatalog object to access the database schema and file paths
 		this.dbCatalog = dbCatalog;
+		this.dictionary = dbCatalog.getStringDictionary();
 		// Initialize the column names and column types using the provided RelationalAtom
-		initColumnNameAndType(atom);
-		// Set up the BufferedReader to read from the CSV file corresponding to the table
-		setupBufferedReader();
+		initColumnNameAndType(atom, columnIndex);
+		// Scan the table from the catalog's cache, or stream it from disk if it does not fit there
+		columnarTable = dbCatalog.getTable(tableName);
+		sourceIndex = this.columnIndex;
+		// Prefer the binary columnar file and fall back to the CSV file
+		if (columnarTable == null && !loadColumnarTable()) {
+			if (dbCatalog.getScanMode() == ScanMode.MAPPED) {
+				// Map the CSV file corresponding to the table into memory
+				setupMappedReader();
+			} else if (dbCatalog.getScanMode() == ScanMode.PARALLEL) {
+				// Start parsing the CSV file corresponding to the table in parallel chunks
+				setupParallelScanner();
+			} else {
+				// Set up the BufferedReader to read from the CSV file corresponding to the table
+				setupBufferedReader();
+			}
+		}
 	}
 	/**
 	 * Initializes the columnNames and columnTypes lists using the provided RelationalAtom.
 	 *
-	 * @param atom A RelationalAtom object representing the table.
+	 * @param atom        A RelationalAtom object representing the table.
+	 * @param columnIndex The positions of the scanned columns, or null for all columns.
 	 */
-	private void initColumnNameAndType(RelationalAtom atom) {
+	private void initColumnNameAndType(RelationalAtom atom, int[] columnIndex) {
 		// Initialize the columnNames list
 		columnNames = new ArrayList<>();
-		// Initialize the columnTypes list
-		columnTypes = new ArrayList<>();
-		// Iterate through the terms (columns) of the provided RelationalAtom
-		for (Term term : atom.getTerms()) {
-			// Add the trimmed column name to the columnNames list
-			columnNames.add(term.toString().trim());
+		List<Term> terms = atom.getTerms();
+		if (columnIndex == null) {
+			columnIndex = new int[terms.size()];
+			for (int c = 0; c < columnIndex.length; c++) {
+				columnIndex[c] = c;
+			}
 		}
+		this.columnIndex = columnIndex;
 		// Get the column types from the DatabaseCatalog object and store it in the columnTypes list
 		columnTypes = dbCatalog.dbCatalogType.get(tableName);
+		List<String> scannedTypes = new ArrayList<>();
+		// Iterate through the scanned terms (columns) of the provided RelationalAtom
+		for (int c : columnIndex) {
+			// Add the trimmed column name to the columnNames list
+			columnNames.add(terms.get(c).toString().trim());
+			scannedTypes.add(columnTypes.get(c));
+		}
+		// Create the schema shared by all the tuples of the scan
+		schema = new Schema(tableName, columnNames, scannedTypes);
+	}
+	/**
+	 * Opens the binary columnar file of the table if it exists and is not older than the CSV file.
+	 * Its blocks only hold the scanned columns and are scanned like parallel chunks.
+	 *
+	 * @return True if the columnar file is scanned, false if the CSV file should be scanned.
+	 */
+	private boolean loadColumnarTable() {
+		if (!dbCatalog.hasUpToDateColumnarFile(tableName)) {
+			return false;
+		}
+		try {
+			columnarReader = new ColumnarTableReader(dbCatalog.getColumnarFile(tableName), columnIndex, dictionary);
+			sourceIndex = new int[columnIndex.length];
+			for (int c = 0; c < sourceIndex.length; c++) {
+				sourceIndex[c] = c;
+			}
+			firstColumnarBlock();
+			return true;
+		} catch (Exception e) {
+			// A broken columnar file is not fatal, the CSV file is still there
+			columnarReader = null;
+			sourceIndex = columnIndex;
+			System.err.println("Columnar table load failed, falling back to CSV");
+			e.printStackTrace();
+			return false;
+		}
+	}
+	/**
+	 * Decodes the first block of the columnar file, or an empty table if the file has no rows.
+	 */
+	private void firstColumnarBlock() {
+		columnarTable = columnarReader.nextChunk();
+		if (columnarTable == null) {
+			columnarTable = new ColumnarTable(columnarReader.getColumnTypes(), 0, new int[sourceIndex.length][0]);
+		}
+		rowIndex = 0;
+	}
+	/**
+	 * Sets up the MappedCsvReader over the CSV file corresponding to the table.
+	 */
+	private void setupMappedReader() {
+		try {
+			mappedCsvReader = new MappedCsvReader(dbCatalog.getTableFile(tableName), columnTypes.size());
+		} catch (Exception e) {
+			// If the file cannot be mapped, fall back to reading it line by line
+			System.err.println("Mapping table file failed, falling back to buffered reading");
+			e.printStackTrace();
+			setupBufferedReader();
+		}
+	}
+	/**
+	 * Sets up the ParallelCsvScanner over the CSV file corresponding to the table.
+	 * The rows of each parsed chunk are scanned like a columnar table.
+	 */
+	private void setupParallelScanner() {
+		try {
+			parallelScanner = new ParallelCsvScanner(dbCatalog.getTableFile(tableName), columnTypes, columnIndex, dictionary, dbCatalog.isOrderedScan());
+			// The chunks only hold the scanned columns
+			sourceIndex = new int[columnIndex.length];
+			for (int c = 0; c < sourceIndex.length; c++) {
+				sourceIndex[c] = c;
+			}
+			columnarTable = parallelScanner.nextChunk();
+			rowIndex = 0;
+		} catch (Exception e) {
+			// If the file cannot be split, fall back to reading it line by line
+			System.err.println("Parallel scan failed, falling back to buffered reading");
+			e.printStackTrace();
+			parallelScanner = null;
+			setupBufferedReader();
+		}
 	}
 	/**
 	 * Sets up the BufferedReader for reading the CSV file corresponding to the table.
 	 */
 	private void setupBufferedReader() {
 		// Create a File object that represents the CSV file for the table
-		String filePath = String.format("%s%sfiles%s%s.csv",dbCatalog.databaseDir,File.separator,File.separator,tableName);
-		File dbFile = new File(filePath);
-//		File dbFile = new File(dbCatalog.databaseDir + File.separator + "files" + File.separator + tableName + ".csv");
+		File dbFile = dbCatalog.getTableFile(tableName);
 		try {
+			// Close the reader of a previous scan before opening a new one
+			if (bufferedReader != null) {
+				bufferedReader.close();
+			}
 			// Try to create a BufferedReader to read from the CSV file
 			bufferedReader = new BufferedReader(new FileReader(dbFile));
 		} catch (Exception e) {
@@ -83,6 +220,15 @@ public class ScanOperator extends Operator {
 	 */
 	@Override
 	public Tuple getNextTuple() {
+		// Columnar tables and parallel chunks are already decoded, only the current row has to be copied out
+		if (columnarTable != null) {
+			return getNextColumnarTuple();
+		}
+		// Mapped files are parsed field by field without building a String for the line
+		if (mappedCsvReader != null) {
+			return getNextMappedTuple();
+		}
+
 		// Read the next line from the CSV file and store it in currentLine
 		readNextLine();
 
@@ -94,8 +240,138 @@ public class ScanOperator extends Operator {
 		// Parse the current line and store the values in the values list
 		parseCurrentLine();
 
-		// Return a new Tuple object containing the tableName, columnNames, columnTypes, and values
-		return new Tuple(tableName, columnNames, columnTypes, values);
+		// Return a new Tuple object containing the values and the schema of the scan
+		return new Tuple(schema, values);
+	}
+	/**
+	 * Retrieves the next tuple from the cached table or the current block or chunk.
+	 *
+	 * @return A Tuple object with the values of the current row, or null if no more rows.
+	 */
+	private Tuple getNextColumnarTuple() {
+		while (rowIndex >= columnarTable.getRowCount()) {
+			// Move on to the next block of the columnar file or parsed chunk of the file
+			if (!nextChunk()) {
+				return null;
+			}
+		}
+		values = new long[sourceIndex.length];
+		for (int c = 0; c < values.length; c++) {
+			values[c] = columnarTable.getColumn(sourceIndex[c])[rowIndex];
+		}
+		rowIndex++;
+		return new Tuple(schema, values);
+	}
+	/**
+	 * Retrieves the next batch of rows from the table.
+	 * Cached tables, columnar blocks and parallel chunks are copied into the batch a column at a time, and mapped
+	 * files are parsed straight into the column vectors, so no Tuple is created per row.
+	 * Line-by-line scans fall back to collecting tuples.
+	 *
+	 * @return The next batch of rows, or null if no more rows.
+	 */
+	@Override
+	public TupleBatch getNextBatch() {
+		if (columnarTable != null) {
+			return getNextColumnarBatch();
+		}
+		if (mappedCsvReader != null) {
+			return getNextMappedBatch();
+		}
+		return super.getNextBatch();
+	}
+	/**
+	 * Copies the next rows of the cached table or the current block or chunk into a batch.
+	 *
+	 * @return A batch with the values of the next rows, or null if no more rows.
+	 */
+	private TupleBatch getNextColumnarBatch() {
+		while (rowIndex >= columnarTable.getRowCount()) {
+			// Move on to the next block of the columnar file or parsed chunk of the file
+			if (!nextChunk()) {
+				return null;
+			}
+		}
+		int rowCount = Math.min(TupleBatch.BATCH_SIZE, columnarTable.getRowCount() - rowIndex);
+		long[][] columns = new long[sourceIndex.length][rowCount];
+		for (int c = 0; c < columns.length; c++) {
+			int[] column = columnarTable.getColumn(sourceIndex[c]);
+			long[] vector = columns[c];
+			for (int r = 0; r < rowCount; r++) {
+				vector[r] = column[rowIndex + r];
+			}
+		}
+		rowIndex += rowCount;
+		return new TupleBatch(schema, columns, rowCount);
+	}
+	/**
+	 * Parses the scanned fields of the next rows of the memory-mapped CSV file into a batch.
+	 *
+	 * @return A batch with the values of the next rows, or null if no more rows.
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	private TupleBatch getNextMappedBatch() {
+		long[][] columns = new long[columnIndex.length][TupleBatch.BATCH_SIZE];
+		int rowCount = 0;
+		try {
+			while (rowCount < TupleBatch.BATCH_SIZE && mappedCsvReader.nextRow()) {
+				for (int c = 0; c < columns.length; c++) {
+					// Int fields are parsed from the mapped bytes, string fields are looked up in the dictionary
+					int field = columnIndex[c];
+					columns[c][rowCount] = isStringColumn(field) ? dictionary.encode(mappedCsvReader.getString(field)) : mappedCsvReader.getLong(field);
+				}
+				rowCount++;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Reading table " + tableName + " failed", e);
+		}
+		return rowCount == 0 ? null : new TupleBatch(schema, columns, rowCount);
+	}
+	/**
+	 * Replaces the current chunk with the next block delivered by the ColumnarTableReader or the next
+	 * chunk delivered by the ParallelCsvScanner.
+	 *
+	 * @return True if there is a next chunk, false if the table is cached or all chunks are consumed.
+	 * @throws UncheckedIOException If the next chunk cannot be parsed
+	 */
+	private boolean nextChunk() {
+		if (columnarReader == null && parallelScanner == null) {
+			return false;
+		}
+		ColumnarTable chunk;
+		try {
+			chunk = columnarReader != null ? columnarReader.nextChunk() : parallelScanner.nextChunk();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Reading table " + tableName + " failed", e);
+		}
+		if (chunk == null) {
+			return false;
+		}
+		columnarTable = chunk;
+		rowIndex = 0;
+		return true;
+	}
+	/**
+	 * Retrieves the next tuple from the memory-mapped CSV file.
+	 *
+	 * @return A Tuple object with the values of the next row, or null if no more rows.
+	 * @throws UncheckedIOException If the file cannot be read
+	 */
+	private Tuple getNextMappedTuple() {
+		try {
+			if (!mappedCsvReader.nextRow()) {
+				return null;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Reading table " + tableName + " failed", e);
+		}
+		values = new long[columnIndex.length];
+		for (int c = 0; c < values.length; c++) {
+			// Int fields are parsed from the mapped bytes, string fields are looked up in the dictionary
+			int field = columnIndex[c];
+			values[c] = isStringColumn(field) ? dictionary.encode(mappedCsvReader.getString(field)) : mappedCsvReader.getLong(field);
+		}
+		return new Tuple(schema, values);
 	}
 	/**
  * Reads the next line from the CSV file
@@ -113,28 +389,85 @@ public class ScanOperator extends Operator {
 	}
 	/**
 	 * Parses the currentLine read from the CSV file.
-	 * Splits the line by commas and trims the values, storing them in the values list.
+	 * Splits the line by commas and trims the scanned values, storing them in the values array.
 	 */
 	private void parseCurrentLine() {
 		// Split the currentLine by commas to obtain individual column values
 		String[] columnValues = currentLine.split(",");
-		// Initialize the values list
-		values = new ArrayList<>();
-		// Iterate through the columnValues array
-		for (String value : columnValues) {
-			// Trim each value and add it to the values list
-			values.add(value.trim());
+		// Initialize the values array, ignoring fields beyond the schema
+		values = new long[columnIndex.length];
+		// Iterate through the scanned column values
+		for (int c = 0; c < values.length; c++) {
+			// Trim each value and parse it, or encode it when the column holds strings
+			int field = columnIndex[c];
+			String value = columnValues[field].trim();
+			values[c] = isStringColumn(field) ? dictionary.encode(value) : Long.parseLong(value);
 		}
 	}
+	/**
+	 * Checks whether a column of the table holds strings according to the table's schema.
+	 *
+	 * @param column The position of the column.
+	 * @return True if the column is a string column.
+	 */
+	private boolean isStringColumn(int column) {
+		return columnTypes.get(column).equalsIgnoreCase("string");
+	}
 	/**
 	 * Resets the ScanOperator to start reading the table from the beginning.
-	 * Re-initializes the BufferedReader to the start of the CSV file.
+	 * Re-initializes the BufferedReader to the start of the CSV file, or rewinds to the
+	 * first row of the columnar table or of the mapped file.
 	 */
 	@Override
 	public void reset() {
+		if (parallelScanner != null) {
+			// The chunks are not kept, so the file is parsed again
+			setupParallelScanner();
+			return;
+		}
+		if (columnarReader != null) {
+			columnarReader.rewind();
+			firstColumnarBlock();
+			return;
+		}
+		if (columnarTable != null) {
+			rowIndex = 0;
+			return;
+		}
+		if (mappedCsvReader != null) {
+			try {
+				mappedCsvReader.rewind();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Rewinding table " + tableName + " failed", e);
+			}
+			return;
+		}
 		// Re-setup the BufferedReader to read from the beginning of the CSV file
 		setupBufferedReader();
 	}
+	/**
+	 * Checks whether the scan delivers its tuples in ascending order of a column.
+	 * This is the case for int columns stored in ascending order, unless a PARALLEL scan
+	 * delivers the chunks of the file out of order.
+	 *
+	 * @param column The position of the column in the scanned tuples.
+	 * @return True if the column is sorted.
+	 */
+	public boolean isSortedOn(int column) {
+		if (parallelScanner != null && !dbCatalog.isOrderedScan()) {
+			return false;
+		}
+		return dbCatalog.getTableStatistics(tableName).isSorted(columnIndex[column]);
+	}
+	/**
+	 * Returns the schema of the scanned tuples, whose column names are the terms of the relational atom.
+	 *
+	 * @return The Schema of the scan.
+	 */
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
 	/**
 	 * Reads and processes all tuples in the table.
 	 * Continuously retrieves the next tuple and prints its contents until there are no more tuples.
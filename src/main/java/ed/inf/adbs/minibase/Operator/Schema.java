@@ -0,0 +1,124 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Schema class describes the columns of the tuples produced by an operator: the name of each
+ * column (the query term it holds) and its type. Every operator resolves its schema once when the
+ * plan is built and all of its tuples share it, so a tuple only carries its values and a variable
+ * is found in a tuple by an offset resolved against the schema.
+ *
+ * @author jackson-zhou
+ */
+public class Schema {
+	// The name of the table the tuples come from, or of the first table of a join
+	private String tableName;
+
+	// The name (query term) of each column
+	private List<String> columnNames;
+
+	// The type ("int" or "string") of each column
+	private List<String> columnTypes;
+
+	// Whether each column holds dictionary ids of strings
+	private boolean[] stringColumn;
+
+	/**
+	 * Constructs a Schema with the given table name, column names and column types.
+	 *
+	 * @param tableName   The name of the table the tuples come from.
+	 * @param columnNames The name of each column.
+	 * @param columnTypes The type of each column.
+	 */
+	public Schema(String tableName, List<String> columnNames, List<String> columnTypes) {
+		this.tableName = tableName;
+		this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+		this.columnTypes = Collections.unmodifiableList(new ArrayList<>(columnTypes));
+		this.stringColumn = new boolean[columnTypes.size()];
+		for (int i = 0; i < stringColumn.length; i++) {
+			stringColumn[i] = columnTypes.get(i).equalsIgnoreCase("string");
+		}
+	}
+
+	/**
+	 * Creates an empty Schema, used for the marker tuples of rejected rows.
+	 *
+	 * @param tableName The name marking the tuples.
+	 * @return A Schema without columns.
+	 */
+	public static Schema empty(String tableName) {
+		return new Schema(tableName, Collections.emptyList(), Collections.emptyList());
+	}
+
+	/**
+	 * Creates the schema of the tuples of a join: the columns of this schema followed by the columns of the other.
+	 *
+	 * @param other The schema of the right input of the join.
+	 * @return The schema of the joined tuples.
+	 */
+	public Schema concat(Schema other) {
+		List<String> names = new ArrayList<>(columnNames);
+		List<String> types = new ArrayList<>(columnTypes);
+		names.addAll(other.columnNames);
+		types.addAll(other.columnTypes);
+		return new Schema(tableName, names, types);
+	}
+
+	/**
+	 * Returns the position of the first column with the given name.
+	 *
+	 * @param columnName The name of the column, a query term.
+	 * @return The position of the column, or -1 if no column has this name.
+	 */
+	public int indexOf(String columnName) {
+		return columnNames.indexOf(columnName);
+	}
+
+	/**
+	 * Returns the name of the table the tuples come from.
+	 *
+	 * @return The table name.
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * Returns the names of the columns.
+	 *
+	 * @return The unmodifiable list of column names.
+	 */
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	/**
+	 * Returns the types of the columns.
+	 *
+	 * @return The unmodifiable list of column types.
+	 */
+	public List<String> getColumnTypes() {
+		return columnTypes;
+	}
+
+	/**
+	 * Checks whether a column holds dictionary ids of strings.
+	 *
+	 * @param index The position of the column.
+	 * @return True if the column is a string column, false if it is an int column.
+	 */
+	public boolean isStringColumn(int index) {
+		return stringColumn[index];
+	}
+
+	/**
+	 * Returns the number of columns.
+	 *
+	 * @return The number of columns.
+	 */
+	public int size() {
+		return columnNames.size();
+	}
+}
@@ -0,0 +1,252 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * SemiJoinReducer runs the semi-join passes of the Yannakakis algorithm over the relational atoms of
+ * an acyclic query, along the join tree of the QueryHypergraph: bottom-up, every parent keeps
+ * only the rows that match a row of each child, and top-down, every child keeps only the rows that
+ * match a row of its parent. Afterwards no atom holds a dangling row that is not part of any result,
+ * so the binary joins over the reduced atoms build no intermediate result larger than needed.
+ * No rows are held in memory: each pass re-scans the already filtered atoms and only keeps, for every
+ * edge of the join tree, the set of join key values of the rows that passed so far. The reduced atoms
+ * are read by scanning the atoms once more and testing every row against the key sets of its edges.
+ * The reduction runs when the first reduced atom is read.
+ *
+ * @author jackson-zhou
+ */
+public class SemiJoinReducer {
+	// The operators reading the atoms, which have already tested their constants and repeated variables
+	private List<Operator> inputs;
+	// The join tree: the parent of each atom, its children and the atoms in bottom-up order
+	private int[] parent;
+	private List<List<Integer>> children = new ArrayList<>();
+	private int[] eliminationOrder;
+	// Positions of the variables shared by each atom and its parent, in the atom and in the parent
+	private int[][] keyIndex;
+	private int[][] parentKeyIndex;
+	// For each atom with a parent, the keys of its rows left after the bottom-up pass
+	// and the keys of its parent's rows left after the top-down pass
+	private KeySet[] upKeys;
+	private KeySet[] downKeys;
+	private boolean reduced;
+
+	/**
+	 * Constructs a SemiJoinReducer over the operators reading the atoms of an acyclic query.
+	 *
+	 * @param inputs     The filtered scans of the atoms, in the order of the query body.
+	 * @param hypergraph The hypergraph of the query, which must be acyclic.
+	 */
+	public SemiJoinReducer(List<Operator> inputs, QueryHypergraph hypergraph) {
+		this.inputs = inputs;
+		this.parent = hypergraph.getJoinTreeParents();
+		this.eliminationOrder = hypergraph.getEliminationOrder();
+		keyIndex = new int[inputs.size()][];
+		parentKeyIndex = new int[inputs.size()][];
+		for (int atom = 0; atom < inputs.size(); atom++) {
+			children.add(new ArrayList<>());
+		}
+		for (int atom = 0; atom < inputs.size(); atom++) {
+			if (parent[atom] >= 0) {
+				children.get(parent[atom]).add(atom);
+				int[][] edgeIndex = HashJoinOperator.findKeyColumns(inputs.get(atom).getSchema().getColumnNames(), inputs.get(parent[atom]).getSchema().getColumnNames());
+				keyIndex[atom] = edgeIndex[0];
+				parentKeyIndex[atom] = edgeIndex[1];
+			}
+		}
+	}
+
+	/**
+	 * Returns an operator reading the reduced rows of an atom.
+	 *
+	 * @param atomIndex The position of the atom in the query body.
+	 * @return The operator over the reduced atom, with the schema of the atom's scan.
+	 */
+	public Operator getReducedOperator(int atomIndex) {
+		return new ReducedOperator(atomIndex);
+	}
+
+	/**
+	 * Runs the bottom-up and the top-down semi-join pass, collecting the key sets of every edge.
+	 */
+	private void reduce() {
+		upKeys = new KeySet[inputs.size()];
+		downKeys = new KeySet[inputs.size()];
+		// Bottom-up, children before their parents
+		for (int atom : eliminationOrder) {
+			if (parent[atom] >= 0) {
+				KeySet keys = new KeySet(keyIndex[atom].length);
+				scan(atom, keys, keyIndex[atom]);
+				upKeys[atom] = keys;
+			}
+		}
+		// Top-down, parents before their children, which need the keys of their parent's reduced rows
+		for (int i = eliminationOrder.length - 1; i >= 0; i--) {
+			int atom = eliminationOrder[i];
+			for (int child : children.get(atom)) {
+				KeySet keys = new KeySet(parentKeyIndex[child].length);
+				scan(atom, keys, parentKeyIndex[child]);
+				downKeys[child] = keys;
+			}
+		}
+		reduced = true;
+	}
+
+	/**
+	 * Scans an atom and adds the key of every row that passes the key sets known so far.
+	 */
+	private void scan(int atom, KeySet keys, int[] index) {
+		Operator input = inputs.get(atom);
+		TupleBatch batch;
+		while ((batch = input.getNextBatch()) != null) {
+			long[][] columns = batch.getColumns();
+			for (int k = 0; k < batch.getSelectedCount(); k++) {
+				int row = batch.getSelection()[k];
+				if (matches(atom, columns, row)) {
+					keys.add(columns, index, row);
+				}
+			}
+		}
+		input.reset();
+	}
+
+	/**
+	 * Checks whether a row of an atom matches the reduced rows of its children and of its parent.
+	 */
+	private boolean matches(int atom, long[][] columns, int row) {
+		for (int child : children.get(atom)) {
+			if (upKeys[child] != null && !upKeys[child].contains(columns, parentKeyIndex[child], row)) {
+				return false;
+			}
+		}
+		return downKeys[atom] == null || downKeys[atom].contains(columns, keyIndex[atom], row);
+	}
+
+	/**
+	 * A set of join key values: a single key column is kept in a primitive set, without a key object
+	 * per value, and composite keys as TupleKeys. One reused key probes the set, keys are only
+	 * allocated for values not seen before.
+	 */
+	private static class KeySet {
+		private LongHashSet values;
+		private HashSet<TupleKey> keys;
+		private TupleKey probeKey;
+
+		private KeySet(int keyLength) {
+			if (keyLength == 1) {
+				values = new LongHashSet();
+			} else {
+				keys = new HashSet<>();
+				probeKey = new TupleKey(new long[keyLength]);
+			}
+		}
+
+		private void add(long[][] columns, int[] index, int row) {
+			if (values != null) {
+				values.add(columns[index[0]][row]);
+			} else if (!contains(columns, index, row)) {
+				long[] key = new long[index.length];
+				for (int i = 0; i < index.length; i++) {
+					key[i] = columns[index[i]][row];
+				}
+				keys.add(new TupleKey(key));
+			}
+		}
+
+		private boolean contains(long[][] columns, int[] index, int row) {
+			if (values != null) {
+				return values.contains(columns[index[0]][row]);
+			}
+			probeKey.setProbe(columns, index, row);
+			return keys.contains(probeKey);
+		}
+	}
+
+	/**
+	 * An operator reading the reduced rows of one atom, by scanning the atom again and
+	 * skipping the rows that match no row of a neighbour in the join tree.
+	 */
+	private class ReducedOperator extends Operator {
+		private int atomIndex;
+		private Operator input;
+		// The row of a tuple of the input, as a one-row column vector for the key sets
+		private long[][] tupleColumns;
+
+		private ReducedOperator(int atomIndex) {
+			this.atomIndex = atomIndex;
+			this.input = inputs.get(atomIndex);
+			this.tupleColumns = new long[input.getSchema().size()][1];
+		}
+
+		@Override
+		public Tuple getNextTuple() {
+			// Reduce all atoms lazily when the first one is read
+			if (!reduced) {
+				reduce();
+			}
+			Tuple tuple;
+			while ((tuple = input.getNextTuple()) != null) {
+				long[] values = tuple.getValue();
+				for (int c = 0; c < values.length; c++) {
+					tupleColumns[c][0] = values[c];
+				}
+				if (matches(atomIndex, tupleColumns, 0)) {
+					return tuple;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Narrows the selection of the next batches of the input to the reduced rows.
+		 */
+		@Override
+		public TupleBatch getNextBatch() {
+			if (!reduced) {
+				reduce();
+			}
+			TupleBatch batch;
+			while ((batch = input.getNextBatch()) != null) {
+				long[][] columns = batch.getColumns();
+				int[] selection = batch.getSelection();
+				int selectedCount = 0;
+				for (int k = 0; k < batch.getSelectedCount(); k++) {
+					if (matches(atomIndex, columns, selection[k])) {
+						selection[selectedCount++] = selection[k];
+					}
+				}
+				if (selectedCount > 0) {
+					batch.setSelectedCount(selectedCount);
+					return batch;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public void reset() {
+			input.reset();
+		}
+
+		@Override
+		public void close() {
+			input.close();
+		}
+
+		@Override
+		public Schema getSchema() {
+			return input.getSchema();
+		}
+
+		@Override
+		public void dump() {
+			Tuple tuple;
+			while ((tuple = getNextTuple()) != null) {
+				System.out.println(Arrays.toString(tuple.getValue()));
+			}
+		}
+	}
+}
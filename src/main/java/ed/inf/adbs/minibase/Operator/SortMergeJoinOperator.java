@@ -0,0 +1,283 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SortMergeJoinOperator performs an equi-join of two child operators on the variables they share
+ * by reading both inputs in the order of their join keys and merging them.
+ * An input that is not already sorted on the join key is sorted by an ExternalSorter, which spills
+ * sorted runs to temporary files when the input does not fit in its half of the memory budget,
+ * so joining large inputs needs bounded memory. Only the right tuples sharing one key value are
+ * held in memory at a time. QueryPlan chooses it over the HashJoinOperator when the build side
+ * is estimated not to fit in the join memory budget, or when both inputs are already sorted.
+ *
+ * @author jackson-zhou
+ */
+public class SortMergeJoinOperator extends Operator {
+	// The left and right child operators
+	private Operator leftOperator;
+	private Operator rightOperator;
+	// Whether the children already deliver their tuples sorted on the join key
+	private boolean leftSorted;
+	private boolean rightSorted;
+	// Positions of the shared variables in the left and right tuples, pairwise aligned
+	private int[] leftKeyIndex;
+	private int[] rightKeyIndex;
+	// Pairs of positions that hold the same variable inside one child and must be equal
+	private int[][] leftRepeatedIndex;
+	private int[][] rightRepeatedIndex;
+	// The number of bytes the rows of both sorters may take in memory
+	private long memoryBudget;
+	// The sorters of the children that are not already sorted, created on the first call
+	private ExternalSorter leftSorter;
+	private ExternalSorter rightSorter;
+	private boolean opened;
+	// The current left row, the next right row after the current group, and the right rows matching the current key
+	private long[] leftRow;
+	private long[] rightRow;
+	private List<long[]> rightGroup = new ArrayList<>();
+	private int groupIndex;
+	// The schema of the joined tuples: the left columns followed by the right columns
+	private Schema schema;
+
+	/**
+	 * Constructs a SortMergeJoinOperator joining the tuples of two child operators.
+	 *
+	 * @param leftOperator  The left child.
+	 * @param rightOperator The right child.
+	 * @param leftSorted    True if the left child delivers its tuples sorted on the join key.
+	 * @param rightSorted   True if the right child delivers its tuples sorted on the join key.
+	 * @param memoryBudget  The number of bytes the sorted rows may take in memory.
+	 */
+	public SortMergeJoinOperator(Operator leftOperator, Operator rightOperator, boolean leftSorted, boolean rightSorted, long memoryBudget) {
+		this.leftOperator = leftOperator;
+		this.rightOperator = rightOperator;
+		this.leftSorted = leftSorted;
+		this.rightSorted = rightSorted;
+		this.memoryBudget = memoryBudget;
+		this.schema = leftOperator.getSchema().concat(rightOperator.getSchema());
+		// The column names of the children are the query terms they hold
+		List<String> leftColumns = leftOperator.getSchema().getColumnNames();
+		List<String> rightColumns = rightOperator.getSchema().getColumnNames();
+		int[][] keyIndex = HashJoinOperator.findKeyColumns(leftColumns, rightColumns);
+		this.leftKeyIndex = keyIndex[0];
+		this.rightKeyIndex = keyIndex[1];
+		this.leftRepeatedIndex = HashJoinOperator.findRepeatedColumns(leftColumns);
+		this.rightRepeatedIndex = HashJoinOperator.findRepeatedColumns(rightColumns);
+	}
+
+	/**
+	 * Sorts the children that are not already sorted and reads the first right row.
+	 *
+	 * @throws UncheckedIOException If the runs of a sorter cannot be written
+	 */
+	private void open() {
+		try {
+			if (!leftSorted) {
+				leftSorter = sort(leftOperator, leftKeyIndex, leftRepeatedIndex);
+			}
+			if (!rightSorted) {
+				rightSorter = sort(rightOperator, rightKeyIndex, rightRepeatedIndex);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Sorting join input failed", e);
+		}
+		opened = true;
+		rightRow = nextRight();
+	}
+
+	/**
+	 * Drains a child into a new ExternalSorter, dropping the tuples whose repeated variables disagree.
+	 *
+	 * @param operator      The child to be sorted.
+	 * @param keyIndex      The positions of the join key in the child's tuples.
+	 * @param repeatedIndex The pairs of positions that must be equal.
+	 * @return The sorter holding the child's tuples in key order.
+	 */
+	private ExternalSorter sort(Operator operator, int[] keyIndex, int[][] repeatedIndex) throws IOException {
+		ExternalSorter sorter = new ExternalSorter(operator.getSchema().size(), keyIndex, memoryBudget / 2);
+		Tuple tuple;
+		while ((tuple = operator.getNextTuple()) != null) {
+			if (isConsistent(tuple.getValue(), repeatedIndex)) {
+				sorter.add(tuple.getValue());
+			}
+		}
+		sorter.finish();
+		return sorter;
+	}
+
+	/**
+	 * Reads the next row of one child in key order, from its sorter or directly from a sorted child.
+	 *
+	 * @return The values of the next row, or null if the child is exhausted.
+	 * @throws UncheckedIOException If a run of the sorter cannot be read
+	 */
+	private long[] nextRow(Operator operator, ExternalSorter sorter, int[][] repeatedIndex) {
+		try {
+			if (sorter != null) {
+				return sorter.next();
+			}
+			Tuple tuple;
+			while ((tuple = operator.getNextTuple()) != null) {
+				if (isConsistent(tuple.getValue(), repeatedIndex)) {
+					return tuple.getValue();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Reading sorted join input failed", e);
+		}
+		return null;
+	}
+
+	private long[] nextLeft() {
+		return nextRow(leftOperator, leftSorter, leftRepeatedIndex);
+	}
+
+	private long[] nextRight() {
+		return nextRow(rightOperator, rightSorter, rightRepeatedIndex);
+	}
+
+	/**
+	 * Retrieves the next joined tuple.
+	 * Emits the remaining matches of the current left row first. Otherwise it advances the left input,
+	 * reuses the group of right rows if the key did not change, and else skips the right rows with a
+	 * smaller key and collects those with an equal one.
+	 *
+	 * @return The next joined tuple, or null if the join is exhausted.
+	 */
+	@Override
+	public Tuple getNextTuple() {
+		// Sort the inputs lazily on the first call
+		if (!opened) {
+			open();
+		}
+		while (leftRow == null || groupIndex >= rightGroup.size()) {
+			leftRow = nextLeft();
+			if (leftRow == null) {
+				// The run files are not needed any more once the join is exhausted
+				deleteRuns();
+				return null;
+			}
+			groupIndex = 0;
+			// Duplicate left keys join with the same group of right rows
+			if (!rightGroup.isEmpty() && ExternalSorter.compareKeys(leftRow, leftKeyIndex, rightGroup.get(0), rightKeyIndex) == 0) {
+				continue;
+			}
+			rightGroup = new ArrayList<>();
+			while (rightRow != null && ExternalSorter.compareKeys(leftRow, leftKeyIndex, rightRow, rightKeyIndex) > 0) {
+				rightRow = nextRight();
+			}
+			while (rightRow != null && ExternalSorter.compareKeys(leftRow, leftKeyIndex, rightRow, rightKeyIndex) == 0) {
+				rightGroup.add(rightRow);
+				rightRow = nextRight();
+			}
+		}
+		return joinTuple(leftRow, rightGroup.get(groupIndex++));
+	}
+
+	/**
+	 * Checks that all columns holding the same variable have the same value.
+	 *
+	 * @param values        The values of the row to be checked.
+	 * @param repeatedIndex The pairs of positions that must be equal.
+	 * @return True if the row is consistent, false otherwise.
+	 */
+	private static boolean isConsistent(long[] values, int[][] repeatedIndex) {
+		for (int[] pair : repeatedIndex) {
+			if (values[pair[0]] != values[pair[1]]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Concatenates a left and a right row into a new joined tuple.
+	 *
+	 * @param left  The values of the left row.
+	 * @param right The values of the right row.
+	 * @return A new tuple holding the columns of both rows.
+	 */
+	private Tuple joinTuple(long[] left, long[] right) {
+		long[] value = Arrays.copyOf(left, left.length + right.length);
+		System.arraycopy(right, 0, value, left.length, right.length);
+		return new Tuple(schema, value);
+	}
+
+	/**
+	 * Checks whether the joined tuples are delivered in ascending order of a column.
+	 * They come in the order of the join key, so this holds for the first key column of either side.
+	 *
+	 * @param column The position of the column in the joined tuples.
+	 * @return True if the column is sorted.
+	 */
+	public boolean isSortedOn(int column) {
+		return leftKeyIndex.length > 0
+				&& (column == leftKeyIndex[0] || column == leftOperator.getSchema().size() + rightKeyIndex[0]);
+	}
+
+	/**
+	 * Resets the join to the first output tuple.
+	 * Both children are rescanned and sorted again, and the run files of the previous sort are deleted.
+	 */
+	@Override
+	public void reset() {
+		deleteRuns();
+		leftOperator.reset();
+		rightOperator.reset();
+		opened = false;
+		leftRow = null;
+		rightRow = null;
+		rightGroup = new ArrayList<>();
+		groupIndex = 0;
+	}
+
+	/**
+	 * Deletes the run files of the sorters and closes both children.
+	 */
+	@Override
+	public void close() {
+		deleteRuns();
+		leftOperator.close();
+		rightOperator.close();
+	}
+
+	/**
+	 * Deletes the run files of the sorters.
+	 */
+	private void deleteRuns() {
+		if (leftSorter != null) {
+			leftSorter.close();
+			leftSorter = null;
+		}
+		if (rightSorter != null) {
+			rightSorter.close();
+			rightSorter = null;
+		}
+	}
+
+	/**
+	 * Returns the schema of the joined tuples.
+	 *
+	 * @return The columns of the left child followed by the columns of the right child.
+	 */
+	@Override
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Dumps all the tuples in the join operation.
+	 */
+	@Override
+	public void dump() {
+		Tuple tuple;
+		while ((tuple = getNextTuple()) != null) {
+			System.out.println(Arrays.toString(tuple.getValue()));
+		}
+	}
+}
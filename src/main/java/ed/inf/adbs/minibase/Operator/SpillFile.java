@@ -0,0 +1,125 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * SpillFile stores rows of tuple values in a temporary file, one long after the other, for operators
+ * whose input does not fit in their memory budget, such as the sorted runs of an ExternalSorter or
+ * the partitions of a HashJoinOperator. Rows are first all written and then read back in the same order.
+ *
+ * @author jackson-zhou
+ */
+class SpillFile {
+	// The fewest rows an operator keeps in memory before it spills, whatever its memory budget,
+	// so that a tiny budget does not write a file per row
+	static final int MIN_SPILL_ROWS = TupleBatch.BATCH_SIZE;
+	// The size of the read and write buffer of the file
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private File file;
+	// The number of values in each row
+	private int width;
+	// The number of rows written, and the number of rows read back so far
+	private long rowCount;
+	private long readCount;
+	private DataOutputStream out;
+	private DataInputStream in;
+
+	/**
+	 * Creates a new empty temporary file. The operator owning the file deletes it once it is read,
+	 * or when the operator is reset or closed.
+	 *
+	 * @param width The number of values in each row.
+	 * @throws IOException If the file cannot be created.
+	 */
+	SpillFile(int width) throws IOException {
+		this.width = width;
+		this.file = File.createTempFile("minibase-spill-", ".tmp");
+	}
+
+	/**
+	 * Appends a row to the file.
+	 *
+	 * @param row The values of the row.
+	 * @throws IOException If the row cannot be written.
+	 */
+	void write(long[] row) throws IOException {
+		if (out == null) {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+		}
+		for (long value : row) {
+			out.writeLong(value);
+		}
+		rowCount++;
+	}
+
+	/**
+	 * Flushes and closes the file after the last row is written.
+	 *
+	 * @throws IOException If the file cannot be written.
+	 */
+	void closeOutput() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	/**
+	 * Reads the next row of the file, closing the file after the last row.
+	 *
+	 * @return The values of the next row, or null if all rows have been read.
+	 * @throws IOException If the file cannot be read.
+	 */
+	long[] read() throws IOException {
+		if (readCount == rowCount) {
+			if (in != null) {
+				in.close();
+				in = null;
+			}
+			return null;
+		}
+		if (in == null) {
+			closeOutput();
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+		}
+		long[] row = new long[width];
+		for (int i = 0; i < width; i++) {
+			row[i] = in.readLong();
+		}
+		readCount++;
+		return row;
+	}
+
+	/**
+	 * Returns the number of rows written to the file.
+	 *
+	 * @return The number of rows in the file.
+	 */
+	long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Closes and deletes the file.
+	 */
+	void delete() {
+		try {
+			if (in != null) {
+				in.close();
+			}
+			closeOutput();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		in = null;
+		file.delete();
+	}
+}
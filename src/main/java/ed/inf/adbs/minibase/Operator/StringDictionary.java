@@ -0,0 +1,69 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The StringDictionary class maps every string value of a database to a dense int id, so that
+ * tuples and parsed tables can hold string columns as ints. Two values are equal exactly when
+ * their ids are equal, so joins, selections and duplicate elimination never touch the strings.
+ * The strings are decoded again only to write results or to compare values by order.
+ * One dictionary is owned by each DatabaseCatalog and is safe to use from several threads.
+ * String values are kept with the quotes they have in the CSV files and in queries.
+ *
+ * @author jackson-zhou
+ */
+public class StringDictionary {
+	// The id of each string seen so far
+	private ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+	// The string of each id, grown by copying so that readers never see a partly filled array
+	private volatile String[] strings = new String[1024];
+	private int size;
+
+	/**
+	 * Returns the id of a string, assigning the next free id if the string is new.
+	 *
+	 * @param value The string to be encoded.
+	 * @return The id of the string.
+	 */
+	public int encode(String value) {
+		Integer id = ids.get(value);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(value);
+			if (id == null) {
+				if (size == strings.length) {
+					strings = Arrays.copyOf(strings, size * 2);
+				}
+				strings[size] = value;
+				id = size++;
+				ids.put(value, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the id of a string without adding it to the dictionary.
+	 *
+	 * @param value The string to be looked up.
+	 * @return The id of the string, or -1 if no table contains it.
+	 */
+	public int lookup(String value) {
+		Integer id = ids.get(value);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the string of an id.
+	 *
+	 * @param id An id returned by encode.
+	 * @return The string with this id.
+	 */
+	public String decode(int id) {
+		return strings[id];
+	}
+}
@@ -0,0 +1,129 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The TableCache class keeps fully parsed tables in memory so that rescans and later queries
+ * on the same DatabaseCatalog do not read the table files again. The estimated size of the
+ * cached tables is kept within a memory budget by evicting the least recently used tables.
+ * Every entry remembers a signature (modification times and sizes) of the files it was loaded
+ * from, and an entry whose files have changed since is dropped instead of returned.
+ *
+ * @author jackson-zhou
+ */
+public class TableCache {
+	// The largest total estimated size in bytes of the cached tables
+	private long budget;
+
+	// The total estimated size in bytes of the cached tables
+	private long usedBytes;
+
+	// The cached tables by name, iterated from least to most recently used
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Constructs an empty TableCache.
+	 *
+	 * @param budget The largest total estimated size in bytes of the cached tables, 0 disables the cache.
+	 */
+	public TableCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns a cached table if its files have not changed since it was loaded.
+	 *
+	 * @param tableName The name of the table.
+	 * @param signature The current signature of the table's files.
+	 * @return The cached table, or null if it is not cached or out of date.
+	 */
+	public synchronized ColumnarTable get(String tableName, long[] signature) {
+		Entry entry = entries.get(tableName);
+		if (entry == null) {
+			return null;
+		}
+		if (!Arrays.equals(entry.signature, signature)) {
+			// The file was modified, so the cached rows are stale
+			invalidate(tableName);
+			return null;
+		}
+		return entry.table;
+	}
+
+	/**
+	 * Adds a table to the cache, evicting the least recently used tables until it fits.
+	 * Tables larger than the whole budget are not cached.
+	 *
+	 * @param tableName The name of the table.
+	 * @param signature The signature of the files the table was loaded from.
+	 * @param table     The parsed table.
+	 */
+	public synchronized void put(String tableName, long[] signature, ColumnarTable table) {
+		long size = table.getEstimatedSize();
+		if (size > budget) {
+			return;
+		}
+		invalidate(tableName);
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (usedBytes + size > budget && iterator.hasNext()) {
+			usedBytes -= iterator.next().getValue().table.getEstimatedSize();
+			iterator.remove();
+		}
+		entries.put(tableName, new Entry(table, signature));
+		usedBytes += size;
+	}
+
+	/**
+	 * Removes a table from the cache.
+	 *
+	 * @param tableName The name of the table.
+	 */
+	public synchronized void invalidate(String tableName) {
+		Entry entry = entries.remove(tableName);
+		if (entry != null) {
+			usedBytes -= entry.table.getEstimatedSize();
+		}
+	}
+
+	/**
+	 * Removes all tables from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		usedBytes = 0;
+	}
+
+	/**
+	 * Returns the memory budget of the cache.
+	 *
+	 * @return The largest total estimated size in bytes of the cached tables.
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Returns the memory used by the cache.
+	 *
+	 * @return The total estimated size in bytes of the cached tables.
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * A cached table together with the signature of the files it was loaded from.
+	 */
+	private static class Entry {
+		private ColumnarTable table;
+		private long[] signature;
+
+		private Entry(ColumnarTable table, long[] signature) {
+			this.table = table;
+			this.signature = signature;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The TableStatistics class holds the statistics of one table that the query planner
+ * uses to estimate the size of intermediate results: the number of rows in the table
+ * and the number of distinct values in each of its columns. It also records which int
+ * columns are stored in ascending order, which lets a join read them without sorting.
+ *
+ * @author jackson-zhou
+ */
+public class TableStatistics {
+	// The number of rows in the table
+	private long rowCount;
+
+	// The number of distinct values in each column of the table
+	private long[] distinctCount;
+
+	// Whether each column is an int column whose values never decrease in file order
+	private boolean[] sorted;
+
+	// The signature of the table files the statistics were computed from
+	private long[] signature;
+
+	/**
+	 * Constructs a TableStatistics object with the given row count and distinct value counts.
+	 *
+	 * @param rowCount      The number of rows in the table.
+	 * @param distinctCount The number of distinct values in each column of the table.
+	 */
+	public TableStatistics(long rowCount, long[] distinctCount) {
+		this(rowCount, distinctCount, new boolean[distinctCount.length]);
+	}
+
+	/**
+	 * Constructs a TableStatistics object with the given row count, distinct value counts and sorted columns.
+	 *
+	 * @param rowCount      The number of rows in the table.
+	 * @param distinctCount The number of distinct values in each column of the table.
+	 * @param sorted        Whether each column is an int column stored in ascending order.
+	 */
+	public TableStatistics(long rowCount, long[] distinctCount, boolean[] sorted) {
+		this.rowCount = rowCount;
+		this.distinctCount = distinctCount;
+		this.sorted = sorted;
+	}
+
+	/**
+	 * Computes the statistics of a table by reading its CSV file once.
+	 *
+	 * @param tableFile   The CSV file of the table.
+	 * @param columnCount The number of columns of the table, as given by the schema.
+	 * @return The statistics of the table, or empty statistics if the file cannot be read.
+	 */
+	public static TableStatistics compute(File tableFile, int columnCount) {
+		long rowCount = 0;
+		// One set of seen values per column
+		List<Set<String>> distinctValues = new ArrayList<>();
+		for (int i = 0; i < columnCount; i++) {
+			distinctValues.add(new HashSet<>());
+		}
+		// The previous int value of each column, while the column is still in ascending order
+		boolean[] sorted = new boolean[columnCount];
+		long[] previous = new long[columnCount];
+		Arrays.fill(sorted, true);
+		Arrays.fill(previous, Long.MIN_VALUE);
+
+		try (BufferedReader bufferedReader = new BufferedReader(new FileReader(tableFile))) {
+			String line;
+			while ((line = bufferedReader.readLine()) != null) {
+				String[] columnValues = line.split(",");
+				for (int i = 0; i < columnCount && i < columnValues.length; i++) {
+					String value = columnValues[i].trim();
+					distinctValues.get(i).add(value);
+					if (sorted[i]) {
+						sorted[i] = isAscending(value, previous, i);
+					}
+				}
+				rowCount++;
+			}
+		} catch (Exception e) {
+			System.err.println("Statistics load failed for " + tableFile);
+			e.printStackTrace();
+		}
+
+		long[] distinctCount = new long[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			distinctCount[i] = distinctValues.get(i).size();
+		}
+		return new TableStatistics(rowCount, distinctCount, sorted);
+	}
+
+	/**
+	 * Checks whether a value of an int column is not smaller than the previous one, and records it.
+	 * Values that are not ints, the quoted values of string columns, are never in order.
+	 *
+	 * @param value    The value of the column in the current row.
+	 * @param previous The previous value of each column.
+	 * @param column   The position of the column.
+	 * @return True if the column is still in ascending order.
+	 */
+	private static boolean isAscending(String value, long[] previous, int column) {
+		try {
+			long current = Long.parseLong(value);
+			if (current < previous[column]) {
+				return false;
+			}
+			previous[column] = current;
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Computes the statistics of a table from its already parsed rows.
+	 *
+	 * @param table The parsed table.
+	 * @return The statistics of the table.
+	 */
+	public static TableStatistics compute(ColumnarTable table) {
+		long[] distinctCount = new long[table.getColumnCount()];
+		boolean[] sorted = new boolean[table.getColumnCount()];
+		for (int c = 0; c < table.getColumnCount(); c++) {
+			// A primitive set, as boxing every value of a large cached table can take more heap than the table
+			LongHashSet distinctValues = new LongHashSet();
+			int[] column = table.getColumn(c);
+			// Dictionary ids follow the order strings were first seen in, not the order of the strings
+			sorted[c] = !table.isStringColumn(c);
+			for (int r = 0; r < table.getRowCount(); r++) {
+				distinctValues.add(column[r]);
+				if (r > 0 && column[r] < column[r - 1]) {
+					sorted[c] = false;
+				}
+			}
+			distinctCount[c] = distinctValues.size();
+		}
+		return new TableStatistics(table.getRowCount(), distinctCount, sorted);
+	}
+
+	/**
+	 * Returns the signature of the table files the statistics were computed from.
+	 *
+	 * @return The file signature, or null if it was not recorded.
+	 */
+	public long[] getSignature() {
+		return signature;
+	}
+
+	/**
+	 * Records the signature of the table files the statistics were computed from.
+	 *
+	 * @param signature The file signature.
+	 */
+	public void setSignature(long[] signature) {
+		this.signature = signature;
+	}
+
+	/**
+	 * Returns the number of rows in the table.
+	 *
+	 * @return The number of rows in the table.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of distinct values in the given column.
+	 *
+	 * @param column The position of the column in the table.
+	 * @return The number of distinct values in the column.
+	 */
+	public long getDistinctCount(int column) {
+		return distinctCount[column];
+	}
+
+	/**
+	 * Checks whether the given column is an int column whose values are stored in ascending order.
+	 *
+	 * @param column The position of the column in the table.
+	 * @return True if scanning the table delivers the column sorted.
+	 */
+	public boolean isSorted(int column) {
+		return sorted[column];
+	}
+}
@@ -4,46 +4,46 @@ import java.util.List;
 
 /**
  * The Tuple class represents a tuple  in a relational database.
- * It contains information about the table name, column names, column types,
- * and the values for each column in the tuple.
+ * It contains the values for each column in the tuple and refers to the Schema,
+ * shared by all tuples of an operator, that holds the table name, column names and column types.
+ * Values are stored in primitive long slots: int columns hold the value itself and
+ * string columns hold the id of the string in the catalog's StringDictionary.
  * @author jackson-zhou
  */
 public class Tuple {
-	// The name of the table the tuple belongs to
-	String tableName;
+	// The schema describing the columns of the tuple
+	Schema schema;
 
-	// The list of column names for the tuple
-	List<String> ColumnName;
-
-	// The list of column types for the tuple
-	List<String> ColumnType;
-
-	// The list of values for each column in the tuple
-	List<String> value;
+	// The value of each column in the tuple, by position
+	long[] value;
 
 	/**
-	 * Constructs a Tuple object with the given table name, column names, column types,
-	 * and values.
+	 * Constructs a Tuple object with the given schema and values.
 	 *
-	 * @param tableName The name of the table the tuple belongs to.
-	 * @param ColumnName The list of column names for the tuple.
-	 * @param ColumnType The list of column types for the tuple.
-	 * @param value The list of values for each column in the tuple.
+	 * @param schema The schema describing the columns of the tuple.
+	 * @param value The value of each column in the tuple, string columns holding dictionary ids.
 	 */
-	public Tuple(String tableName, List<String> ColumnName, List<String> ColumnType, List<String> value) {
-		this.tableName = tableName;
-		this.ColumnName = ColumnName;
-		this.ColumnType = ColumnType;
+	public Tuple(Schema schema, long[] value) {
+		this.schema = schema;
 		this.value = value;
 	}
 
+	/**
+	 * Returns the schema of the tuple.
+	 *
+	 * @return The schema describing the columns of the tuple.
+	 */
+	public Schema getSchema() {
+		return schema;
+	}
+
 	/**
 	 * Returns the table name of the tuple.
 	 *
 	 * @return The name of the table the tuple belongs to.
 	 */
 	public String getTableName() {
-		return this.tableName;
+		return schema.getTableName();
 	}
 
 	/**
@@ -52,7 +52,7 @@ public class Tuple {
 	 * @return The list of column names for the tuple.
 	 */
 	public List<String> getColumnName() {
-		return ColumnName;
+		return schema.getColumnNames();
 	}
 
 	/**
@@ -61,17 +61,37 @@ public class Tuple {
 	 * @return The list of column types for the tuple.
 	 */
 	public List<String> getColumnType() {
-		return ColumnType;
+		return schema.getColumnTypes();
 	}
 
 	/**
-	 * Returns the list of values for each column in the tuple.
+	 * Returns the values of the tuple by position.
 	 *
-	 * @return The list of values for each column in the tuple.
+	 * @return The value of each column in the tuple, string columns holding dictionary ids.
 	 */
-	public List<String> getValue() {
+	public long[] getValue() {
 		return value;
 	}
 
+	/**
+	 * Returns the value of one column of the tuple.
+	 *
+	 * @param index The position of the column.
+	 * @return The value of the column, a dictionary id for string columns.
+	 */
+	public long getValue(int index) {
+		return value[index];
+	}
+
+	/**
+	 * Checks whether a column of the tuple holds dictionary ids of strings.
+	 *
+	 * @param index The position of the column.
+	 * @return True if the column is a string column, false if it is an int column.
+	 */
+	public boolean isStringColumn(int index) {
+		return schema.isStringColumn(index);
+	}
+
 
 }
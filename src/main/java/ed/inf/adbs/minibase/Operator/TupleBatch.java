@@ -0,0 +1,148 @@
+package ed.inf.adbs.minibase.Operator;
+
+/**
+ * The TupleBatch class holds a block of rows column by column, as produced by Operator.getNextBatch().
+ * Every column is a primitive vector in the same layout as Tuple values (ints and dictionary ids as longs),
+ * and a selection vector lists the rows of the block that are still alive, in order. Filters shrink the
+ * selection vector instead of copying rows, and projections reuse the column vectors of their input, so
+ * an operator processes a batch in tight loops over arrays.
+ *
+ * @author jackson-zhou
+ */
+public class TupleBatch {
+	// The number of rows an operator puts into one batch
+	public static final int BATCH_SIZE = 1024;
+
+	// The schema describing the columns of the batch
+	private Schema schema;
+
+	// The values of each column, indexed by row
+	private long[][] columns;
+
+	// The number of rows stored in the column vectors
+	private int rowCount;
+
+	// The rows of the batch that are selected, in increasing order
+	private int[] selection;
+
+	// The number of valid entries in the selection vector
+	private int selectedCount;
+
+	/**
+	 * Constructs a TupleBatch in which all stored rows are selected.
+	 *
+	 * @param schema   The schema describing the columns of the batch.
+	 * @param columns  The values of each column.
+	 * @param rowCount The number of rows stored in the column vectors.
+	 */
+	public TupleBatch(Schema schema, long[][] columns, int rowCount) {
+		this(schema, columns, rowCount, identitySelection(rowCount), rowCount);
+	}
+
+	/**
+	 * Constructs a TupleBatch with the given selection of rows.
+	 *
+	 * @param schema        The schema describing the columns of the batch.
+	 * @param columns       The values of each column.
+	 * @param rowCount      The number of rows stored in the column vectors.
+	 * @param selection     The selected rows, in increasing order.
+	 * @param selectedCount The number of valid entries in the selection vector.
+	 */
+	public TupleBatch(Schema schema, long[][] columns, int rowCount, int[] selection, int selectedCount) {
+		this.schema = schema;
+		this.columns = columns;
+		this.rowCount = rowCount;
+		this.selection = selection;
+		this.selectedCount = selectedCount;
+	}
+
+	/**
+	 * Creates a selection vector selecting the first rowCount rows.
+	 */
+	private static int[] identitySelection(int rowCount) {
+		int[] selection = new int[rowCount];
+		for (int i = 0; i < rowCount; i++) {
+			selection[i] = i;
+		}
+		return selection;
+	}
+
+	/**
+	 * Returns the schema of the batch.
+	 *
+	 * @return The schema describing the columns of the batch.
+	 */
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Returns the column vectors of the batch.
+	 *
+	 * @return The values of each column, indexed by row.
+	 */
+	public long[][] getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Returns one column vector of the batch.
+	 *
+	 * @param column The position of the column.
+	 * @return The values of the column, indexed by row.
+	 */
+	public long[] getColumn(int column) {
+		return columns[column];
+	}
+
+	/**
+	 * Returns the number of rows stored in the column vectors, selected or not.
+	 *
+	 * @return The number of stored rows.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the selection vector, whose first getSelectedCount() entries are the selected rows.
+	 * Filters may overwrite it in place.
+	 *
+	 * @return The selection vector.
+	 */
+	public int[] getSelection() {
+		return selection;
+	}
+
+	/**
+	 * Returns the number of selected rows.
+	 *
+	 * @return The number of valid entries in the selection vector.
+	 */
+	public int getSelectedCount() {
+		return selectedCount;
+	}
+
+	/**
+	 * Sets the number of selected rows after a filter has compacted the selection vector.
+	 *
+	 * @param selectedCount The number of valid entries in the selection vector.
+	 */
+	public void setSelectedCount(int selectedCount) {
+		this.selectedCount = selectedCount;
+	}
+
+	/**
+	 * Copies one row of the batch into a Tuple, for consumers working tuple at a time.
+	 *
+	 * @param row The position of the row in the column vectors.
+	 * @return A Tuple holding the values of the row.
+	 */
+	public Tuple getTuple(int row) {
+		long[] value = new long[columns.length];
+		for (int c = 0; c < value.length; c++) {
+			value[c] = columns[c][row];
+		}
+		return new Tuple(schema, value);
+	}
+}
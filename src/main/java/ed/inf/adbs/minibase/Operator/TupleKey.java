@@ -0,0 +1,100 @@
+package ed.inf.adbs.minibase.Operator;
+
+import java.util.Arrays;
+
+/**
+ * The TupleKey class wraps the values of some columns of a tuple so that they can be used as a
+ * key of a HashMap or HashSet, for example as the join key of a HashJoinOperator.
+ *
+ * @author jackson-zhou
+ */
+public class TupleKey {
+	// The key values, which must not be modified while the key is in use
+	private long[] values;
+	private int hash;
+
+	/**
+	 * Constructs a TupleKey over the given values.
+	 *
+	 * @param values The key values.
+	 */
+	public TupleKey(long[] values) {
+		this.values = values;
+		this.hash = Arrays.hashCode(values);
+	}
+
+	/**
+	 * Builds the key made of the given columns of a tuple.
+	 *
+	 * @param tuple    The tuple to take the values from.
+	 * @param keyIndex The positions of the key columns in the tuple.
+	 * @return The key of the tuple.
+	 */
+	public static TupleKey of(Tuple tuple, int[] keyIndex) {
+		return of(tuple.getValue(), keyIndex);
+	}
+
+	/**
+	 * Builds the key made of the given columns of a row of tuple values.
+	 *
+	 * @param row      The values to take the key from.
+	 * @param keyIndex The positions of the key columns in the row.
+	 * @return The key of the row.
+	 */
+	public static TupleKey of(long[] row, int[] keyIndex) {
+		long[] values = new long[keyIndex.length];
+		for (int i = 0; i < keyIndex.length; i++) {
+			values[i] = row[keyIndex[i]];
+		}
+		return new TupleKey(values);
+	}
+
+	/**
+	 * Overwrites the values of a key used only to probe a HashMap or HashSet with the key columns
+	 * of one row of a batch, so that probing does not allocate a key per row.
+	 * A key changed this way must never be stored in a map or set.
+	 *
+	 * @param columns  The column vectors of the batch.
+	 * @param keyIndex The positions of the key columns in the batch, as many as the key has values.
+	 * @param row      The row of the batch.
+	 */
+	void setProbe(long[][] columns, int[] keyIndex, int row) {
+		for (int i = 0; i < keyIndex.length; i++) {
+			values[i] = columns[keyIndex[i]][row];
+		}
+		hash = Arrays.hashCode(values);
+	}
+
+	/**
+	 * Overwrites the values of a key used only to probe a HashMap or HashSet with the key columns of a row.
+	 * A key changed this way must never be stored in a map or set.
+	 *
+	 * @param row      The values of the row.
+	 * @param keyIndex The positions of the key columns in the row, as many as the key has values.
+	 */
+	void setProbe(long[] row, int[] keyIndex) {
+		for (int i = 0; i < keyIndex.length; i++) {
+			values[i] = row[keyIndex[i]];
+		}
+		hash = Arrays.hashCode(values);
+	}
+
+	/**
+	 * Returns the key values.
+	 *
+	 * @return The key values.
+	 */
+	public long[] getValues() {
+		return values;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof TupleKey && hash == ((TupleKey) obj).hash && Arrays.equals(values, ((TupleKey) obj).values);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+}
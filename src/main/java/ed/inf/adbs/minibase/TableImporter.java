@@ -0,0 +1,78 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.ColumnarTable;
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Converts the CSV files of a database into binary columnar table files.
+ * The column types are taken from the database's schema.txt, and the ScanOperator
+ * reads the converted files instead of the CSV files from then on.
+ *
+ * @author jackson-zhou
+ */
+public class TableImporter {
+
+    /**
+     * The main entry point of the import tool.
+     *
+     * @param args Command line arguments:
+     *             args[0] - database directory
+     *             args[1..] - optional names of the tables to convert, all tables by default
+     */
+    public static void main(String[] args) {
+        // Check if the database directory is provided
+        if (args.length < 1) {
+            System.err.println("Usage: TableImporter database_dir [table ...]");
+            return;
+        }
+
+        // Assign the database directory and the optional list of tables
+        String databaseDir = args[0];
+        List<String> tableNames = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            tableNames.add(args[i]);
+        }
+
+        importTables(databaseDir, tableNames);
+    }
+
+    /**
+     * Converts the CSV file of each requested table into a binary columnar file.
+     *
+     * @param databaseDir The directory path containing the database schema and relations.
+     * @param tableNames  The tables to convert, or an empty list to convert every table in the schema.
+     */
+    public static void importTables(String databaseDir, List<String> tableNames) {
+        // Load the schema to get the column types of each table
+        HashMap<String, List<String>> dbCatalogMapper = new HashMap<>();
+        Minibase.dbCatalogMapGenerator(databaseDir, dbCatalogMapper);
+        DatabaseCatalog dbCatalog = new DatabaseCatalog(dbCatalogMapper, databaseDir);
+
+        if (tableNames.isEmpty()) {
+            tableNames = new ArrayList<>(dbCatalogMapper.keySet());
+        }
+
+        for (String tableName : tableNames) {
+            List<String> columnTypes = dbCatalogMapper.get(tableName);
+            if (columnTypes == null) {
+                System.err.println("Unknown table: " + tableName);
+                continue;
+            }
+            File csvFile = dbCatalog.getTableFile(tableName);
+            File columnarFile = dbCatalog.getColumnarFile(tableName);
+            try {
+                ColumnarTable table = ColumnarTable.readCsv(csvFile, columnTypes, dbCatalog.getStringDictionary());
+                table.write(columnarFile, dbCatalog.getStringDictionary());
+                System.out.println("Imported " + tableName + " (" + table.getRowCount() + " rows) into " + columnarFile);
+            } catch (Exception e) {
+                System.err.println("Failed to import table " + tableName);
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.HashAggregateOperator;
+import ed.inf.adbs.minibase.Operator.Operator;
+import ed.inf.adbs.minibase.Operator.Schema;
+import ed.inf.adbs.minibase.Operator.Tuple;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import ed.inf.adbs.minibase.base.Head;
+import ed.inf.adbs.minibase.base.SumAggregate;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the SUM aggregates of query heads.
+ */
+public class AggregateTest {
+
+    /**
+     * A child of 200 full batches whose row i holds x = i % 100 and y = i.
+     */
+    private static class GeneratedOperator extends Operator {
+        private final Schema schema = new Schema("T", Arrays.asList("x", "y"), Arrays.asList("int", "int"));
+        private int batchCount;
+
+        @Override
+        public TupleBatch getNextBatch() {
+            if (batchCount == 200) {
+                return null;
+            }
+            long[][] columns = new long[2][TupleBatch.BATCH_SIZE];
+            for (int row = 0; row < TupleBatch.BATCH_SIZE; row++) {
+                long i = (long) batchCount * TupleBatch.BATCH_SIZE + row;
+                columns[0][row] = i % 100;
+                columns[1][row] = i;
+            }
+            batchCount++;
+            return new TupleBatch(schema, columns, TupleBatch.BATCH_SIZE);
+        }
+
+        @Override
+        public Tuple getNextTuple() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+            batchCount = 0;
+        }
+
+        @Override
+        public void dump() {
+        }
+
+        @Override
+        public Schema getSchema() {
+            return schema;
+        }
+    }
+
+    /**
+     * A child whose second batch claims more rows than its columns hold, so aggregating it fails.
+     */
+    private static class FailingOperator extends Operator {
+        private final Schema schema = new Schema("T", Arrays.asList("x", "y"), Arrays.asList("int", "int"));
+        private int batchCount;
+
+        @Override
+        public TupleBatch getNextBatch() {
+            batchCount++;
+            if (batchCount == 1) {
+                return new TupleBatch(schema, new long[][]{{1, 2}, {3, 4}}, 2);
+            }
+            return batchCount == 2 ? new TupleBatch(schema, new long[][]{{}, {}}, 5) : null;
+        }
+
+        @Override
+        public Tuple getNextTuple() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+            batchCount = 0;
+        }
+
+        @Override
+        public void dump() {
+        }
+
+        @Override
+        public Schema getSchema() {
+            return schema;
+        }
+    }
+
+    @Test
+    public void parallelAggregationSumsEveryBatchOnce() {
+        Head head = new Head("Q", Collections.singletonList(new Variable("x")),
+                new SumAggregate(Collections.<Term>singletonList(new Variable("y"))));
+        HashAggregateOperator aggregate = new HashAggregateOperator(new GeneratedOperator(), head, 4);
+        // Each of the 100 groups holds the 2048 values x + 100 * k for k from 0 to 2047
+        long[] sums = new long[100];
+        int groups = 0;
+        TupleBatch batch;
+        while ((batch = aggregate.getNextBatch()) != null) {
+            for (int k = 0; k < batch.getSelectedCount(); k++) {
+                int row = batch.getSelection()[k];
+                sums[(int) batch.getColumn(0)[row]] += batch.getColumn(1)[row];
+                groups++;
+            }
+        }
+        assertEquals(100, groups);
+        for (int x = 0; x < sums.length; x++) {
+            assertEquals(2048L * x + 100L * 2047 * 2048 / 2, sums[x]);
+        }
+    }
+
+    @Test
+    public void failedParallelTaskIsNotReturnedAsPartialSums() {
+        Head head = new Head("Q", Collections.singletonList(new Variable("x")),
+                new SumAggregate(Collections.<Term>singletonList(new Variable("y"))));
+        HashAggregateOperator aggregate = new HashAggregateOperator(new FailingOperator(), head, 4);
+        try {
+            aggregate.getNextBatch();
+            fail("The failed aggregation returned a result");
+        } catch (RuntimeException e) {
+            assertTrue(e instanceof ArrayIndexOutOfBoundsException);
+        }
+    }
+
+    @Test
+    public void groupedSumOfProduct() throws IOException {
+        assertEquals(lines("0, 16", "1, 1", "2, 6", "3, 50", "4, 55"), evaluate("Q(x, SUM(y * z)) :- U(x, y, z)"));
+    }
+
+    @Test
+    public void groupedSumOfConstantCountsRows() throws IOException {
+        assertEquals(lines("0, 6", "1, 1", "2, 1", "3, 3", "4, 4"), evaluate("Q(x, SUM(1)) :- T(x, y)"));
+    }
+
+    @Test
+    public void constantFactorMultipliesSum() throws IOException {
+        assertEquals(lines("50"), evaluate("Q(SUM(2 * x)) :- T(x, y), x > 2"));
+    }
+
+    @Test
+    public void sumGroupedByString() throws IOException {
+        assertEquals(lines("'a', 10", "'b', 2", "'c', 7"), evaluate("Q(c, SUM(a)) :- R(a, b, c)"));
+    }
+
+    @Test
+    public void sumOverDisconnectedAtomsMultipliesComponents() throws IOException {
+        assertEquals(lines("1064"), evaluate("Q(SUM(x * z)) :- T(x, y), U(z, a, b)"));
+        assertEquals(lines("0, 228", "1, 38", "2, 38", "3, 114", "4, 152"), evaluate("Q(x, SUM(z)) :- T(x, y), U(z, a, b)"));
+        assertEquals(lines("0, 6", "1, 1", "2, 1", "3, 3", "4, 4"), evaluate("Q(x, SUM(1)) :- T(x, y), R(a, b, c), a > 3"));
+    }
+
+    @Test
+    public void emptyComponentEmptiesGroupedSum() throws IOException {
+        assertEquals(lines(), evaluate("Q(x, SUM(1)) :- T(x, y), R(a, b, c), a > 9"));
+    }
+}
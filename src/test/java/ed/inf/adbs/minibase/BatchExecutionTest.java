@@ -0,0 +1,87 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.Operator;
+import ed.inf.adbs.minibase.Operator.QueryPlan;
+import ed.inf.adbs.minibase.Operator.Tuple;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.Query;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static ed.inf.adbs.minibase.QueryTestSupport.sorted;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that query plans read a batch at a time produce the same rows as read a tuple at a time.
+ */
+public class BatchExecutionTest {
+
+    private static Operator plan(String query) {
+        Query parsed = QueryParser.parse(query);
+        List<RelationalAtom> relationalBody = new ArrayList<>();
+        List<ComparisonAtom> comparisonBody = new ArrayList<>();
+        for (Atom atom : parsed.getBody()) {
+            if (atom instanceof RelationalAtom) {
+                relationalBody.add((RelationalAtom) atom);
+            } else {
+                comparisonBody.add((ComparisonAtom) atom);
+            }
+        }
+        return new QueryPlan(parsed.getHead(), relationalBody, comparisonBody, loadCatalog()).getOperator();
+    }
+
+    private static List<String> tupleRows(String query) {
+        Operator operator = plan(query);
+        List<String> rows = new ArrayList<>();
+        for (Tuple tuple = operator.getNextTuple(); tuple != null; tuple = operator.getNextTuple()) {
+            rows.add(Arrays.toString(tuple.getValue()));
+        }
+        return sorted(rows);
+    }
+
+    private static List<String> batchRows(String query) {
+        Operator operator = plan(query);
+        List<String> rows = new ArrayList<>();
+        TupleBatch batch;
+        while ((batch = operator.getNextBatch()) != null) {
+            int[] selection = batch.getSelection();
+            for (int k = 0; k < batch.getSelectedCount(); k++) {
+                assertTrue(selection[k] < batch.getRowCount());
+                assertTrue(k == 0 || selection[k - 1] < selection[k]);
+                rows.add(Arrays.toString(batch.getTuple(selection[k]).getValue()));
+            }
+        }
+        return sorted(rows);
+    }
+
+    private static void assertSameRows(String query, int expectedRows) {
+        List<String> rows = batchRows(query);
+        assertEquals(expectedRows, rows.size());
+        assertEquals(tupleRows(query), rows);
+    }
+
+    @Test
+    public void selectionNarrowsTheSelectionVector() {
+        assertSameRows("Q(x, y) :- T(x, y), x > 1, y != 4", 6);
+    }
+
+    @Test
+    public void everyComparisonFiltersTheSameBatch() {
+        assertSameRows("Q(x, z) :- U(x, y, z), y = 1, z >= 1", 5);
+        assertSameRows("Q(x, y) :- T(x, y), x = y", 2);
+    }
+
+    @Test
+    public void joinProbesBatches() {
+        assertSameRows("Q(x, y, b) :- T(x, y), U(y, a, b), a < 3", 20);
+    }
+}
@@ -0,0 +1,83 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.ColumnPruneOperator;
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.HashJoinOperator;
+import ed.inf.adbs.minibase.Operator.Operator;
+import ed.inf.adbs.minibase.Operator.ScanMode;
+import ed.inf.adbs.minibase.Operator.ScanOperator;
+import ed.inf.adbs.minibase.Operator.Tuple;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests scans that parse only some columns and the pruning of columns below the joins.
+ */
+public class ColumnPruningTest {
+
+    private static RelationalAtom atom(String query, int index) {
+        return (RelationalAtom) QueryParser.parse(query).getBody().get(index);
+    }
+
+    private static List<String> rows(Operator operator) {
+        List<String> rows = new ArrayList<>();
+        for (Tuple tuple = operator.getNextTuple(); tuple != null; tuple = operator.getNextTuple()) {
+            rows.add(Arrays.toString(tuple.getValue()));
+        }
+        return rows;
+    }
+
+    @Test
+    public void prunedScanDeliversOnlyItsColumns() {
+        for (ScanMode scanMode : ScanMode.values()) {
+            DatabaseCatalog dbCatalog = loadCatalog();
+            dbCatalog.setScanMode(scanMode);
+            dbCatalog.setOrderedScan(true);
+            RelationalAtom atom = atom("Q(x) :- U(x, y, z)", 0);
+            ScanOperator pruned = new ScanOperator(atom, new int[]{0, 2}, dbCatalog);
+            assertEquals(Arrays.asList("x", "z"), pruned.getSchema().getColumnNames());
+
+            List<String> expected = new ArrayList<>();
+            for (String row : rows(new ScanOperator(atom, dbCatalog))) {
+                String[] values = row.substring(1, row.length() - 1).split(", ");
+                expected.add("[" + values[0] + ", " + values[2] + "]");
+            }
+            assertEquals(scanMode.toString(), expected, rows(pruned));
+        }
+    }
+
+    @Test
+    public void pruneKeepsTheFirstColumnOfEachVariable() {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        String query = "Q(x) :- T(x, y), U(y, a, b)";
+        Operator join = new HashJoinOperator(new ScanOperator(atom(query, 0), dbCatalog), new ScanOperator(atom(query, 1), dbCatalog));
+        ColumnPruneOperator prune = new ColumnPruneOperator(join, Arrays.asList("b", "y"));
+        assertEquals(Arrays.asList("y", "b"), prune.getSchema().getColumnNames());
+        assertEquals(4, prune.getChildColumn(1));
+
+        int count = 0;
+        TupleBatch batch;
+        while ((batch = prune.getNextBatch()) != null) {
+            assertEquals(2, batch.getColumns().length);
+            count += batch.getSelectedCount();
+        }
+        assertEquals(50, count);
+    }
+
+    @Test
+    public void prunedJoinAnswersQuery() throws IOException {
+        assertEquals(lines("0", "1", "3", "4", "5", "7", "8"), evaluate("Q(b) :- T(x, y), U(y, a, b)"));
+    }
+}
@@ -0,0 +1,101 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.ComparisonPredicate;
+import ed.inf.adbs.minibase.Operator.Schema;
+import ed.inf.adbs.minibase.Operator.StringDictionary;
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests comparisons compiled against a schema R(x int, y int, z string).
+ */
+public class ComparisonPredicateTest {
+
+    private static final Schema SCHEMA = new Schema("R", Arrays.asList("x", "y", "z"), Arrays.asList("int", "int", "string"));
+
+    private final StringDictionary dictionary = new StringDictionary();
+
+    private ComparisonPredicate compile(String comparison) {
+        ComparisonAtom atom = (ComparisonAtom) QueryParser.parse("Q(x) :- R(x, y, z), " + comparison).getBody().get(1);
+        return ComparisonPredicate.compile(atom, SCHEMA, dictionary);
+    }
+
+    private long[] row(long x, long y, String z) {
+        return new long[]{x, y, dictionary.encode(z)};
+    }
+
+    @Test
+    public void intComparisonsReadColumnsByOffset() {
+        ComparisonPredicate atLeastThree = compile("x >= 3");
+        assertTrue(atLeastThree.test(row(3, 0, "'a'")));
+        assertFalse(atLeastThree.test(row(2, 9, "'a'")));
+
+        ComparisonPredicate lessThanY = compile("x < y");
+        assertTrue(lessThanY.test(row(1, 2, "'a'")));
+        assertFalse(lessThanY.test(row(2, 2, "'a'")));
+    }
+
+    @Test
+    public void constantOnTheLeftIsMirrored() {
+        ComparisonPredicate predicate = compile("3 < x");
+        assertTrue(predicate.test(row(4, 0, "'a'")));
+        assertFalse(predicate.test(row(3, 0, "'a'")));
+    }
+
+    @Test
+    public void stringsCompareByIdOrByText() {
+        long[] a = row(0, 0, "'a'");
+        long[] c = row(0, 0, "'c'");
+        ComparisonPredicate equalsC = compile("z = 'c'");
+        assertTrue(equalsC.test(c));
+        assertFalse(equalsC.test(a));
+
+        // 'c' was encoded before 'b', so the order has to come from the strings and not the ids
+        ComparisonPredicate beforeB = compile("z < 'b'");
+        assertTrue(beforeB.test(a));
+        assertFalse(beforeB.test(c));
+        assertFalse(beforeB.test(row(0, 0, "'b'")));
+    }
+
+    @Test
+    public void absentStringConstantIsNotAddedToDictionary() {
+        long[] a = row(0, 0, "'a'");
+        ComparisonPredicate equalsQ = compile("z = 'q'");
+        ComparisonPredicate notQ = compile("z != 'q'");
+        assertEquals(-1, dictionary.lookup("'q'"));
+        assertFalse(equalsQ.test(a));
+        assertTrue(notQ.test(a));
+        long[][] columns = {{0, 0}, {0, 0}, {a[2], a[2]}};
+        assertEquals(0, equalsQ.filter(columns, new int[]{0, 1}, 2));
+        assertEquals(2, notQ.filter(columns, new int[]{0, 1}, 2));
+        assertEquals(-1, dictionary.lookup("'q'"));
+
+        // A table streamed after the predicate was compiled may still hold the constant
+        long[] q = row(0, 0, "'q'");
+        assertTrue(equalsQ.test(q));
+        assertFalse(notQ.test(q));
+        assertTrue(notQ.test(a));
+    }
+
+    @Test
+    public void comparisonsNotDependingOnTheTupleAreFolded() {
+        assertTrue(compile("1 < 2").isConstant());
+        assertTrue(compile("1 < 2").test(new long[0]));
+        assertFalse(compile("'a' = 'b'").test(new long[0]));
+
+        // An int column is never equal to a string
+        assertTrue(compile("x = 'a'").isConstant());
+        assertFalse(compile("x = 'a'").test(row(0, 0, "'a'")));
+        assertTrue(compile("x != 'a'").test(row(0, 0, "'a'")));
+
+        // A variable that no column holds cannot be satisfied
+        assertFalse(compile("w > 1").test(row(5, 5, "'a'")));
+    }
+}
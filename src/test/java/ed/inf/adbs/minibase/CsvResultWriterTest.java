@@ -0,0 +1,78 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.CsvResultWriter;
+import ed.inf.adbs.minibase.Operator.Schema;
+import ed.inf.adbs.minibase.Operator.StringDictionary;
+import ed.inf.adbs.minibase.Operator.Tuple;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the streaming of query answers to CSV files.
+ */
+public class CsvResultWriterTest {
+
+    private static final Schema SCHEMA = new Schema("Q", Arrays.asList("x", "z"), Arrays.asList("int", "string"));
+
+    @Test
+    public void writesTuplesAndSelectedBatchRows() throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        int a = dictionary.encode("'a'");
+        int b = dictionary.encode("'b c'");
+        Path output = Files.createTempFile("minibase-answer", ".csv");
+        try (CsvResultWriter writer = new CsvResultWriter(output.toFile(), dictionary)) {
+            writer.write(new Tuple(SCHEMA, new long[]{-42, a}));
+            writer.write(new Tuple(SCHEMA, new long[]{Long.MIN_VALUE, b}));
+            // Only the rows 0 and 2 of the batch are selected
+            long[][] columns = {{0, 7, Long.MAX_VALUE}, {b, a, a}};
+            writer.write(new TupleBatch(SCHEMA, columns, 3, new int[]{0, 2}, 2));
+            // The answer of a true boolean query
+            writer.write(new Tuple(Schema.empty("Q"), new long[0]));
+        }
+        try {
+            assertEquals(Arrays.asList("-42, 'a'", Long.MIN_VALUE + ", 'b c'", "0, 'b c'", Long.MAX_VALUE + ", 'a'", ""),
+                    Files.readAllLines(output, StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void answerReachesFileBeforeItEnds() throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        int a = dictionary.encode("'a'");
+        File output = Files.createTempFile("minibase-answer", ".csv").toFile();
+        try {
+            CsvResultWriter writer = new CsvResultWriter(output, dictionary);
+            // 200 batches of "n, 'a'" lines, over 2 MB in all
+            for (int batchIndex = 0; batchIndex < 200; batchIndex++) {
+                long[][] columns = new long[2][TupleBatch.BATCH_SIZE];
+                for (int row = 0; row < TupleBatch.BATCH_SIZE; row++) {
+                    columns[0][row] = (long) batchIndex * TupleBatch.BATCH_SIZE + row;
+                    columns[1][row] = a;
+                }
+                writer.write(new TupleBatch(SCHEMA, columns, TupleBatch.BATCH_SIZE));
+            }
+            assertTrue(output.length() > 0);
+            writer.close();
+
+            List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+            assertEquals(200 * TupleBatch.BATCH_SIZE, lines.size());
+            assertEquals("0, 'a'", lines.get(0));
+            assertEquals((200 * TupleBatch.BATCH_SIZE - 1) + ", 'a'", lines.get(lines.size() - 1));
+        } finally {
+            Files.delete(output.toPath());
+        }
+    }
+}
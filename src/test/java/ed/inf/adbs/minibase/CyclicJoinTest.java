@@ -0,0 +1,54 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.QueryHypergraph;
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the detection of cyclic queries and their evaluation with the Leapfrog Triejoin.
+ */
+public class CyclicJoinTest {
+
+    private static boolean isAcyclic(String query) {
+        List<RelationalAtom> relationalBody = new ArrayList<>();
+        for (Atom atom : QueryParser.parse(query).getBody()) {
+            if (atom instanceof RelationalAtom) {
+                relationalBody.add((RelationalAtom) atom);
+            }
+        }
+        return new QueryHypergraph(relationalBody).isAcyclic();
+    }
+
+    @Test
+    public void cyclesAreDetected() {
+        assertTrue(isAcyclic("Q(a) :- T(a, b), T(b, c), T(c, d)"));
+        assertFalse(isAcyclic("Q(a) :- T(a, b), T(b, c), T(c, a)"));
+        assertFalse(isAcyclic("Q(a) :- T(a, b), T(b, c), T(c, d), T(d, a)"));
+        // An atom holding every variable of the cycle makes it acyclic
+        assertTrue(isAcyclic("Q(a) :- T(a, b), T(b, c), U(a, b, c)"));
+    }
+
+    @Test
+    public void triangleQuery() throws IOException {
+        assertEquals(lines("0, 0, 0", "0, 0, 4", "0, 1, 4", "0, 4, 0", "0, 4, 3", "1, 4, 0", "3, 0, 4", "3, 3, 3", "4, 0, 0", "4, 0, 1", "4, 3, 0"),
+                evaluate("Q(a, b, c) :- T(a, b), T(b, c), T(c, a)"));
+    }
+
+    @Test
+    public void cycleWithComparisonAndProjection() throws IOException {
+        assertEquals(lines("0, 3", "0, 4", "1, 2", "1, 4", "3, 4"),
+                evaluate("Q(a, c) :- T(a, b), U(b, c, d), T(c, a), a < c"));
+    }
+}
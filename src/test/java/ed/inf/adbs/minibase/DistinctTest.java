@@ -0,0 +1,83 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.ExternalDistinct;
+import ed.inf.adbs.minibase.Operator.RowHashSet;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the removal of duplicate answers of queries whose head projects variables away.
+ */
+public class DistinctTest {
+
+    @Test
+    public void rowHashSetAddsEachRowOnce() {
+        RowHashSet set = new RowHashSet(2);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(set.add(new long[]{i, -i}));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(set.add(new long[]{i, -i}));
+        }
+        assertTrue(set.add(new long[]{1, 1}));
+        assertEquals(10001, set.size());
+        assertEquals(4999L, set.getRow(4999)[0]);
+        assertEquals(-4999L, set.getRow(4999)[1]);
+    }
+
+    @Test
+    public void spilledRowsArePassedOnceAfterFinish() throws IOException {
+        // 30000 rows holding each of 5000 values six times in scattered order, over a budget of about a thousand rows
+        ExternalDistinct distinct = new ExternalDistinct(2, 16 * 1024);
+        Set<Long> passed = new HashSet<>();
+        int passedAtOnce = 0;
+        for (int i = 0; i < 30000; i++) {
+            long value = i * 7919L % 5000;
+            if (distinct.add(new long[]{value, value * 7})) {
+                assertTrue(passed.add(value));
+                passedAtOnce++;
+            }
+        }
+        distinct.finish();
+        for (long[] row = distinct.next(); row != null; row = distinct.next()) {
+            assertEquals(row[0] * 7, row[1]);
+            assertTrue(passed.add(row[0]));
+        }
+        distinct.close();
+        assertEquals(5000, passed.size());
+        assertTrue(passedAtOnce < 5000);
+    }
+
+    @Test
+    public void zeroBudgetKeepsOneBatchOfRowsInMemory() throws IOException {
+        ExternalDistinct distinct = new ExternalDistinct(1, 0);
+        for (int i = 0; i < TupleBatch.BATCH_SIZE; i++) {
+            assertTrue(distinct.add(new long[]{i}));
+            assertFalse(distinct.add(new long[]{i}));
+        }
+        distinct.finish();
+        assertNull(distinct.next());
+        distinct.close();
+    }
+
+    @Test
+    public void projectionWithoutDistinctMemory() throws IOException {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        dbCatalog.setDistinctMemoryBudget(0);
+        assertEquals(lines("0", "1", "2", "3", "4"), evaluate(dbCatalog, "Q(y) :- T(x, y), U(y, z, w)"));
+        assertEquals(lines("'a'", "'b'", "'c'"), evaluate(dbCatalog, "Q(c) :- R(a, b, c)"));
+    }
+}
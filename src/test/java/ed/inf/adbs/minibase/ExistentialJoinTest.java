@@ -0,0 +1,55 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.HashSemiJoinOperator;
+import ed.inf.adbs.minibase.Operator.ScanOperator;
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the joins of projection queries whose body has variables missing from the head.
+ */
+public class ExistentialJoinTest {
+
+    private static int semiJoinCount(String query) {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        List<Atom> body = QueryParser.parse(query).getBody();
+        HashSemiJoinOperator semiJoin = new HashSemiJoinOperator(new ScanOperator((RelationalAtom) body.get(0), dbCatalog),
+                new ScanOperator((RelationalAtom) body.get(1), dbCatalog));
+        int count = 0;
+        while (semiJoin.getNextTuple() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void semiJoinKeepsEachLeftRowOnce() {
+        // All 15 rows of T find one of the 50 matches of their y in U
+        assertEquals(15, semiJoinCount("Q(x) :- T(x, y), U(y, a, b)"));
+        // 9 rows of T have their mirror in T, 16 pairs in all
+        assertEquals(9, semiJoinCount("Q(x) :- T(x, y), T(y, x)"));
+    }
+
+    @Test
+    public void existentialChain() throws IOException {
+        assertEquals(lines("0", "1", "2", "3", "4"), evaluate("Q(x) :- T(x, y), U(y, a, b), R(b, c, d)"));
+        assertEquals(lines("0, 'a'", "0, 'b'", "0, 'c'", "1, 'a'", "2, 'a'", "3, 'b'", "3, 'c'", "4, 'a'", "4, 'b'", "4, 'c'"),
+                evaluate("Q(x, d) :- T(x, y), U(y, a, b), R(b, c, d), a < c"));
+    }
+
+    @Test
+    public void existentialCycle() throws IOException {
+        assertEquals(lines("0", "1", "3", "4"), evaluate("Q(a) :- T(a, b), T(b, c), T(c, a)"));
+    }
+}
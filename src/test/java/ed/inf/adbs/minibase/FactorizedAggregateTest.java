@@ -0,0 +1,45 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests SUM queries over acyclic joins, which are aggregated over the factorized join by default.
+ */
+public class FactorizedAggregateTest {
+
+    /**
+     * Evaluates a SUM query with and without factorized aggregation and checks both answers.
+     */
+    private static void assertSum(String query, String... expected) throws IOException {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        assertEquals(query, lines(expected), evaluate(dbCatalog, query));
+        dbCatalog.setFactorizedAggregation(false);
+        assertEquals(query, lines(expected), evaluate(dbCatalog, query));
+    }
+
+    @Test
+    public void repeatedVariableIsMultipliedOncePerOccurrence() throws IOException {
+        assertSum("Q(SUM(x * x)) :- T(x, y), U(x, z, w)", "474");
+        assertSum("Q(SUM(x * x * y)) :- T(x, y), U(y, z, w)", "269");
+    }
+
+    @Test
+    public void repeatedGroupVariableInProduct() throws IOException {
+        assertSum("Q(a, SUM(a * a)) :- T(a, a), T(a, 3)", "3, 9");
+    }
+
+    @Test
+    public void repeatedVariableOwnedByChildAtom() throws IOException {
+        assertSum("Q(a, SUM(b * b)) :- T(a, a), T(b, a), R(a, b, c)", "0, 64", "3, 9");
+        assertSum("Q(SUM(f * f)) :- T(a, a), U(b, a, c), T(a, d), S(a, e, f)", "219");
+    }
+}
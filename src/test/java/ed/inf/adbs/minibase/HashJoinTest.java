@@ -0,0 +1,173 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.HashJoinOperator;
+import ed.inf.adbs.minibase.Operator.Operator;
+import ed.inf.adbs.minibase.Operator.ScanOperator;
+import ed.inf.adbs.minibase.Operator.Schema;
+import ed.inf.adbs.minibase.Operator.Tuple;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the HashJoinOperator when its build side does not fit in the join memory budget.
+ */
+public class HashJoinTest {
+
+    /**
+     * A child generating the rows (i, i % modulus) for i below its row count, with the given column names.
+     */
+    private static class GeneratedOperator extends Operator {
+        private final Schema schema;
+        private final int rowCount;
+        private final int modulus;
+        private int rowIndex;
+
+        private GeneratedOperator(String x, String y, int rowCount, int modulus) {
+            this.schema = new Schema("G", Arrays.asList(x, y), Arrays.asList("int", "int"));
+            this.rowCount = rowCount;
+            this.modulus = modulus;
+        }
+
+        @Override
+        public Tuple getNextTuple() {
+            if (rowIndex == rowCount) {
+                return null;
+            }
+            long i = rowIndex++;
+            return new Tuple(schema, new long[]{i, i % modulus});
+        }
+
+        @Override
+        public void reset() {
+            rowIndex = 0;
+        }
+
+        @Override
+        public void dump() {
+        }
+
+        @Override
+        public Schema getSchema() {
+            return schema;
+        }
+    }
+
+    private static HashJoinOperator join(String query, long memoryBudget) {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        List<Atom> body = QueryParser.parse(query).getBody();
+        return new HashJoinOperator(new ScanOperator((RelationalAtom) body.get(0), dbCatalog),
+                new ScanOperator((RelationalAtom) body.get(1), dbCatalog), memoryBudget);
+    }
+
+    /**
+     * Joins L(x, y) holding (i, i % 5000) for 20000 rows with R(z, y) holding (j, j) for 3000 rows,
+     * which has 12000 rows, more than the hash table holds with a budget of 0.
+     */
+    private static HashJoinOperator generatedJoin() {
+        return new HashJoinOperator(new GeneratedOperator("x", "y", 20000, 5000),
+                new GeneratedOperator("z", "y", 3000, 3000), 0);
+    }
+
+    /**
+     * Reads a generated join tuple at a time and returns its row count and the sum of x * z.
+     */
+    private static long[] countAndSum(HashJoinOperator join) {
+        long[] countAndSum = new long[2];
+        for (Tuple tuple = join.getNextTuple(); tuple != null; tuple = join.getNextTuple()) {
+            assertEquals(tuple.getValue(1), tuple.getValue(3));
+            countAndSum[0]++;
+            countAndSum[1] += tuple.getValue(0) * tuple.getValue(2);
+        }
+        return countAndSum;
+    }
+
+    /**
+     * Returns the row count and the sum of x * z of the generated join, computed without a join.
+     */
+    private static long[] expectedCountAndSum() {
+        long[] countAndSum = new long[2];
+        for (long i = 0; i < 20000; i++) {
+            if (i % 5000 < 3000) {
+                countAndSum[0]++;
+                countAndSum[1] += i * (i % 5000);
+            }
+        }
+        return countAndSum;
+    }
+
+    @Test
+    public void partitionedJoinReturnsEveryMatchOnce() {
+        HashJoinOperator join = generatedJoin();
+        long[] expected = expectedCountAndSum();
+        assertEquals(12000L, expected[0]);
+        assertEquals(expected[0], countAndSum(join)[0]);
+        join.reset();
+        long[] again = countAndSum(join);
+        assertEquals(expected[0], again[0]);
+        assertEquals(expected[1], again[1]);
+        join.close();
+    }
+
+    @Test
+    public void partitionedJoinReadsBatches() {
+        HashJoinOperator join = generatedJoin();
+        int count = 0;
+        TupleBatch batch;
+        while ((batch = join.getNextBatch()) != null) {
+            count += batch.getSelectedCount();
+        }
+        assertEquals(12000, count);
+        join.close();
+    }
+
+    @Test
+    public void closeDeletesPartitionsNotJoinedYet() {
+        int before = spillFileCount();
+        HashJoinOperator join = generatedJoin();
+        join.getNextTuple();
+        assertTrue(spillFileCount() > before);
+        join.close();
+        assertEquals(before, spillFileCount());
+    }
+
+    @Test
+    public void smallBuildSideIsNotPartitionedWithZeroBudget() {
+        // The budget is raised to hold a batch of rows, so the 15 rows of U stay in memory
+        int before = spillFileCount();
+        HashJoinOperator join = join("Q(x) :- T(x, y), U(y, a, b)", 0);
+        assertTrue(join.getNextTuple() != null);
+        assertEquals(before, spillFileCount());
+        int count = 1;
+        while (join.getNextTuple() != null) {
+            count++;
+        }
+        assertEquals(50, count);
+    }
+
+    @Test
+    public void crossProductIsNotPartitioned() {
+        HashJoinOperator join = join("Q(x) :- T(x, y), R(a, b, c)", 0);
+        int count = 0;
+        while (join.getNextTuple() != null) {
+            count++;
+        }
+        assertEquals(15 * 12, count);
+    }
+
+    private static int spillFileCount() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith("minibase-spill-"));
+        return files == null ? 0 : files.length;
+    }
+}
@@ -0,0 +1,65 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.JoinOrderOptimizer;
+import ed.inf.adbs.minibase.Operator.JoinOrderOptimizer.JoinTree;
+import ed.inf.adbs.minibase.Operator.TableStatistics;
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.TEST_DB;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the table statistics and the join trees chosen from them.
+ */
+public class JoinOrderTest {
+
+    private static JoinTree joinTree(String query) {
+        List<RelationalAtom> relationalBody = new ArrayList<>();
+        for (Atom atom : QueryParser.parse(query).getBody()) {
+            if (atom instanceof RelationalAtom) {
+                relationalBody.add((RelationalAtom) atom);
+            }
+        }
+        return new JoinOrderOptimizer(relationalBody, loadCatalog()).getJoinTree();
+    }
+
+    @Test
+    public void statisticsCountRowsAndDistinctValues() {
+        TableStatistics statistics = TableStatistics.compute(new File(TEST_DB, "files" + File.separator + "U.csv"), 3);
+        assertEquals(15L, statistics.getRowCount());
+        assertEquals(5L, statistics.getDistinctCount(0));
+        assertEquals(5L, statistics.getDistinctCount(1));
+        assertEquals(7L, statistics.getDistinctCount(2));
+    }
+
+    @Test
+    public void smallerInputIsBuildSide() {
+        // The constants of U(x, 1, 8) leave about 15 / 5 / 7 of its rows, fewer than the 15 of T
+        JoinTree tree = joinTree("Q(x) :- T(x, y), U(x, 1, 8)");
+        assertFalse(tree.isLeaf());
+        assertEquals(0, tree.getLeft().getAtomIndex());
+        assertEquals(1, tree.getRight().getAtomIndex());
+    }
+
+    @Test
+    public void crossProductJoinsConnectedComponents() {
+        // U shares no variable with T and R, so it is only joined once T and R are joined
+        JoinTree tree = joinTree("Q(x) :- T(x, y), U(z, a, b), R(y, c, d)");
+        JoinTree component = tree.getLeft().isLeaf() ? tree.getRight() : tree.getLeft();
+        JoinTree crossed = component == tree.getLeft() ? tree.getRight() : tree.getLeft();
+        assertEquals(1, crossed.getAtomIndex());
+        assertFalse(component.isLeaf());
+        assertTrue(component.getLeft().isLeaf() && component.getRight().isLeaf());
+        assertEquals(2, component.getLeft().getAtomIndex() + component.getRight().getAtomIndex());
+    }
+}
@@ -0,0 +1,47 @@
+package ed.inf.adbs.minibase;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the joins of queries with several relational atoms.
+ */
+public class JoinTest {
+
+    @Test
+    public void joinOnOneSharedVariable() throws IOException {
+        assertEquals(lines("0, 'a'", "0, 'b'", "0, 'c'", "1, 'a'", "2, 'a'", "3, 'a'", "3, 'b'", "3, 'c'", "4, 'a'", "4, 'b'", "4, 'c'"),
+                evaluate("Q(x, c) :- T(x, y), R(y, b, c)"));
+    }
+
+    @Test
+    public void joinOnTwoSharedVariables() throws IOException {
+        assertEquals(lines("0, 1, 0", "0, 4, 0", "0, 4, 4", "4, 1, 1", "4, 1, 4", "4, 1, 7", "4, 3, 5"),
+                evaluate("Q(x, y, z) :- T(x, y), U(x, y, z)"));
+    }
+
+    @Test
+    public void selfJoinWithComparison() throws IOException {
+        assertEquals(lines("3, 0", "3, 1", "3, 2", "3, 3", "3, 4", "4, 0", "4, 1", "4, 2", "4, 3", "4, 4"),
+                evaluate("Q(x, z) :- T(x, y), T(y, z), x > 2"));
+    }
+
+    @Test
+    public void joinOfThreeAtoms() throws IOException {
+        assertEquals(lines("0, 'c'", "3, 'c'"), evaluate("Q(a, c) :- R(a, b, c), S(a, c2, d), T(d, b)"));
+    }
+
+    @Test
+    public void variableOfIntAndStringColumnsHasNoAnswer() throws IOException {
+        // x is an int in T and a string in S, whose dictionary ids would otherwise match the ints
+        assertEquals(lines(), evaluate("Q(x) :- T(x, y), S(z, x, w)"));
+        assertEquals(lines(), evaluate("Q() :- T(x, y), R(z, w, x)"));
+        assertEquals(lines(), evaluate("Q(SUM(y)) :- T(x, y), S(z, x, w)"));
+        assertEquals(lines(), evaluate("Q(x) :- R(x, y, x)"));
+    }
+}
@@ -0,0 +1,155 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.MappedCsvReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.TEST_DB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the memory-mapped CSV reader parses table files as the line-by-line scan does.
+ */
+public class MappedCsvReaderTest {
+
+    private static File tableFile(String tableName) {
+        return new File(TEST_DB, "files" + File.separator + tableName + ".csv");
+    }
+
+    /**
+     * Reads every row of a reader as the text of its fields, parsing the int columns.
+     */
+    private static List<List<String>> readRows(MappedCsvReader reader, List<String> columnTypes) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        while (reader.nextRow()) {
+            List<String> row = new ArrayList<>();
+            for (int i = 0; i < reader.getFieldCount(); i++) {
+                row.add(columnTypes.get(i).equals("int") ? Long.toString(reader.getLong(i)) : reader.getString(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Reads every row of a file with String.split and String.trim, as the buffered scan does.
+     */
+    private static List<List<String>> splitRows(File file) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            List<String> row = new ArrayList<>();
+            for (String value : line.split(",")) {
+                row.add(value.trim());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void readsSameFieldsAsLineByLineParsing() throws IOException {
+        String[][] tables = {{"T", "int", "int"}, {"U", "int", "int", "int"}, {"R", "int", "int", "string"}, {"S", "int", "string", "int"}};
+        for (String[] table : tables) {
+            List<String> columnTypes = Arrays.asList(table).subList(1, table.length);
+            File file = tableFile(table[0]);
+            assertEquals(table[0], splitRows(file), readRows(new MappedCsvReader(file, columnTypes.size()), columnTypes));
+        }
+    }
+
+    @Test
+    public void rangesSplitAtLineBreakReadEveryRowOnce() throws IOException {
+        File file = tableFile("U");
+        List<String> columnTypes = Arrays.asList("int", "int", "int");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int middle = bytes.length / 2;
+        while (bytes[middle - 1] != '\n') {
+            middle++;
+        }
+
+        List<List<String>> rows = readRows(new MappedCsvReader(file, 0, middle, 3), columnTypes);
+        rows.addAll(readRows(new MappedCsvReader(file, middle, bytes.length, 3), columnTypes));
+        assertEquals(splitRows(file), rows);
+    }
+
+    @Test
+    public void rewindStartsAgainAtFirstRow() throws IOException {
+        MappedCsvReader reader = new MappedCsvReader(tableFile("T"), 2);
+        List<String> columnTypes = Arrays.asList("int", "int");
+        List<List<String>> firstPass = readRows(reader, columnTypes);
+        assertFalse(reader.nextRow());
+        reader.rewind();
+        assertEquals(firstPass, readRows(reader, columnTypes));
+    }
+
+    /**
+     * Writes the given lines to a temporary file and opens a reader over it.
+     */
+    private static MappedCsvReader reader(int columnCount, String... lines) throws IOException {
+        File file = File.createTempFile("minibase-csv-", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return new MappedCsvReader(file, columnCount);
+    }
+
+    @Test
+    public void parsesLongValuesUpToTheirLimits() throws IOException {
+        MappedCsvReader reader = reader(3, "9223372036854775807, -9223372036854775808, +42");
+        assertTrue(reader.nextRow());
+        assertEquals(Long.MAX_VALUE, reader.getLong(0));
+        assertEquals(Long.MIN_VALUE, reader.getLong(1));
+        assertEquals(42L, reader.getLong(2));
+    }
+
+    @Test
+    public void rejectsFieldsThatAreNotNumbers() throws IOException {
+        MappedCsvReader reader = reader(1, "12a", "9223372036854775808", "-", "", "2147483648");
+        String[] invalid = {"12a", "9223372036854775808", "-"};
+        for (String field : invalid) {
+            assertTrue(reader.nextRow());
+            try {
+                reader.getLong(0);
+                fail("Parsed " + field);
+            } catch (NumberFormatException e) {
+                assertTrue(e.getMessage().contains(field));
+            }
+        }
+        // The empty line is skipped, and a value beyond an int is only rejected as an int
+        assertTrue(reader.nextRow());
+        assertEquals(2147483648L, reader.getLong(0));
+        try {
+            reader.getInt(0);
+            fail("Parsed 2147483648 as an int");
+        } catch (NumberFormatException e) {
+            assertTrue(e.getMessage().contains("2147483648"));
+        }
+    }
+
+    @Test
+    public void trimsFieldsAsStringTrimDoes() throws IOException {
+        MappedCsvReader reader = reader(2, "\t7\t,\u000B'a b'\f");
+        assertTrue(reader.nextRow());
+        assertEquals(7L, reader.getLong(0));
+        assertEquals("'a b'", reader.getString(1));
+    }
+
+    @Test
+    public void shortRowHasEmptyMissingFields() throws IOException {
+        MappedCsvReader reader = reader(3, "1, 2, 'c'", "4");
+        assertTrue(reader.nextRow());
+        assertTrue(reader.nextRow());
+        assertEquals(1, reader.getFieldCount());
+        assertEquals(4L, reader.getLong(0));
+        assertEquals("", reader.getString(1));
+        assertEquals("", reader.getString(2));
+    }
+}
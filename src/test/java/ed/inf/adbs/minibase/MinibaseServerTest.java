@@ -0,0 +1,106 @@
+package ed.inf.adbs.minibase;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static ed.inf.adbs.minibase.QueryTestSupport.sorted;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests queries answered by a MinibaseServer over a socket.
+ */
+public class MinibaseServerTest {
+
+    /**
+     * Sends a query on its own connection and reads the answer until the server closes it.
+     */
+    private static List<String> query(int port, String query) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream output = socket.getOutputStream();
+            output.write((query + "\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> answer = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                answer.add(line);
+            }
+            return sorted(answer);
+        }
+    }
+
+    @Test
+    public void answersQueriesOverSocket() throws Exception {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread serverThread = new Thread(() -> MinibaseServer.serve(loadCatalog(), server, 10000));
+        serverThread.setDaemon(true);
+        serverThread.start();
+        try {
+            int port = server.socket().getLocalPort();
+            assertEquals(lines("0, 'a'", "0, 'b'", "0, 'c'", "1, 'a'", "2, 'a'", "3, 'a'", "3, 'b'", "3, 'c'", "4, 'a'", "4, 'b'", "4, 'c'"),
+                    query(port, "Q(x, c) :- T(x, y), R(y, b, c)"));
+            // The catalog is kept between connections
+            assertEquals(lines("1064"), query(port, "Q(SUM(x * z)) :- T(x, y), U(z, a, b)"));
+            assertEquals(lines(""), query(port, "Q() :- R(x, y, 'c')"));
+        } finally {
+            server.close();
+            serverThread.join();
+        }
+    }
+
+    @Test
+    public void failedQueryEndsWithErrorMarker() throws Exception {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread serverThread = new Thread(() -> MinibaseServer.serve(loadCatalog(), server, 10000));
+        serverThread.setDaemon(true);
+        serverThread.start();
+        try {
+            int port = server.socket().getLocalPort();
+            List<String> answer = query(port, "Q(x) :- Missing(x)");
+            assertEquals(1, answer.size());
+            assertTrue(answer.get(0).startsWith(MinibaseServer.ERROR_MARKER));
+            // The server keeps answering after a failed query
+            assertEquals(lines("'a'", "'b'", "'c'"), query(port, "Q(c) :- R(a, b, c)"));
+        } finally {
+            server.close();
+            serverThread.join();
+        }
+    }
+
+    @Test
+    public void silentClientIsDisconnected() throws Exception {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread serverThread = new Thread(() -> MinibaseServer.serve(loadCatalog(), server, 200));
+        serverThread.setDaemon(true);
+        serverThread.start();
+        try {
+            int port = server.socket().getLocalPort();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                // The client never sends its query, so the server closes the connection after the timeout
+                socket.setSoTimeout(10000);
+                assertEquals(-1, socket.getInputStream().read());
+            }
+            assertEquals(lines("'a'", "'b'", "'c'"), query(port, "Q(c) :- R(a, b, c)"));
+        } finally {
+            server.close();
+            serverThread.join();
+        }
+    }
+}
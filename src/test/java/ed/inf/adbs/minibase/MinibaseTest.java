@@ -2,7 +2,11 @@ package ed.inf.adbs.minibase;
 
 import org.junit.Test;
 
-import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static org.junit.Assert.assertEquals;
 
 /**
  * Unit test for Minibase.
@@ -10,12 +14,21 @@ import static org.junit.Assert.assertTrue;
 
 public class MinibaseTest {
 
-    /**
-     * Rigorous Test :-)
-     */
     @Test
-    public void shouldAnswerWithTrue() {
-        assertTrue(true);
+    public void selectionAndProjection() throws IOException {
+        assertEquals(lines("3, 'a'", "3, 'c'", "4, 'a'"), evaluate("Q(x, z) :- R(x, y, z), x > 2"));
+    }
+
+    @Test
+    public void trueBooleanQueryAnswersEmptyLine() throws IOException {
+        assertEquals(lines(""), evaluate("Q() :- T(x, y), U(y, z, w), x > 3"));
+        assertEquals(lines(""), evaluate("Q() :- R(x, y, 'c')"));
+        assertEquals(lines(""), evaluate("Q() :- T(a, b), T(b, c), T(c, a)"));
     }
-}
 
+    @Test
+    public void falseBooleanQueryAnswersNothing() throws IOException {
+        assertEquals(lines(), evaluate("Q() :- T(x, x), T(x, 9)"));
+        assertEquals(lines(), evaluate("Q() :- T(x, y), x > 4"));
+    }
+}
@@ -0,0 +1,84 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.ColumnarTable;
+import ed.inf.adbs.minibase.Operator.ParallelCsvScanner;
+import ed.inf.adbs.minibase.Operator.StringDictionary;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parallel parsing of a table file larger than one chunk.
+ */
+public class ParallelCsvScannerTest {
+
+    // Enough rows of "x, x % 97" for the file to be split into several ranges of about 8 MB
+    private static final int ROW_COUNT = 1_500_000;
+    private static final List<String> COLUMN_TYPES = Arrays.asList("int", "int");
+
+    private static Path writeTable() throws IOException {
+        Path file = Files.createTempFile("minibase-table", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int x = 0; x < ROW_COUNT; x++) {
+                writer.write(x + ", " + x % 97 + "\n");
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void orderedChunksFollowTheFile() throws IOException {
+        Path file = writeTable();
+        try {
+            ParallelCsvScanner scanner = new ParallelCsvScanner(file.toFile(), COLUMN_TYPES, new StringDictionary(), true);
+            int rows = 0;
+            int chunks = 0;
+            ColumnarTable chunk;
+            while ((chunk = scanner.nextChunk()) != null) {
+                for (int row = 0; row < chunk.getRowCount(); row++) {
+                    assertEquals(rows, chunk.getColumn(0)[row]);
+                    assertEquals(rows % 97, chunk.getColumn(1)[row]);
+                    rows++;
+                }
+                chunks++;
+            }
+            assertEquals(ROW_COUNT, rows);
+            assertTrue(chunks > 1);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void unorderedChunksHoldEveryRowOnce() throws IOException {
+        Path file = writeTable();
+        try {
+            ParallelCsvScanner scanner = new ParallelCsvScanner(file.toFile(), COLUMN_TYPES, new StringDictionary(), false);
+            boolean[] seen = new boolean[ROW_COUNT];
+            int rows = 0;
+            ColumnarTable chunk;
+            while ((chunk = scanner.nextChunk()) != null) {
+                for (int row = 0; row < chunk.getRowCount(); row++) {
+                    int x = chunk.getColumn(0)[row];
+                    assertFalse(seen[x]);
+                    assertEquals(x % 97, chunk.getColumn(1)[row]);
+                    seen[x] = true;
+                    rows++;
+                }
+            }
+            assertEquals(ROW_COUNT, rows);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs queries against the small test database in src/test/resources/db and reads back their answers.
+ */
+final class QueryTestSupport {
+
+    // The test database: T(int, int), U(int, int, int), R(int, int, string) and S(int, string, int)
+    static final String TEST_DB = "src/test/resources/db";
+
+    private QueryTestSupport() {
+    }
+
+    /**
+     * Loads a fresh catalog of the test database.
+     *
+     * @return The DatabaseCatalog of the test database.
+     */
+    static DatabaseCatalog loadCatalog() {
+        return Minibase.loadDatabaseCatalog(TEST_DB);
+    }
+
+    /**
+     * Evaluates a query against the test database.
+     *
+     * @param query The query text.
+     * @return The sorted lines of the answer.
+     * @throws IOException If the query or answer file cannot be written or read.
+     */
+    static List<String> evaluate(String query) throws IOException {
+        return evaluate(TEST_DB, query);
+    }
+
+    /**
+     * Evaluates a query against a new catalog of a database.
+     *
+     * @param databaseDir The directory of the database the query is evaluated against.
+     * @param query       The query text.
+     * @return The sorted lines of the answer.
+     * @throws IOException If the query or answer file cannot be written or read.
+     */
+    static List<String> evaluate(String databaseDir, String query) throws IOException {
+        return evaluate(Minibase.loadDatabaseCatalog(databaseDir), query);
+    }
+
+    /**
+     * Evaluates a query through Minibase.evaluateCQ and returns the lines of its output file, sorted.
+     *
+     * @param dbCatalog The catalog the query is evaluated with.
+     * @param query     The query text.
+     * @return The sorted lines of the answer.
+     * @throws IOException If the query or answer file cannot be written or read.
+     */
+    static List<String> evaluate(DatabaseCatalog dbCatalog, String query) throws IOException {
+        Path input = Files.createTempFile("minibase-query", ".txt");
+        Path output = Files.createTempFile("minibase-answer", ".csv");
+        try {
+            Files.write(input, query.getBytes(StandardCharsets.UTF_8));
+            Minibase.evaluateCQ(dbCatalog, input.toString(), output.toString());
+            return sorted(Files.readAllLines(output, StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**
+     * Copies the test database to a new temporary directory, for tests that change its files.
+     *
+     * @return The directory of the copy.
+     * @throws IOException If the files cannot be copied.
+     */
+    static Path copyTestDatabase() throws IOException {
+        Path databaseDir = Files.createTempDirectory("minibase-db");
+        Path filesDir = Files.createDirectory(databaseDir.resolve("files"));
+        Files.copy(new File(TEST_DB, "schema.txt").toPath(), databaseDir.resolve("schema.txt"));
+        for (File file : new File(TEST_DB, "files").listFiles()) {
+            Files.copy(file.toPath(), filesDir.resolve(file.getName()), StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        return databaseDir;
+    }
+
+    /**
+     * Deletes a database copied by copyTestDatabase, with every file written into it.
+     *
+     * @param databaseDir The directory of the copy.
+     * @throws IOException If a file cannot be deleted.
+     */
+    static void deleteDatabase(Path databaseDir) throws IOException {
+        Path filesDir = databaseDir.resolve("files");
+        for (File file : filesDir.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(filesDir);
+        Files.delete(databaseDir.resolve("schema.txt"));
+        Files.delete(databaseDir);
+    }
+
+    /**
+     * Returns the expected lines of an answer, sorted.
+     *
+     * @param lines The lines of the answer in any order.
+     * @return The sorted lines.
+     */
+    static List<String> lines(String... lines) {
+        return sorted(new ArrayList<>(Arrays.asList(lines)));
+    }
+
+    /**
+     * Sorts the lines of an answer in place.
+     *
+     * @param lines The lines of the answer in any order.
+     * @return The sorted lines.
+     */
+    static List<String> sorted(List<String> lines) {
+        Collections.sort(lines);
+        return lines;
+    }
+}
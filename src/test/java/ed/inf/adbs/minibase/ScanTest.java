@@ -0,0 +1,128 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.ColumnarTable;
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.ScanMode;
+import ed.inf.adbs.minibase.Operator.StringDictionary;
+import ed.inf.adbs.minibase.Operator.TableCache;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.TEST_DB;
+import static ed.inf.adbs.minibase.QueryTestSupport.copyTestDatabase;
+import static ed.inf.adbs.minibase.QueryTestSupport.deleteDatabase;
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the scans of tables from their CSV and binary columnar files.
+ */
+public class ScanTest {
+
+    @Test
+    public void columnarFileRoundTrip() throws IOException {
+        File csvFile = new File(TEST_DB, "files" + File.separator + "R.csv");
+        List<String> csvLines = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
+        Path columnarFile = Files.createTempFile("minibase-table", ColumnarTable.FILE_EXTENSION);
+        try {
+            StringDictionary writeDictionary = new StringDictionary();
+            ColumnarTable.readCsv(csvFile, Arrays.asList("int", "int", "string"), writeDictionary).write(columnarFile.toFile(), writeDictionary);
+            // The strings are written as text, so they can be read into another dictionary
+            StringDictionary readDictionary = new StringDictionary();
+            ColumnarTable table = ColumnarTable.read(columnarFile.toFile(), readDictionary);
+
+            assertEquals(csvLines.size(), table.getRowCount());
+            assertEquals(3, table.getColumnCount());
+            for (int row = 0; row < csvLines.size(); row++) {
+                String[] values = csvLines.get(row).split(",");
+                assertEquals(Integer.parseInt(values[0].trim()), table.getColumn(0)[row]);
+                assertEquals(Integer.parseInt(values[1].trim()), table.getColumn(1)[row]);
+                assertEquals(values[2].trim(), readDictionary.decode(table.getColumn(2)[row]));
+            }
+        } finally {
+            Files.delete(columnarFile);
+        }
+    }
+
+    @Test
+    public void importedTablesAnswerQueries() throws IOException {
+        Path databaseDir = copyTestDatabase();
+        try {
+            TableImporter.importTables(databaseDir.toString(), new ArrayList<>());
+            assertTrue(databaseDir.resolve("files").resolve("R" + ColumnarTable.FILE_EXTENSION).toFile().exists());
+
+            assertEquals(lines("0, 'a'", "0, 'b'", "0, 'c'", "1, 'a'", "2, 'a'", "3, 'a'", "3, 'b'", "3, 'c'", "4, 'a'", "4, 'b'", "4, 'c'"),
+                    evaluate(databaseDir.toString(), "Q(x, c) :- T(x, y), R(y, b, c)"));
+            assertEquals(lines("3, 'a'", "3, 'c'", "4, 'a'"), evaluate(databaseDir.toString(), "Q(x, z) :- R(x, y, z), x > 2"));
+        } finally {
+            deleteDatabase(databaseDir);
+        }
+    }
+
+    @Test
+    public void columnarFileOlderThanCsvIsIgnored() throws IOException {
+        Path databaseDir = copyTestDatabase();
+        try {
+            TableImporter.importTables(databaseDir.toString(), new ArrayList<>());
+            File csvFile = databaseDir.resolve("files").resolve("T.csv").toFile();
+            Files.write(csvFile.toPath(), "7, 8\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(csvFile.setLastModified(System.currentTimeMillis() + 60_000));
+
+            assertEquals(lines("7, 8"), evaluate(databaseDir.toString(), "Q(x, y) :- T(x, y)"));
+        } finally {
+            deleteDatabase(databaseDir);
+        }
+    }
+
+    @Test
+    public void malformedIntFieldFailsTheScan() throws IOException {
+        Path databaseDir = copyTestDatabase();
+        try {
+            Files.write(databaseDir.resolve("files").resolve("T.csv"), "1, 2\n3, x4\n5, 6\n".getBytes(StandardCharsets.UTF_8));
+            DatabaseCatalog dbCatalog = Minibase.loadDatabaseCatalog(databaseDir.toString());
+            dbCatalog.setTableCache(new TableCache(0));
+            for (ScanMode scanMode : new ScanMode[]{ScanMode.MAPPED, ScanMode.PARALLEL}) {
+                dbCatalog.setScanMode(scanMode);
+                try {
+                    evaluate(dbCatalog, "Q(x, y) :- T(x, y)");
+                    fail("Scanned a malformed table in " + scanMode + " mode");
+                } catch (NumberFormatException | UncheckedIOException e) {
+                    // The scan fails instead of ending early with partial results
+                }
+            }
+        } finally {
+            deleteDatabase(databaseDir);
+        }
+    }
+
+    @Test
+    public void uncachedColumnarTablesAreStreamed() throws IOException {
+        Path databaseDir = copyTestDatabase();
+        try {
+            TableImporter.importTables(databaseDir.toString(), new ArrayList<>());
+            // A cache without budget makes every scan stream the columnar file
+            DatabaseCatalog dbCatalog = Minibase.loadDatabaseCatalog(databaseDir.toString());
+            dbCatalog.setTableCache(new TableCache(0));
+
+            assertEquals(lines("'a', 7", "'b', 0", "'b', 1", "'b', 2", "'b', 3", "'b', 6"),
+                    evaluate(dbCatalog, "Q(y, z) :- S(x, y, z), x > 1"));
+            assertEquals(lines("'a', 'a'", "'a', 'b'", "'b', 'a'", "'b', 'b'", "'c', 'a'", "'c', 'b'"),
+                    evaluate(dbCatalog, "Q(z, b) :- R(x, y, z), S(x, b, c)"));
+            assertEquals(lines("0, 4", "1, 1", "2, 11", "3, 22", "4, 28"), evaluate(dbCatalog, "Q(x, SUM(w)) :- U(x, z, w)"));
+        } finally {
+            deleteDatabase(databaseDir);
+        }
+    }
+}
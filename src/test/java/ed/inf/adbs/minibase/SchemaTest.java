@@ -0,0 +1,60 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.HashJoinOperator;
+import ed.inf.adbs.minibase.Operator.ScanOperator;
+import ed.inf.adbs.minibase.Operator.Schema;
+import ed.inf.adbs.minibase.Operator.Tuple;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the schemas the operators share with the tuples they produce.
+ */
+public class SchemaTest {
+
+    private static RelationalAtom atom(String query, int index) {
+        return (RelationalAtom) QueryParser.parse(query).getBody().get(index);
+    }
+
+    @Test
+    public void scannedTuplesShareTheScanSchema() {
+        ScanOperator scan = new ScanOperator(atom("Q(x) :- R(x, y, z)", 0), loadCatalog());
+        Schema schema = scan.getSchema();
+        assertEquals(Arrays.asList("x", "y", "z"), schema.getColumnNames());
+        assertFalse(schema.isStringColumn(1));
+        assertTrue(schema.isStringColumn(2));
+
+        int count = 0;
+        for (Tuple tuple = scan.getNextTuple(); tuple != null; tuple = scan.getNextTuple()) {
+            assertTrue(tuple.getSchema() == schema);
+            count++;
+        }
+        assertEquals(12, count);
+    }
+
+    @Test
+    public void joinSchemaConcatenatesItsInputs() {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        String query = "Q(x) :- T(x, y), S(x, s, t)";
+        ScanOperator left = new ScanOperator(atom(query, 0), dbCatalog);
+        ScanOperator right = new ScanOperator(atom(query, 1), dbCatalog);
+        Schema schema = new HashJoinOperator(left, right).getSchema();
+
+        assertEquals(5, schema.size());
+        assertEquals(Arrays.asList("x", "y", "x", "s", "t"), schema.getColumnNames());
+        assertEquals(0, schema.indexOf("x"));
+        assertEquals(3, schema.indexOf("s"));
+        assertEquals(-1, schema.indexOf("z"));
+        assertTrue(schema.isStringColumn(3));
+        assertFalse(schema.isStringColumn(4));
+    }
+}
@@ -0,0 +1,39 @@
+package ed.inf.adbs.minibase;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the selections tested right after the scan of each atom of a join.
+ */
+public class SelectionPushdownTest {
+
+    @Test
+    public void constantsOfJoinedAtoms() throws IOException {
+        assertEquals(lines("0, 0", "4, 1", "4, 4", "4, 7"), evaluate("Q(x, b) :- T(x, 1), U(x, 1, b)"));
+        assertEquals(lines("0, 'a'", "2, 'b'", "3, 'b'"), evaluate("Q(x, w) :- R(x, y, 'c'), S(x, w, t)"));
+    }
+
+    @Test
+    public void constantOfTheWrongTypeMatchesNothing() throws IOException {
+        assertEquals(lines(), evaluate("Q(x) :- T(x, y), R(y, z, 5)"));
+    }
+
+    @Test
+    public void repeatedVariablesOfJoinedAtoms() throws IOException {
+        assertEquals(lines("0, 0, 'c'", "0, 2, 'c'", "3, 0, 'c'", "3, 3, 'a'", "4, 0, 'c'", "4, 3, 'a'"),
+                evaluate("Q(x, y, c) :- T(x, y), R(y, y, c)"));
+        assertEquals(lines("0", "3"), evaluate("Q(x) :- T(x, x)"));
+    }
+
+    @Test
+    public void comparisonsOfOneAtomEachInAJoin() throws IOException {
+        assertEquals(lines("1, 6", "3, 0", "3, 1", "3, 2", "3, 6", "4, 2"),
+                evaluate("Q(x, t) :- T(x, y), S(x, w, t), y > 2, w != 'a'"));
+    }
+}
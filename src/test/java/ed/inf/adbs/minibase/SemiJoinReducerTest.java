@@ -0,0 +1,86 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.Operator;
+import ed.inf.adbs.minibase.Operator.QueryHypergraph;
+import ed.inf.adbs.minibase.Operator.ScanOperator;
+import ed.inf.adbs.minibase.Operator.SemiJoinReducer;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the semi-join reduction of acyclic queries on the chain T(x, y), U(y, a, b), R(b, c, d).
+ */
+public class SemiJoinReducerTest {
+
+    private static final String CHAIN = "Q(x, d) :- T(x, y), U(y, a, b), R(b, c, d)";
+
+    private static SemiJoinReducer reducer(String query) {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        List<RelationalAtom> relationalBody = new ArrayList<>();
+        List<Operator> scans = new ArrayList<>();
+        for (Atom atom : QueryParser.parse(query).getBody()) {
+            relationalBody.add((RelationalAtom) atom);
+            scans.add(new ScanOperator((RelationalAtom) atom, dbCatalog));
+        }
+        return new SemiJoinReducer(scans, new QueryHypergraph(relationalBody));
+    }
+
+    private static int count(Operator operator) {
+        int count = 0;
+        while (operator.getNextTuple() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void danglingRowsAreRemovedFromEveryAtom() {
+        // Of the 15, 15 and 12 rows, 13, 8 and 8 take part in some result
+        SemiJoinReducer reducer = reducer(CHAIN);
+        assertEquals(13, count(reducer.getReducedOperator(0)));
+        assertEquals(8, count(reducer.getReducedOperator(1)));
+        assertEquals(8, count(reducer.getReducedOperator(2)));
+    }
+
+    @Test
+    public void reducedAtomCanBeReadAgain() {
+        Operator reduced = reducer(CHAIN).getReducedOperator(1);
+        assertEquals(8, count(reduced));
+        reduced.reset();
+        assertEquals(8, count(reduced));
+    }
+
+    @Test
+    public void reducedBatchesHoldTheReducedRows() {
+        SemiJoinReducer reducer = reducer(CHAIN);
+        int[] expected = {13, 8, 8};
+        for (int atom = 0; atom < expected.length; atom++) {
+            Operator reduced = reducer.getReducedOperator(atom);
+            int count = 0;
+            TupleBatch batch;
+            while ((batch = reduced.getNextBatch()) != null) {
+                count += batch.getSelectedCount();
+            }
+            assertEquals(expected[atom], count);
+        }
+    }
+
+    @Test
+    public void reducedChainAnswersQuery() throws IOException {
+        assertEquals(lines("0, 'a'", "0, 'b'", "0, 'c'", "1, 'a'", "1, 'c'", "2, 'a'", "3, 'a'", "3, 'b'", "3, 'c'", "4, 'a'", "4, 'b'", "4, 'c'"),
+                evaluate(CHAIN));
+    }
+}
@@ -0,0 +1,114 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.ExternalSorter;
+import ed.inf.adbs.minibase.Operator.ScanOperator;
+import ed.inf.adbs.minibase.Operator.SortMergeJoinOperator;
+import ed.inf.adbs.minibase.Operator.Tuple;
+import ed.inf.adbs.minibase.Operator.TupleBatch;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static ed.inf.adbs.minibase.QueryTestSupport.loadCatalog;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the external merge sort and the sort-merge join built on it.
+ */
+public class SortMergeJoinTest {
+
+    @Test
+    public void sorterMergesSpilledRunsInKeyOrder() throws IOException {
+        // 200000 rows of 40 bytes spill far more runs than are merged at once
+        ExternalSorter sorter = new ExternalSorter(2, new int[]{1, 0}, 64 * 1024);
+        Random random = new Random(7);
+        long checksum = 0;
+        for (int i = 0; i < 200000; i++) {
+            long[] row = {i, random.nextInt(1000)};
+            checksum += row[0] * 31 + row[1];
+            sorter.add(row);
+        }
+        assertTrue(sorter.getRunCount() > 64);
+        sorter.finish();
+
+        long[] previous = null;
+        int count = 0;
+        for (long[] row = sorter.next(); row != null; row = sorter.next()) {
+            if (previous != null) {
+                assertTrue(ExternalSorter.compareKeys(previous, new int[]{1, 0}, row, new int[]{1, 0}) < 0);
+            }
+            checksum -= row[0] * 31 + row[1];
+            previous = row;
+            count++;
+        }
+        sorter.close();
+        assertEquals(200000, count);
+        assertEquals(0L, checksum);
+    }
+
+    @Test
+    public void sorterKeepsInputWithinBudgetInMemory() throws IOException {
+        ExternalSorter sorter = new ExternalSorter(1, new int[]{0}, 1 << 20);
+        for (long value : new long[]{5, 3, 9, 1}) {
+            sorter.add(new long[]{value});
+        }
+        sorter.finish();
+        assertEquals(0, sorter.getRunCount());
+        for (long value : new long[]{1, 3, 5, 9}) {
+            assertEquals(value, sorter.next()[0]);
+        }
+        assertNull(sorter.next());
+        sorter.close();
+    }
+
+    @Test
+    public void sorterSpillsRunsOfAtLeastOneBatchWithZeroBudget() throws IOException {
+        ExternalSorter sorter = new ExternalSorter(1, new int[]{0}, 0);
+        for (int i = 0; i < 5000; i++) {
+            sorter.add(new long[]{4999 - i});
+        }
+        assertEquals(5000 / TupleBatch.BATCH_SIZE, sorter.getRunCount());
+        sorter.finish();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, sorter.next()[0]);
+        }
+        assertNull(sorter.next());
+        sorter.close();
+    }
+
+    @Test
+    public void unsortedInputsAreSortedExternallyAndMerged() {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        String query = "Q(x) :- T(x, y), U(y, a, b)";
+        ScanOperator left = new ScanOperator((RelationalAtom) QueryParser.parse(query).getBody().get(0), dbCatalog);
+        ScanOperator right = new ScanOperator((RelationalAtom) QueryParser.parse(query).getBody().get(1), dbCatalog);
+        SortMergeJoinOperator join = new SortMergeJoinOperator(left, right, false, false, 0);
+
+        // T(x, y) joined with U(y, a, b) has 50 rows, whose x * b add up to 244
+        int count = 0;
+        long sum = 0;
+        for (Tuple tuple = join.getNextTuple(); tuple != null; tuple = join.getNextTuple()) {
+            assertEquals(tuple.getValue(1), tuple.getValue(2));
+            sum += tuple.getValue(0) * tuple.getValue(4);
+            count++;
+        }
+        assertEquals(50, count);
+        assertEquals(244L, sum);
+    }
+
+    @Test
+    public void planOverJoinBudgetAnswersWithSortMergeJoin() throws IOException {
+        DatabaseCatalog dbCatalog = loadCatalog();
+        dbCatalog.setJoinMemoryBudget(0);
+        assertEquals(lines("0, 7", "0, 8", "1, 7", "1, 8", "3, 7", "3, 8", "4, 7", "4, 8"),
+                evaluate(dbCatalog, "Q(x, b) :- T(x, y), U(y, a, b), b > 6"));
+    }
+}
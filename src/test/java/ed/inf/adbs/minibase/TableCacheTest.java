@@ -0,0 +1,85 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.Operator.ColumnarTable;
+import ed.inf.adbs.minibase.Operator.DatabaseCatalog;
+import ed.inf.adbs.minibase.Operator.StringDictionary;
+import ed.inf.adbs.minibase.Operator.TableCache;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static ed.inf.adbs.minibase.QueryTestSupport.TEST_DB;
+import static ed.inf.adbs.minibase.QueryTestSupport.copyTestDatabase;
+import static ed.inf.adbs.minibase.QueryTestSupport.deleteDatabase;
+import static ed.inf.adbs.minibase.QueryTestSupport.evaluate;
+import static ed.inf.adbs.minibase.QueryTestSupport.lines;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the eviction and invalidation of cached tables.
+ */
+public class TableCacheTest {
+
+    private static final long[] SIGNATURE = {1, 2, 3, 4};
+
+    // Reads the T table, whose copies all have the same estimated size
+    private static ColumnarTable readTable() throws IOException {
+        return ColumnarTable.readCsv(new File(TEST_DB, "files" + File.separator + "T.csv"), Arrays.asList("int", "int"), new StringDictionary());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedTable() throws IOException {
+        ColumnarTable table = readTable();
+        TableCache cache = new TableCache(2 * table.getEstimatedSize());
+        cache.put("A", SIGNATURE, table);
+        cache.put("B", SIGNATURE, readTable());
+        // Using A makes B the least recently used table
+        assertNotNull(cache.get("A", SIGNATURE));
+        cache.put("C", SIGNATURE, readTable());
+
+        assertNotNull(cache.get("A", SIGNATURE));
+        assertEquals(null, cache.get("B", SIGNATURE));
+        assertNotNull(cache.get("C", SIGNATURE));
+        assertEquals(2 * table.getEstimatedSize(), cache.getUsedBytes());
+    }
+
+    @Test
+    public void tableLargerThanBudgetIsNotCached() throws IOException {
+        ColumnarTable table = readTable();
+        TableCache cache = new TableCache(table.getEstimatedSize() - 1);
+        cache.put("A", SIGNATURE, table);
+        assertEquals(null, cache.get("A", SIGNATURE));
+        assertEquals(0L, cache.getUsedBytes());
+    }
+
+    @Test
+    public void changedSignatureInvalidatesTable() throws IOException {
+        TableCache cache = new TableCache(1 << 20);
+        cache.put("A", SIGNATURE, readTable());
+        assertEquals(null, cache.get("A", new long[]{1, 2, 3, 5}));
+        assertEquals(0L, cache.getUsedBytes());
+        assertEquals(null, cache.get("A", SIGNATURE));
+    }
+
+    @Test
+    public void rewrittenTableIsReloaded() throws IOException {
+        Path databaseDir = copyTestDatabase();
+        try {
+            DatabaseCatalog dbCatalog = Minibase.loadDatabaseCatalog(databaseDir.toString());
+            assertEquals(lines("0, 0", "3, 3"), evaluate(dbCatalog, "Q(x, y) :- T(x, y), x = y"));
+            assertTrue(dbCatalog.getTableCache().getUsedBytes() > 0);
+
+            Files.write(databaseDir.resolve("files").resolve("T.csv"), "5, 5\n6, 7\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(lines("5, 5"), evaluate(dbCatalog, "Q(x, y) :- T(x, y), x = y"));
+        } finally {
+            deleteDatabase(databaseDir);
+        }
+    }
+}